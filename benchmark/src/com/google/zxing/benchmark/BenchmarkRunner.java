@@ -0,0 +1,71 @@
+/*
+ * Copyright 2010 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.benchmark;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Runs the benchmarks twice: once for throughput in ops/s together with the GC profiler,
+ * which adds the allocation rate (gc.alloc.rate and gc.alloc.rate.norm, bytes per op), and
+ * once in sample mode, which reports latency percentiles including p0.99 in ms/op.
+ * Results are reported per corpus, so per format, for the full decode and each stage.</p>
+ *
+ * <p>Run from the project root after building core and javase:</p>
+ *
+ * <pre>java -jar benchmark/target/benchmarks.jar [benchmark regexp]</pre>
+ *
+ * <p>For anything more specific, such as other parameters or JSON output for comparing
+ * two builds, use the standard JMH runner: java -cp ... org.openjdk.jmh.Main -h</p>
+ */
+public final class BenchmarkRunner {
+
+  private BenchmarkRunner() {
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    String include = args.length > 0 ? args[0] : BenchmarkRunner.class.getPackage().getName();
+
+    Options throughput = new OptionsBuilder()
+        .include(include)
+        .mode(Mode.Throughput)
+        .timeUnit(TimeUnit.SECONDS)
+        .warmupIterations(5)
+        .measurementIterations(5)
+        .forks(1)
+        .addProfiler(GCProfiler.class)
+        .build();
+    new Runner(throughput).run();
+
+    Options latency = new OptionsBuilder()
+        .include(include)
+        .mode(Mode.SampleTime)
+        .timeUnit(TimeUnit.MILLISECONDS)
+        .warmupIterations(5)
+        .measurementIterations(5)
+        .forks(1)
+        .build();
+    new Runner(latency).run();
+  }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2010 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.benchmark;
+
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.GlobalHistogramBinarizer;
+import com.google.zxing.common.HybridBinarizer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+
+/**
+ * Measures the two binarization stages in isolation: {@link HybridBinarizer#getBlackMatrix()},
+ * which the 2D readers use, and {@link GlobalHistogramBinarizer#getBlackRow(int, BitArray)},
+ * which the 1D readers call once per scanned row. Luminance is computed up front.
+ */
+@State(Scope.Thread)
+public class BinarizerBenchmark {
+
+  @Param({"qrcode-1", "datamatrix-1", "pdf417", "ean13-1", "code128-1"})
+  public String corpus;
+
+  private LuminanceSource[] sources;
+  private GlobalHistogramBinarizer[] rowBinarizers;
+  private BitArray row;
+  private int next;
+  private int nextRow;
+
+  @Setup
+  public void setUp() throws IOException {
+    sources = new BlackBoxCorpus(corpus).getPrecomputedSources();
+    rowBinarizers = new GlobalHistogramBinarizer[sources.length];
+    for (int i = 0; i < sources.length; i++) {
+      rowBinarizers[i] = new GlobalHistogramBinarizer(sources[i]);
+    }
+    row = new BitArray();
+    next = 0;
+    nextRow = 0;
+  }
+
+  @Benchmark
+  public BitMatrix hybridGetBlackMatrix() throws NotFoundException {
+    LuminanceSource source = sources[next];
+    next = (next + 1) % sources.length;
+    // A new binarizer each time since HybridBinarizer caches its result
+    return new HybridBinarizer(source).getBlackMatrix();
+  }
+
+  @Benchmark
+  public BitArray globalHistogramGetBlackRow() {
+    GlobalHistogramBinarizer binarizer = rowBinarizers[next];
+    int height = binarizer.getLuminanceSource().getHeight();
+    // Walk rows the way OneDReader does, a 32nd of the image apart
+    nextRow += Math.max(1, height >> 5);
+    if (nextRow >= height) {
+      nextRow = 0;
+      next = (next + 1) % rowBinarizers.length;
+    }
+    try {
+      row = binarizer.getBlackRow(nextRow, row);
+    } catch (NotFoundException nfe) {
+      // Low contrast row; still a realistic cost
+    }
+    return row;
+  }
+
+}
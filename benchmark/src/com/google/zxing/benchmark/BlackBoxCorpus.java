@@ -0,0 +1,160 @@
+/*
+ * Copyright 2010 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.benchmark;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Loads one of the blackbox test image directories under core/test/data/blackbox so the
+ * benchmarks measure the same images the unit tests use. The base directory can be overridden
+ * with the zxing.blackbox system property.
+ */
+final class BlackBoxCorpus {
+
+  private static final Map<String,BarcodeFormat> FORMATS = new HashMap<String,BarcodeFormat>();
+  static {
+    FORMATS.put("codabar-1", BarcodeFormat.CODABAR);
+    FORMATS.put("code128-1", BarcodeFormat.CODE_128);
+    FORMATS.put("code39-1", BarcodeFormat.CODE_39);
+    FORMATS.put("code93-1", BarcodeFormat.CODE_93);
+    FORMATS.put("datamatrix-1", BarcodeFormat.DATAMATRIX);
+    FORMATS.put("ean13-1", BarcodeFormat.EAN_13);
+    FORMATS.put("ean8-1", BarcodeFormat.EAN_8);
+    FORMATS.put("itf-1", BarcodeFormat.ITF);
+    FORMATS.put("pdf417", BarcodeFormat.PDF417);
+    FORMATS.put("qrcode-1", BarcodeFormat.QR_CODE);
+    FORMATS.put("qrcode-2", BarcodeFormat.QR_CODE);
+    FORMATS.put("rss14-1", BarcodeFormat.RSS14);
+    FORMATS.put("rssexpanded-1", BarcodeFormat.RSS_EXPANDED);
+    FORMATS.put("upca-1", BarcodeFormat.UPC_A);
+    FORMATS.put("upce-1", BarcodeFormat.UPC_E);
+  }
+
+  private static final FilenameFilter IMAGE_NAME_FILTER = new FilenameFilter() {
+    public boolean accept(File dir, String name) {
+      String lowerCase = name.toLowerCase();
+      return lowerCase.endsWith(".jpg") || lowerCase.endsWith(".jpeg") ||
+             lowerCase.endsWith(".gif") || lowerCase.endsWith(".png");
+    }
+  };
+
+  private final BarcodeFormat format;
+  private final List<BufferedImage> images;
+
+  BlackBoxCorpus(String name) throws IOException {
+    format = FORMATS.get(name);
+    if (format == null) {
+      throw new IllegalArgumentException("Unknown corpus: " + name);
+    }
+    File dir = new File(baseDirectory(), name);
+    File[] files = dir.listFiles(IMAGE_NAME_FILTER);
+    if (files == null || files.length == 0) {
+      throw new IOException("No images found in " + dir.getAbsolutePath());
+    }
+    // Sort so that every fork sees the images in the same order
+    Arrays.sort(files);
+    images = new ArrayList<BufferedImage>(files.length);
+    for (File file : files) {
+      BufferedImage image = ImageIO.read(file);
+      if (image != null) {
+        images.add(image);
+      }
+    }
+  }
+
+  private static File baseDirectory() {
+    String override = System.getProperty("zxing.blackbox");
+    if (override != null) {
+      return new File(override);
+    }
+    File base = new File("core/test/data/blackbox");
+    if (!base.exists()) {
+      // Running from inside the benchmark module
+      base = new File("../core/test/data/blackbox");
+    }
+    return base;
+  }
+
+  BarcodeFormat getFormat() {
+    return format;
+  }
+
+  /**
+   * @return sources which convert from RGB on every access, as the real pipeline does
+   */
+  LuminanceSource[] getImageSources() {
+    LuminanceSource[] sources = new LuminanceSource[images.size()];
+    for (int i = 0; i < sources.length; i++) {
+      sources[i] = new BufferedImageLuminanceSource(images.get(i));
+    }
+    return sources;
+  }
+
+  /**
+   * @return sources whose luminance has been computed up front, so that stage benchmarks don't
+   *  also measure the RGB conversion
+   */
+  LuminanceSource[] getPrecomputedSources() {
+    LuminanceSource[] sources = getImageSources();
+    for (int i = 0; i < sources.length; i++) {
+      LuminanceSource source = sources[i];
+      sources[i] = new ByteArrayLuminanceSource(source.getMatrix(), source.getWidth(),
+          source.getHeight());
+    }
+    return sources;
+  }
+
+  private static final class ByteArrayLuminanceSource extends LuminanceSource {
+
+    private final byte[] luminances;
+
+    ByteArrayLuminanceSource(byte[] luminances, int width, int height) {
+      super(width, height);
+      this.luminances = luminances;
+    }
+
+    @Override
+    public byte[] getRow(int y, byte[] row) {
+      int width = getWidth();
+      if (row == null || row.length < width) {
+        row = new byte[width];
+      }
+      System.arraycopy(luminances, y * width, row, 0, width);
+      return row;
+    }
+
+    @Override
+    public byte[] getMatrix() {
+      return luminances;
+    }
+  }
+
+}
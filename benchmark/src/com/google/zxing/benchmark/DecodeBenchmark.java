@@ -0,0 +1,85 @@
+/*
+ * Copyright 2010 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.benchmark;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.Result;
+import com.google.zxing.common.HybridBinarizer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.Hashtable;
+import java.util.Vector;
+
+/**
+ * Measures the whole pipeline, from RGB image to {@link Result}, the way a server client would
+ * run it: one {@link MultiFormatReader} per thread, configured once with setHints() and then
+ * reused with decodeWithState(). Each invocation decodes the next image of the corpus.
+ * Images that fail to decode are part of the workload, just as they are in production.
+ */
+@State(Scope.Thread)
+public class DecodeBenchmark {
+
+  @Param({"qrcode-1", "qrcode-2", "datamatrix-1", "pdf417", "ean13-1", "ean8-1", "upca-1",
+      "upce-1", "code39-1", "code93-1", "code128-1", "itf-1", "rss14-1", "rssexpanded-1"})
+  public String corpus;
+
+  @Param({"false", "true"})
+  public boolean tryHarder;
+
+  private LuminanceSource[] sources;
+  private MultiFormatReader reader;
+  private int next;
+
+  @Setup
+  public void setUp() throws IOException {
+    BlackBoxCorpus blackBoxCorpus = new BlackBoxCorpus(corpus);
+    sources = blackBoxCorpus.getImageSources();
+    Hashtable<DecodeHintType,Object> hints = new Hashtable<DecodeHintType,Object>();
+    Vector<BarcodeFormat> formats = new Vector<BarcodeFormat>(1);
+    formats.addElement(blackBoxCorpus.getFormat());
+    hints.put(DecodeHintType.POSSIBLE_FORMATS, formats);
+    if (tryHarder) {
+      hints.put(DecodeHintType.TRY_HARDER, Boolean.TRUE);
+    }
+    reader = new MultiFormatReader();
+    reader.setHints(hints);
+    next = 0;
+  }
+
+  @Benchmark
+  public Result decode() {
+    LuminanceSource source = sources[next];
+    next = (next + 1) % sources.length;
+    try {
+      return reader.decodeWithState(new BinaryBitmap(new HybridBinarizer(source)));
+    } catch (NotFoundException nfe) {
+      return null;
+    }
+  }
+
+}
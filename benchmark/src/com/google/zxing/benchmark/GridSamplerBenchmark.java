@@ -0,0 +1,84 @@
+/*
+ * Copyright 2010 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.benchmark;
+
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.DefaultGridSampler;
+import com.google.zxing.common.GridSampler;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.common.PerspectiveTransform;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+
+/**
+ * Measures {@link DefaultGridSampler#sampleGrid(BitMatrix, int, PerspectiveTransform)} on
+ * binarized corpus images. The transform maps the grid onto a slightly skewed quadrilateral in
+ * the middle of each image, which exercises the same arithmetic as a real detection.
+ */
+@State(Scope.Thread)
+public class GridSamplerBenchmark {
+
+  @Param({"qrcode-1", "datamatrix-1"})
+  public String corpus;
+
+  // Modules per side: version 10 QR Code
+  @Param({"57"})
+  public int dimension;
+
+  private final GridSampler sampler = new DefaultGridSampler();
+  private BitMatrix[] matrices;
+  private PerspectiveTransform[] transforms;
+  private int next;
+
+  @Setup
+  public void setUp() throws IOException, NotFoundException {
+    LuminanceSource[] sources = new BlackBoxCorpus(corpus).getPrecomputedSources();
+    matrices = new BitMatrix[sources.length];
+    transforms = new PerspectiveTransform[sources.length];
+    for (int i = 0; i < sources.length; i++) {
+      BitMatrix matrix = new HybridBinarizer(sources[i]).getBlackMatrix();
+      matrices[i] = matrix;
+      float width = matrix.getWidth();
+      float height = matrix.getHeight();
+      float side = Math.min(width, height) / 2.0f;
+      float left = (width - side) / 2.0f;
+      float top = (height - side) / 2.0f;
+      float skew = side / 20.0f;
+      transforms[i] = PerspectiveTransform.quadrilateralToQuadrilateral(
+          0.0f, 0.0f, dimension, 0.0f, dimension, dimension, 0.0f, dimension,
+          left + skew, top, left + side, top + skew, left + side - skew, top + side,
+          left, top + side - skew);
+    }
+    next = 0;
+  }
+
+  @Benchmark
+  public BitMatrix sampleGrid() throws NotFoundException {
+    int i = next;
+    next = (next + 1) % matrices.length;
+    return sampler.sampleGrid(matrices[i], dimension, transforms[i]);
+  }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2010 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.benchmark;
+
+import com.google.zxing.common.reedsolomon.GF256;
+import com.google.zxing.common.reedsolomon.ReedSolomonDecoder;
+import com.google.zxing.common.reedsolomon.ReedSolomonEncoder;
+import com.google.zxing.common.reedsolomon.ReedSolomonException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * Measures {@link ReedSolomonDecoder#decode(int[], int)} on blocks shaped like those in dense
+ * QR Codes, with a given number of corrupted codewords. errors=0 measures the syndrome check
+ * alone, which is what almost every block in a clean scan costs.
+ */
+@State(Scope.Thread)
+public class ReedSolomonBenchmark {
+
+  // Largest QR Code block: 153 total codewords, 30 of them error correction (version 40-L)
+  @Param({"153"})
+  public int blockSize;
+
+  @Param({"30"})
+  public int ecCodewords;
+
+  @Param({"0", "4", "15"})
+  public int errors;
+
+  private final ReedSolomonDecoder decoder = new ReedSolomonDecoder(GF256.QR_CODE_FIELD);
+  private int[] corrupted;
+  private int[] received;
+
+  @Setup
+  public void setUp() {
+    if (errors > ecCodewords / 2) {
+      throw new IllegalArgumentException("Too many errors to correct");
+    }
+    Random random = new Random(0xDEADBEEFL);
+    corrupted = new int[blockSize];
+    for (int i = 0; i < blockSize - ecCodewords; i++) {
+      corrupted[i] = random.nextInt(256);
+    }
+    new ReedSolomonEncoder(GF256.QR_CODE_FIELD).encode(corrupted, ecCodewords);
+    // Corrupt a fixed set of positions with nonzero error values
+    boolean[] used = new boolean[blockSize];
+    for (int i = 0; i < errors; i++) {
+      int position;
+      do {
+        position = random.nextInt(blockSize);
+      } while (used[position]);
+      used[position] = true;
+      corrupted[position] ^= 1 + random.nextInt(255);
+    }
+    received = new int[blockSize];
+  }
+
+  @Benchmark
+  public int[] decode() throws ReedSolomonException {
+    // decode() corrects in place, so start from the corrupted block each time
+    System.arraycopy(corrupted, 0, received, 0, blockSize);
+    decoder.decode(received, ecCodewords);
+    return received;
+  }
+
+}
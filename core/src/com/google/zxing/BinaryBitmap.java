@@ -29,12 +29,24 @@ public final class BinaryBitmap {
 
   private final Binarizer binarizer;
   private BitMatrix matrix;
+  // For a crop, the bitmap it was cut from and where, so that its matrix can be taken from the
+  // parent's rather than binarized again.
+  private final BinaryBitmap parent;
+  private final int left;
+  private final int top;
 
   public BinaryBitmap(Binarizer binarizer) {
+    this(binarizer, null, 0, 0);
+  }
+
+  private BinaryBitmap(Binarizer binarizer, BinaryBitmap parent, int left, int top) {
     if (binarizer == null) {
       throw new IllegalArgumentException("Binarizer must be non-null.");
     }
     this.binarizer = binarizer;
+    this.parent = parent;
+    this.left = left;
+    this.top = top;
     matrix = null;
   }
 
@@ -80,8 +92,14 @@ public final class BinaryBitmap {
     // 1. This work will never be done if the caller only installs 1D Reader objects, or if a
     //    1D Reader finds a barcode before the 2D Readers run.
     // 2. This work will only be done once even if the caller installs multiple 2D Readers.
+    // A crop whose parent already has its matrix copies its part of that, a word at a time,
+    // instead of thresholding the same pixels again.
     if (matrix == null) {
-      matrix = binarizer.getBlackMatrix();
+      if (parent != null && parent.matrix != null) {
+        matrix = parent.matrix.crop(left, top, getWidth(), getHeight());
+      } else {
+        matrix = binarizer.getBlackMatrix();
+      }
     }
     return matrix;
   }
@@ -97,6 +115,10 @@ public final class BinaryBitmap {
    * Returns a new object with cropped image data. Implementations may keep a reference to the
    * original data rather than a copy. Only callable if isCropSupported() is true.
    *
+   * If this bitmap's black matrix has been computed by the time the crop's is asked for, the
+   * crop's matrix is cut out of it rather than binarized from the cropped luminance data. Black
+   * rows always come from the cropped luminance data.
+   *
    * @param left The left coordinate, 0 <= left < getWidth().
    * @param top The top coordinate, 0 <= top <= getHeight().
    * @param width The width of the rectangle to crop.
@@ -105,7 +127,7 @@ public final class BinaryBitmap {
    */
   public BinaryBitmap crop(int left, int top, int width, int height) {
     LuminanceSource newSource = binarizer.getLuminanceSource().crop(left, top, width, height);
-    return new BinaryBitmap(binarizer.createBinarizer(newSource));
+    return new BinaryBitmap(binarizer.createBinarizer(newSource), this, left, top);
   }
 
   /**
@@ -73,6 +73,28 @@ public final class DecodeHintType {
    */
   public static final DecodeHintType NEED_RESULT_POINT_CALLBACK = new DecodeHintType();
 
+  /**
+   * Lets {@link MultiFormatReader#decodeWithState(BinaryBitmap)} try first the readers which
+   * recently succeeded, instead of always using the same order. Doesn't matter what it maps to;
+   * use {@link Boolean#TRUE}.
+   */
+  public static final DecodeHintType ADAPTIVE_READER_ORDER = new DecodeHintType();
+
+  /**
+   * Time in milliseconds after which {@link MultiFormatReader} stops trying further readers on an
+   * image. A reader which has started is never interrupted, so this may be exceeded by the time
+   * one reader takes. Maps to an {@link Integer}.
+   */
+  public static final DecodeHintType DECODE_TIME_BUDGET = new DecodeHintType();
+
+  /**
+   * Also look for 1D barcodes along lines at angles other than horizontal, sampled straight from
+   * the black matrix, every so many degrees and always at 90 degrees. Rotating the image by 90
+   * degrees when trying harder is then unnecessary and skipped. Maps to an {@link Integer} from 1 to 90; 15 works well.
+   * Larger steps are taken as 90, and any other value, such as {@link Boolean#TRUE}, as 15.
+   */
+  public static final DecodeHintType ANGLE_SWEEP = new DecodeHintType();
+
   private DecodeHintType() {
   }
 
@@ -34,8 +34,16 @@ import java.util.Vector;
  */
 public final class MultiFormatReader implements Reader {
 
+  // With ADAPTIVE_READER_ORDER, each success adds this to the reader's score...
+  private static final int SUCCESS_SCORE = 1 << 8;
+  // ...and every image decays all scores by 1/2^SCORE_DECAY_SHIFT, to favor recent successes
+  private static final int SCORE_DECAY_SHIFT = 3;
+
   private Hashtable hints;
   private Vector readers;
+  private boolean adaptiveOrder;
+  private int[] scores;
+  private long timeBudget;
 
   /**
    * This version of decode honors the intent of Reader.decode(BinaryBitmap) in that it
@@ -68,6 +76,11 @@ public final class MultiFormatReader implements Reader {
    * Decode an image using the state set up by calling setHints() previously. Continuous scan
    * clients will get a <b>large</b> speed increase by using this instead of decode().
    *
+   * To also avoid allocating new buffers for every frame, keep one
+   * {@link com.google.zxing.common.DecodeContext} alongside this reader and binarize each frame
+   * with it, e.g. <code>new HybridBinarizer(source, 1, context)</code>. Like this reader, the
+   * context must only be used by one thread at a time.
+   *
    * @param image The pixel data to decode
    * @return The contents of the image
    * @throws NotFoundException Any errors which occurred
@@ -83,13 +96,19 @@ public final class MultiFormatReader implements Reader {
   /**
    * This method adds state to the MultiFormatReader. By setting the hints once, subsequent calls
    * to decodeWithState(image) can reuse the same set of readers without reallocating memory. This
-   * is important for performance in continuous scan clients.
+   * is important for performance in continuous scan clients. It is also required for
+   * {@link DecodeHintType#ADAPTIVE_READER_ORDER} to have any effect, since calling this method
+   * again forgets which readers succeeded.
    *
    * @param hints The set of hints to use for subsequent calls to decode(image)
    */
   public void setHints(Hashtable hints) {
     this.hints = hints;
 
+    adaptiveOrder = hints != null && hints.containsKey(DecodeHintType.ADAPTIVE_READER_ORDER);
+    Integer budget = hints == null ? null : (Integer) hints.get(DecodeHintType.DECODE_TIME_BUDGET);
+    timeBudget = budget == null ? -1L : budget.longValue();
+
     boolean tryHarder = hints != null && hints.containsKey(DecodeHintType.TRY_HARDER);
     Vector formats = hints == null ? null : (Vector) hints.get(DecodeHintType.POSSIBLE_FORMATS);
     readers = new Vector();
@@ -140,6 +159,7 @@ public final class MultiFormatReader implements Reader {
         readers.addElement(new MultiFormatOneDReader(hints));
       }
     }
+    scores = adaptiveOrder ? new int[readers.size()] : null;
   }
 
   public void reset() {
@@ -151,11 +171,25 @@ public final class MultiFormatReader implements Reader {
   }
 
   private Result decodeInternal(BinaryBitmap image) throws NotFoundException {
+    long deadline = timeBudget < 0L ? Long.MAX_VALUE : System.currentTimeMillis() + timeBudget;
+    if (adaptiveOrder) {
+      for (int i = 0; i < scores.length; i++) {
+        scores[i] -= scores[i] >> SCORE_DECAY_SHIFT;
+      }
+    }
     int size = readers.size();
     for (int i = 0; i < size; i++) {
+      // Always give the first reader a chance, however small the budget
+      if (i > 0 && System.currentTimeMillis() >= deadline) {
+        break;
+      }
       Reader reader = (Reader) readers.elementAt(i);
       try {
-        return reader.decode(image, hints);
+        Result result = reader.decode(image, hints);
+        if (adaptiveOrder) {
+          promote(i);
+        }
+        return result;
       } catch (ReaderException re) {
         // continue
       }
@@ -164,4 +198,23 @@ public final class MultiFormatReader implements Reader {
     throw NotFoundException.getNotFoundInstance();
   }
 
+  // Credits the reader at the given index with a success, and moves it ahead of any readers
+  // which now have a lower score.
+  private void promote(int index) {
+    int score = scores[index] + SUCCESS_SCORE;
+    Object reader = readers.elementAt(index);
+    while (index > 0 && scores[index - 1] < score) {
+      scores[index] = scores[index - 1];
+      readers.setElementAt(readers.elementAt(index - 1), index);
+      index--;
+    }
+    scores[index] = score;
+    readers.setElementAt(reader, index);
+  }
+
+  // Not private for testing
+  Vector getReaders() {
+    return readers;
+  }
+
 }
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2010 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.zxing;
+
+/**
+ * This object extends LuminanceSource around a camera frame in a packed 4:2:2 YUV format, where
+ * each pair of pixels takes four bytes holding two luma samples and one pair of chroma samples:
+ * YUYV (also called YUY2), UYVY and their YVYU and VYUY variants. Rows may be padded to rowStride
+ * bytes, and the frame may start partway into the array.
+ *
+ * Cropping and rotating give views onto the same array, without copying the frame.
+ */
+public final class PackedYUVLuminanceSource extends StridedLuminanceSource {
+
+  /**
+   * Layout where each pixel's luma byte comes first: Y0 U Y1 V (or Y0 V Y1 U).
+   */
+  public static final int YUYV = 0;
+
+  /**
+   * Layout where each pixel's luma byte comes second: U Y0 V Y1 (or V Y0 U Y1).
+   */
+  public static final int UYVY = 1;
+
+  public PackedYUVLuminanceSource(byte[] yuvData, int dataWidth, int dataHeight, int layout) {
+    this(yuvData, 0, dataWidth, dataHeight, dataWidth << 1, layout, 0, 0, dataWidth,
+        dataHeight);
+  }
+
+  /**
+   * @param yuvData The frame
+   * @param dataOffset Index of the first byte of the frame in yuvData
+   * @param dataWidth Width of the frame in pixels
+   * @param dataHeight Height of the frame in pixels
+   * @param rowStride Bytes from the start of one row to the start of the next, at least
+   *  2 * dataWidth
+   * @param layout {@link #YUYV} or {@link #UYVY}
+   * @param left Left edge of the area to decode
+   * @param top Top edge of the area to decode
+   * @param width Width of the area to decode
+   * @param height Height of the area to decode
+   */
+  public PackedYUVLuminanceSource(byte[] yuvData, int dataOffset, int dataWidth, int dataHeight,
+      int rowStride, int layout, int left, int top, int width, int height) {
+    super(yuvData, cropOffset(yuvData, dataOffset + checkLayout(layout), dataWidth, dataHeight,
+        2, 1, rowStride, left, top, width, height), 2, rowStride, width, height);
+  }
+
+  private PackedYUVLuminanceSource(byte[] yuvData, int offset, int xStride, int yStride,
+      int width, int height) {
+    super(yuvData, offset, xStride, yStride, width, height);
+  }
+
+  // The layout is simply the position of the first luma byte.
+  private static int checkLayout(int layout) {
+    if (layout != YUYV && layout != UYVY) {
+      throw new IllegalArgumentException("Unknown layout: " + layout);
+    }
+    return layout;
+  }
+
+  void readPixels(int from, int step, int count, byte[] dest, int destOffset) {
+    for (int i = 0; i < count; i++) {
+      dest[destOffset + i] = data[from];
+      from += step;
+    }
+  }
+
+  LuminanceSource createView(int offset, int xStride, int yStride, int width, int height) {
+    return new PackedYUVLuminanceSource(data, offset, xStride, yStride, width, height);
+  }
+
+}
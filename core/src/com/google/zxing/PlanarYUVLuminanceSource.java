@@ -0,0 +1,80 @@
+/*
+ * Copyright 2010 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.zxing;
+
+/**
+ * This object extends LuminanceSource around a camera frame in a format where the Y channel is
+ * planar and appears first, such as NV21 (the Android camera default), NV12, I420 and YV12. Only
+ * the Y plane is read; the chroma planes which follow it are ignored. Rows of the Y plane may be
+ * padded to rowStride bytes, and the frame may start partway into the array.
+ *
+ * Cropping and rotating give views onto the same array, without copying the frame.
+ */
+public final class PlanarYUVLuminanceSource extends StridedLuminanceSource {
+
+  public PlanarYUVLuminanceSource(byte[] yuvData, int dataWidth, int dataHeight) {
+    this(yuvData, 0, dataWidth, dataHeight, dataWidth, 0, 0, dataWidth, dataHeight);
+  }
+
+  /**
+   * @param yuvData The frame
+   * @param dataOffset Index of the first byte of the Y plane in yuvData
+   * @param dataWidth Width of the frame in pixels
+   * @param dataHeight Height of the frame in pixels
+   * @param rowStride Bytes from the start of one row of the Y plane to the start of the next
+   * @param left Left edge of the area to decode
+   * @param top Top edge of the area to decode
+   * @param width Width of the area to decode
+   * @param height Height of the area to decode
+   */
+  public PlanarYUVLuminanceSource(byte[] yuvData, int dataOffset, int dataWidth, int dataHeight,
+      int rowStride, int left, int top, int width, int height) {
+    super(yuvData, cropOffset(yuvData, dataOffset, dataWidth, dataHeight, 1, 1, rowStride, left,
+        top, width, height), 1, rowStride, width, height);
+  }
+
+  private PlanarYUVLuminanceSource(byte[] yuvData, int offset, int xStride, int yStride,
+      int width, int height) {
+    super(yuvData, offset, xStride, yStride, width, height);
+  }
+
+  public byte[] getMatrix() {
+    // If the caller asks for the entire underlying image, save the copy and give them the
+    // original data. The docs specifically warn that result.length must be ignored.
+    if (offset == 0 && xStride == 1 && yStride == getWidth()) {
+      return data;
+    }
+    return super.getMatrix();
+  }
+
+  void readPixels(int from, int step, int count, byte[] dest, int destOffset) {
+    if (step == 1) {
+      System.arraycopy(data, from, dest, destOffset, count);
+    } else {
+      for (int i = 0; i < count; i++) {
+        dest[destOffset + i] = data[from];
+        from += step;
+      }
+    }
+  }
+
+  LuminanceSource createView(int offset, int xStride, int yStride, int width, int height) {
+    return new PlanarYUVLuminanceSource(data, offset, xStride, yStride, width, height);
+  }
+
+}
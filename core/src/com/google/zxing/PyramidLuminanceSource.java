@@ -0,0 +1,146 @@
+/*
+ * Copyright 2010 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.zxing;
+
+/**
+ * A LuminanceSource which is another source scaled down by half in each dimension, each pixel
+ * being the average of a 2x2 box of pixels in the original. Wrapping one of these in another gives
+ * the next level of an image pyramid; {@link #downscale(LuminanceSource, int)} builds as many
+ * levels as are needed to bring an image under a given size.
+ *
+ * Rows are computed from the wrapped source on demand, two of its rows at a time, so the full
+ * resolution image never needs to be held in memory at once. The matrix of each level is
+ * computed once and cached, after which rows are served from it.
+ *
+ * @see com.google.zxing.multi.CoarseToFineDecoder
+ */
+public final class PyramidLuminanceSource extends LuminanceSource {
+
+  private final LuminanceSource source;
+  private final int scale;
+  private byte[] matrix;
+  // Rows of source, reused by getRow() until the matrix is cached
+  private byte[] upperRow;
+  private byte[] lowerRow;
+
+  public PyramidLuminanceSource(LuminanceSource source) {
+    super(source.getWidth() >> 1, source.getHeight() >> 1);
+    if (getWidth() == 0 || getHeight() == 0) {
+      throw new IllegalArgumentException("Source is too small to scale down.");
+    }
+    this.source = source;
+    scale = source instanceof PyramidLuminanceSource ?
+        ((PyramidLuminanceSource) source).scale << 1 : 2;
+  }
+
+  /**
+   * Halves the size of source until neither dimension exceeds maxDimension.
+   *
+   * @param source The full resolution image
+   * @param maxDimension The largest acceptable width or height, at least 1
+   * @return the coarsest level needed, or source itself if it is already small enough
+   */
+  public static LuminanceSource downscale(LuminanceSource source, int maxDimension) {
+    if (maxDimension < 1) {
+      throw new IllegalArgumentException("Maximum dimension must be positive.");
+    }
+    while (source.getWidth() > maxDimension || source.getHeight() > maxDimension) {
+      source = new PyramidLuminanceSource(source);
+    }
+    return source;
+  }
+
+  /**
+   * @return The next finer level of the pyramid, twice the size of this one
+   */
+  public LuminanceSource getSource() {
+    return source;
+  }
+
+  /**
+   * @return How many pixels of the original image each pixel of this level spans in each
+   *  dimension: 2 for the first level, 4 for the second and so on
+   */
+  public int getScale() {
+    return scale;
+  }
+
+  public byte[] getRow(int y, byte[] row) {
+    if (y < 0 || y >= getHeight()) {
+      throw new IllegalArgumentException("Requested row is outside the image: " + y);
+    }
+    int width = getWidth();
+    if (row == null || row.length < width) {
+      row = new byte[width];
+    }
+    byte[] cached = getCachedMatrix();
+    if (cached != null) {
+      System.arraycopy(cached, y * width, row, 0, width);
+    } else {
+      averageRows(y, row);
+    }
+    return row;
+  }
+
+  public byte[] getMatrix() {
+    byte[] cached = getCachedMatrix();
+    if (cached != null) {
+      return cached;
+    }
+    int width = getWidth();
+    int height = getHeight();
+    byte[] result = new byte[width * height];
+    byte[] upper = null;
+    byte[] lower = null;
+    for (int y = 0; y < height; y++) {
+      upper = source.getRow(y << 1, upper);
+      lower = source.getRow((y << 1) + 1, lower);
+      average(upper, lower, width, result, y * width);
+    }
+    setCachedMatrix(result);
+    return result;
+  }
+
+  // Two threads may both compute the matrix, but they will compute the same thing, and each
+  // only publishes it once it is complete.
+  private synchronized byte[] getCachedMatrix() {
+    return matrix;
+  }
+
+  private synchronized void setCachedMatrix(byte[] matrix) {
+    this.matrix = matrix;
+  }
+
+  // Synchronized since the row buffers are shared by every caller of getRow().
+  private synchronized void averageRows(int y, byte[] row) {
+    upperRow = source.getRow(y << 1, upperRow);
+    lowerRow = source.getRow((y << 1) + 1, lowerRow);
+    average(upperRow, lowerRow, getWidth(), row, 0);
+  }
+
+  private static void average(byte[] upper, byte[] lower, int width, byte[] dest,
+      int destOffset) {
+    for (int x = 0; x < width; x++) {
+      int left = x << 1;
+      int sum = (upper[left] & 0xFF) + (upper[left + 1] & 0xFF) +
+          (lower[left] & 0xFF) + (lower[left + 1] & 0xFF);
+      dest[destOffset + x] = (byte) ((sum + 2) >> 2);
+    }
+  }
+
+}
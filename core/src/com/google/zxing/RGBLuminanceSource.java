@@ -0,0 +1,111 @@
+/*
+ * Copyright 2010 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.zxing;
+
+/**
+ * This object extends LuminanceSource around a frame of RGB pixels packed into a byte array,
+ * either as 16-bit little-endian RGB565 or as 32-bit RGBA8888 (bytes in R, G, B, A order).
+ * Rows may be padded to rowStride bytes, and the frame may start partway into the array.
+ *
+ * Cropping and rotating give views onto the same array, without copying the frame.
+ */
+public final class RGBLuminanceSource extends StridedLuminanceSource {
+
+  /**
+   * Two bytes per pixel, little-endian, with red in the top five bits, green in the middle six
+   * and blue in the bottom five.
+   */
+  public static final int RGB565 = 2;
+
+  /**
+   * Four bytes per pixel, in the order red, green, blue, alpha. Alpha is ignored.
+   */
+  public static final int RGBA8888 = 4;
+
+  private final int format;
+
+  public RGBLuminanceSource(byte[] rgbData, int dataWidth, int dataHeight, int format) {
+    this(rgbData, 0, dataWidth, dataHeight, dataWidth * checkFormat(format), format, 0, 0,
+        dataWidth, dataHeight);
+  }
+
+  /**
+   * @param rgbData The frame
+   * @param dataOffset Index of the first byte of the frame in rgbData
+   * @param dataWidth Width of the frame in pixels
+   * @param dataHeight Height of the frame in pixels
+   * @param rowStride Bytes from the start of one row to the start of the next
+   * @param format {@link #RGB565} or {@link #RGBA8888}
+   * @param left Left edge of the area to decode
+   * @param top Top edge of the area to decode
+   * @param width Width of the area to decode
+   * @param height Height of the area to decode
+   */
+  public RGBLuminanceSource(byte[] rgbData, int dataOffset, int dataWidth, int dataHeight,
+      int rowStride, int format, int left, int top, int width, int height) {
+    super(rgbData, cropOffset(rgbData, dataOffset, dataWidth, dataHeight, checkFormat(format),
+        format, rowStride, left, top, width, height), format, rowStride, width, height);
+    this.format = format;
+  }
+
+  private RGBLuminanceSource(byte[] rgbData, int offset, int xStride, int yStride, int width,
+      int height, int format) {
+    super(rgbData, offset, xStride, yStride, width, height);
+    this.format = format;
+  }
+
+  // The format is simply the number of bytes in each pixel.
+  private static int checkFormat(int format) {
+    if (format != RGB565 && format != RGBA8888) {
+      throw new IllegalArgumentException("Unknown format: " + format);
+    }
+    return format;
+  }
+
+  // These methods use an integer calculation for luminance derived from:
+  // <code>Y = 0.299R + 0.587G + 0.114B</code>
+  void readPixels(int from, int step, int count, byte[] dest, int destOffset) {
+    byte[] rgb = data;
+    if (format == RGB565) {
+      for (int i = 0; i < count; i++) {
+        int pixel = (rgb[from] & 0xFF) | ((rgb[from + 1] & 0xFF) << 8);
+        // Widen each channel to eight bits by repeating its top bits at the bottom.
+        int r = pixel >> 11;
+        int g = (pixel >> 5) & 0x3F;
+        int b = pixel & 0x1F;
+        r = (r << 3) | (r >> 2);
+        g = (g << 2) | (g >> 4);
+        b = (b << 3) | (b >> 2);
+        dest[destOffset + i] = (byte) ((306 * r + 601 * g + 117 * b) >> 10);
+        from += step;
+      }
+    } else {
+      for (int i = 0; i < count; i++) {
+        dest[destOffset + i] = (byte) ((306 * (rgb[from] & 0xFF) +
+            601 * (rgb[from + 1] & 0xFF) +
+            117 * (rgb[from + 2] & 0xFF)) >> 10);
+        from += step;
+      }
+    }
+  }
+
+  LuminanceSource createView(int offset, int xStride, int yStride, int width, int height) {
+    return new RGBLuminanceSource(data, offset, xStride, yStride, width, height, format);
+  }
+
+}
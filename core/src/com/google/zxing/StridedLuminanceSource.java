@@ -0,0 +1,132 @@
+/*
+ * Copyright 2010 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.zxing;
+
+/**
+ * Base class for the luminance sources which read pixels directly out of a caller's byte array
+ * holding a camera frame. The visible image is described by the offset of its top left pixel and
+ * by how many bytes to step for one pixel to the right and one pixel down. Crops and 90 degree
+ * rotations only change these three numbers, so they are views onto the same array and never
+ * copy the frame. Subclasses only need to know how to turn the bytes of one pixel into a
+ * luminance value.
+ *
+ * The caller must not change the contents of the array while a decode is in progress.
+ */
+abstract class StridedLuminanceSource extends LuminanceSource {
+
+  final byte[] data;
+  final int offset;
+  final int xStride;
+  final int yStride;
+
+  StridedLuminanceSource(byte[] data, int offset, int xStride, int yStride, int width,
+      int height) {
+    super(width, height);
+    this.data = data;
+    this.offset = offset;
+    this.xStride = xStride;
+    this.yStride = yStride;
+  }
+
+  /**
+   * Checks that a frame and a crop rectangle within it fit in the array.
+   *
+   * @param data The array holding the frame
+   * @param dataOffset Index of the first byte of the frame in data
+   * @param dataWidth Width of the whole frame in pixels
+   * @param dataHeight Height of the whole frame in pixels
+   * @param pixelStride Bytes from the start of one pixel to the start of the next
+   * @param pixelSize Bytes read for each pixel, at most pixelStride
+   * @param rowStride Bytes from the start of one row to the start of the next
+   * @return index in data of the top left pixel of the crop rectangle
+   */
+  static int cropOffset(byte[] data, int dataOffset, int dataWidth, int dataHeight,
+      int pixelStride, int pixelSize, int rowStride, int left, int top, int width, int height) {
+    if (rowStride < dataWidth * pixelStride) {
+      throw new IllegalArgumentException("Row stride is less than the width of the data.");
+    }
+    if (dataOffset < 0 || (dataWidth > 0 && dataHeight > 0 &&
+        dataOffset + (dataHeight - 1) * rowStride + (dataWidth - 1) * pixelStride + pixelSize >
+        data.length)) {
+      throw new IllegalArgumentException("Array is too small for the image data.");
+    }
+    if (left < 0 || top < 0 || left + width > dataWidth || top + height > dataHeight) {
+      throw new IllegalArgumentException("Crop rectangle does not fit within image data.");
+    }
+    return dataOffset + top * rowStride + left * pixelStride;
+  }
+
+  /**
+   * Converts count pixels to luminance, starting at data[from] and stepping step bytes from one
+   * pixel to the next, writing them to dest starting at destOffset.
+   */
+  abstract void readPixels(int from, int step, int count, byte[] dest, int destOffset);
+
+  /**
+   * @return a source of the same kind over the same data, with the given geometry
+   */
+  abstract LuminanceSource createView(int offset, int xStride, int yStride, int width,
+      int height);
+
+  public byte[] getRow(int y, byte[] row) {
+    if (y < 0 || y >= getHeight()) {
+      throw new IllegalArgumentException("Requested row is outside the image: " + y);
+    }
+    int width = getWidth();
+    if (row == null || row.length < width) {
+      row = new byte[width];
+    }
+    readPixels(offset + y * yStride, xStride, width, row, 0);
+    return row;
+  }
+
+  public byte[] getMatrix() {
+    int width = getWidth();
+    int height = getHeight();
+    byte[] matrix = new byte[width * height];
+    int rowOffset = offset;
+    for (int y = 0; y < height; y++) {
+      readPixels(rowOffset, xStride, width, matrix, y * width);
+      rowOffset += yStride;
+    }
+    return matrix;
+  }
+
+  public boolean isCropSupported() {
+    return true;
+  }
+
+  public LuminanceSource crop(int left, int top, int width, int height) {
+    if (left < 0 || top < 0 || left + width > getWidth() || top + height > getHeight()) {
+      throw new IllegalArgumentException("Crop rectangle does not fit within this image.");
+    }
+    return createView(offset + left * xStride + top * yStride, xStride, yStride, width, height);
+  }
+
+  public boolean isRotateSupported() {
+    return true;
+  }
+
+  public LuminanceSource rotateCounterClockwise() {
+    // The new top row is the old right column, read downwards, so moving right in the rotated
+    // image moves down in this one, and moving down moves left.
+    int width = getWidth();
+    return createView(offset + (width - 1) * xStride, yStride, -xStride, getHeight(), width);
+  }
+
+}
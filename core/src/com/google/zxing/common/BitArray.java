@@ -23,13 +23,28 @@ package com.google.zxing.common;
  */
 public final class BitArray {
 
+  // Finds the index of a single set bit by multiplying it by a de Bruijn sequence; see
+  // http://supertech.csail.mit.edu/papers/debruijn.pdf
+  private static final int DE_BRUIJN = 0x077CB531;
+  private static final int[] NUMBER_OF_TRAILING_ZEROS = {
+      0, 1, 28, 2, 29, 14, 24, 3, 30, 22, 20, 15, 25, 17, 4, 8,
+      31, 27, 13, 23, 21, 19, 16, 7, 26, 12, 18, 6, 11, 5, 10, 9
+  };
+
   // TODO: I have changed these members to be public so ProGuard can inline get() and set(). Ideally
   // they'd be private and we'd use the -allowaccessmodification flag, but Dalvik rejects the
   // resulting binary at runtime on Android. If we find a solution to this, these should be changed
-  // back to private.
+  // back to private. Writing to bits directly does not invalidate the run-length view below.
   public int[] bits;
   public int size;
 
+  // Run-length view of the bits, computed on demand by computeRuns() and shared by every caller
+  // until the bits change: runStarts[k] is the index of the first bit of run k, followed by size.
+  private int[] runStarts;
+  private int numRuns;
+  private boolean firstRunSet;
+  private boolean runsValid;
+
   public BitArray() {
     this.size = 0;
     this.bits = new int[1];
@@ -71,6 +86,7 @@ public final class BitArray {
    */
   public void set(int i) {
     bits[i >> 5] |= 1 << (i & 0x1F);
+    runsValid = false;
   }
 
   /**
@@ -80,6 +96,50 @@ public final class BitArray {
    */
   public void flip(int i) {
     bits[i >> 5] ^= 1 << (i & 0x1F);
+    runsValid = false;
+  }
+
+  /**
+   * @param from first bit to check
+   * @return index of first bit that is set, starting from the given index, or size if none are set
+   *  at or beyond this given index
+   */
+  public int getNextSet(int from) {
+    if (from >= size) {
+      return size;
+    }
+    int bitsOffset = from >> 5;
+    // Mask off lesser bits first
+    int currentBits = bits[bitsOffset] & -(1 << (from & 0x1F));
+    while (currentBits == 0) {
+      if (++bitsOffset == bits.length) {
+        return size;
+      }
+      currentBits = bits[bitsOffset];
+    }
+    int result = (bitsOffset << 5) + numberOfTrailingZeros(currentBits);
+    return result > size ? size : result;
+  }
+
+  /**
+   * @param from first bit to check
+   * @return index of first bit that is not set, starting from the given index, or size if all are
+   *  set at or beyond this given index
+   */
+  public int getNextUnset(int from) {
+    if (from >= size) {
+      return size;
+    }
+    int bitsOffset = from >> 5;
+    int currentBits = ~bits[bitsOffset] & -(1 << (from & 0x1F));
+    while (currentBits == 0) {
+      if (++bitsOffset == bits.length) {
+        return size;
+      }
+      currentBits = ~bits[bitsOffset];
+    }
+    int result = (bitsOffset << 5) + numberOfTrailingZeros(currentBits);
+    return result > size ? size : result;
   }
 
   /**
@@ -91,6 +151,7 @@ public final class BitArray {
    */
   public void setBulk(int i, int newBits) {
     bits[i >> 5] = newBits;
+    runsValid = false;
   }
 
   /**
@@ -101,6 +162,7 @@ public final class BitArray {
     for (int i = 0; i < max; i++) {
       bits[i] = 0;
     }
+    runsValid = false;
   }
 
   /**
@@ -125,15 +187,8 @@ public final class BitArray {
     for (int i = firstInt; i <= lastInt; i++) {
       int firstBit = i > firstInt ? 0 : start & 0x1F;
       int lastBit = i < lastInt ? 31 : end & 0x1F;
-      int mask;
-      if (firstBit == 0 && lastBit == 31) {
-        mask = -1;
-      } else {
-        mask = 0;
-        for (int j = firstBit; j <= lastBit; j++) {
-          mask |= 1 << j;
-        }
-      }
+      // Ones from firstBit to lastBit inclusive; when lastBit is 31, 2 << 31 is 0
+      int mask = (2 << lastBit) - (1 << firstBit);
 
       // Return false if we're looking for 1s and the masked bits[i] isn't all 1s (that is,
       // equals the mask, or we're looking for 0s and the masked portion is not all 0s
@@ -150,6 +205,7 @@ public final class BitArray {
       bits[size >> 5] |= (1 << (size & 0x1F));
     }
     size++;
+    runsValid = false;
   }
 
   /**
@@ -184,6 +240,87 @@ public final class BitArray {
       // it) but there is no problem since 0 XOR 0 == 0.
       bits[i] ^= other.bits[i];
     }
+    runsValid = false;
+  }
+
+  /**
+   * @return number of runs of consecutive set or unset bits in the array
+   */
+  public int getNumRuns() {
+    computeRuns();
+    return numRuns;
+  }
+
+  /**
+   * @param run index of a run, from 0 to {@link #getNumRuns()} inclusive
+   * @return index of the first bit of the run; for the last index, the size of the array
+   */
+  public int getRunStart(int run) {
+    computeRuns();
+    return runStarts[run];
+  }
+
+  /**
+   * @param run index of a run
+   * @return true iff the bits of the run are set
+   */
+  public boolean isRunSet(int run) {
+    computeRuns();
+    return firstRunSet ^ ((run & 0x01) != 0);
+  }
+
+  /**
+   * @param i bit whose run to find
+   * @return index of the run containing bit i
+   */
+  public int getRunIndex(int i) {
+    computeRuns();
+    int low = 0;
+    int high = numRuns - 1;
+    while (low < high) {
+      int mid = (low + high + 1) >> 1;
+      if (runStarts[mid] <= i) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return low;
+  }
+
+  // Counting runs once per row lets every 1D reader share the work, instead of each counting the
+  // same pixels again. Runs are found a word at a time: bit i of word ^ (word << 1 | carry) is set
+  // exactly where bit i differs from the one before it.
+  private void computeRuns() {
+    if (runsValid) {
+      return;
+    }
+    if (runStarts == null || runStarts.length < size + 1) {
+      runStarts = new int[size + 1];
+    }
+    int count = 0;
+    if (size > 0) {
+      firstRunSet = (bits[0] & 0x01) != 0;
+      runStarts[count++] = 0;
+      int numWords = (size + 31) >> 5;
+      int carry = bits[0] & 0x01;
+      for (int i = 0; i < numWords; i++) {
+        int word = bits[i];
+        int transitions = word ^ ((word << 1) | carry);
+        carry = word >>> 31;
+        if (i == numWords - 1 && (size & 0x1F) != 0) {
+          transitions &= (1 << (size & 0x1F)) - 1;
+        }
+        int offset = i << 5;
+        while (transitions != 0) {
+          runStarts[count++] = offset + numberOfTrailingZeros(transitions);
+          transitions &= transitions - 1; // clears the lowest set bit
+        }
+      }
+    }
+    runStarts[count] = size;
+    numRuns = count;
+    runsValid = true;
   }
 
   /**
@@ -216,17 +353,20 @@ public final class BitArray {
   }
 
   /**
-   * Reverses all bits in the array.
+   * Reverses all bits in the array, in place.
    */
   public void reverse() {
-    int[] newBits = new int[bits.length];
-    int size = this.size;
-    for (int i = 0; i < size; i++) {
-      if (get(size - i - 1)) {
-        newBits[i >> 5] |= 1 << (i & 0x1F);
+    for (int i = 0, j = size - 1; i < j; i++, j--) {
+      if (get(i) != get(j)) {
+        flip(i);
+        flip(j);
       }
     }
-    bits = newBits;
+  }
+
+  // Integer.numberOfTrailingZeros() is not available in J2ME
+  private static int numberOfTrailingZeros(int i) {
+    return NUMBER_OF_TRAILING_ZEROS[((i & -i) * DE_BRUIJN) >>> 27];
   }
 
   private static int[] makeArray(int size) {
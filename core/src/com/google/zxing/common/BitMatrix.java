@@ -28,6 +28,11 @@ package com.google.zxing.common;
  * <p>The ordering of bits is row-major. Within each int, the least significant bits are used first,
  * meaning they represent lower x values. This is compatible with BitArray's implementation.</p>
  *
+ * <p>A matrix produced by a binarizer may be computed lazily, in tiles one int wide and eight rows
+ * high, the first time each tile is read or written through any of the methods here. Such a
+ * matrix changes as it is read, so it must not be shared between threads, and the public bits
+ * field only holds the tiles computed so far.</p>
+ *
  * @author Sean Owen
  * @author dswitkin@google.com (Daniel Switkin)
  */
@@ -39,6 +44,15 @@ public final class BitMatrix {
   public final int rowSize;
   public final int[] bits;
 
+  // Tiles of a lazily computed matrix are one word wide and 1 << TILE_HEIGHT_SHIFT rows high.
+  static final int TILE_HEIGHT_SHIFT = 3;
+
+  // While some tiles haven't been computed yet, what computes them, a bit per tile which is set
+  // once it has been, and how many are left. The filler is null once all of them are done.
+  private TileFiller tileFiller;
+  private int[] filledTiles;
+  private int tilesLeft;
+
   // A helper to construct a square matrix.
   public BitMatrix(int dimension) {
     this(dimension, dimension);
@@ -62,6 +76,9 @@ public final class BitMatrix {
    * @return value of given bit in matrix
    */
   public boolean get(int x, int y) {
+    if (tileFiller != null) {
+      fillTile(x >> 5, y);
+    }
     int offset = y * rowSize + (x >> 5);
     return ((bits[offset] >>> (x & 0x1f)) & 1) != 0;
   }
@@ -73,6 +90,9 @@ public final class BitMatrix {
    * @param y The vertical component (i.e. which row)
    */
   public void set(int x, int y) {
+    if (tileFiller != null) {
+      fillTile(x >> 5, y);
+    }
     int offset = y * rowSize + (x >> 5);
     bits[offset] |= 1 << (x & 0x1f);
   }
@@ -84,6 +104,9 @@ public final class BitMatrix {
    * @param y The vertical component (i.e. which row)
    */
   public void flip(int x, int y) {
+    if (tileFiller != null) {
+      fillTile(x >> 5, y);
+    }
     int offset = y * rowSize + (x >> 5);
     bits[offset] ^= 1 << (x & 0x1f);
   }
@@ -92,6 +115,8 @@ public final class BitMatrix {
    * Clears all bits (sets to false).
    */
   public void clear() {
+    tileFiller = null;
+    filledTiles = null;
     int max = bits.length;
     for (int i = 0; i < max; i++) {
       bits[i] = 0;
@@ -118,6 +143,7 @@ public final class BitMatrix {
     if (bottom > this.height || right > this.width) {
       throw new IllegalArgumentException("The region must fit inside the matrix");
     }
+    fillRegion(left, top, width, height);
     for (int y = top; y < bottom; y++) {
       int offset = y * rowSize;
       for (int x = left; x < right; x++) {
@@ -138,6 +164,7 @@ public final class BitMatrix {
     if (row == null || row.getSize() < width) {
       row = new BitArray(width);
     }
+    fillRegion(0, y, width, 1);
     int offset = y * rowSize;
     for (int x = 0; x < rowSize; x++) {
       row.setBulk(x << 5, bits[offset + x]);
@@ -145,12 +172,328 @@ public final class BitMatrix {
     return row;
   }
 
+  /**
+   * <p>Copies whole rows from another matrix of the same width into this one.</p>
+   *
+   * @param source The matrix to copy from, which may be this one
+   * @param sourceTop The first row of source to copy
+   * @param top The row of this matrix to copy it to
+   * @param numRows The number of rows to copy
+   */
+  public void copyRows(BitMatrix source, int sourceTop, int top, int numRows) {
+    if (source.width != width) {
+      throw new IllegalArgumentException("Widths must match");
+    }
+    if (sourceTop < 0 || top < 0 || numRows < 0 || sourceTop + numRows > source.height ||
+        top + numRows > height) {
+      throw new IllegalArgumentException("The rows must fit inside both matrices");
+    }
+    if (numRows == 0) {
+      return;
+    }
+    source.fillRegion(0, sourceTop, width, numRows);
+    fillRegion(0, top, width, numRows);
+    System.arraycopy(source.bits, sourceTop * rowSize, bits, top * rowSize, numRows * rowSize);
+  }
+
+  /**
+   * <p>Extracts a rectangular region as a new matrix, a word at a time.</p>
+   *
+   * @param left The horizontal position to begin at (inclusive)
+   * @param top The vertical position to begin at (inclusive)
+   * @param width The width of the region
+   * @param height The height of the region
+   * @return A new matrix of the given size, whose origin is (left, top) of this one
+   */
+  public BitMatrix crop(int left, int top, int width, int height) {
+    checkRegion(left, top, width, height);
+    fillRegion(left, top, width, height);
+    BitMatrix result = new BitMatrix(width, height);
+    int shift = left & 0x1f;
+    int lastMask = lastWordMask(width);
+    for (int y = 0; y < height; y++) {
+      int offset = (top + y) * rowSize + (left >> 5);
+      int end = (top + y + 1) * rowSize;
+      int resultOffset = y * result.rowSize;
+      for (int i = 0; i < result.rowSize; i++) {
+        int word = bits[offset + i] >>> shift;
+        if (shift != 0 && offset + i + 1 < end) {
+          word |= bits[offset + i + 1] << (32 - shift);
+        }
+        result.bits[resultOffset + i] = word;
+      }
+      result.bits[resultOffset + result.rowSize - 1] &= lastMask;
+    }
+    return result;
+  }
+
+  /**
+   * <p>Counts the bits which are set in a rectangular region.</p>
+   *
+   * @param left The horizontal position to begin at (inclusive)
+   * @param top The vertical position to begin at (inclusive)
+   * @param width The width of the region
+   * @param height The height of the region
+   * @return The number of set bits in the region
+   */
+  public int countSetBits(int left, int top, int width, int height) {
+    checkRegion(left, top, width, height);
+    fillRegion(left, top, width, height);
+    int right = left + width - 1;
+    int firstWord = left >> 5;
+    int lastWord = right >> 5;
+    int firstMask = -1 << (left & 0x1f);
+    // Ones up to and including the last bit; 2 << 31 is 0
+    int lastMask = (2 << (right & 0x1f)) - 1;
+    int count = 0;
+    for (int y = top; y < top + height; y++) {
+      int offset = y * rowSize;
+      for (int i = firstWord; i <= lastWord; i++) {
+        int word = bits[offset + i];
+        if (i == firstWord) {
+          word &= firstMask;
+        }
+        if (i == lastWord) {
+          word &= lastMask;
+        }
+        count += bitCount(word);
+      }
+    }
+    return count;
+  }
+
+  /**
+   * <p>Sets each bit of this matrix to the AND of it and the same bit of another.</p>
+   *
+   * @param other A matrix of the same dimensions
+   */
+  public void and(BitMatrix other) {
+    checkSameDimensions(other);
+    fillAll();
+    other.fillAll();
+    for (int i = 0; i < bits.length; i++) {
+      bits[i] &= other.bits[i];
+    }
+  }
+
+  /**
+   * <p>Sets each bit of this matrix to the OR of it and the same bit of another.</p>
+   *
+   * @param other A matrix of the same dimensions
+   */
+  public void or(BitMatrix other) {
+    checkSameDimensions(other);
+    fillAll();
+    other.fillAll();
+    for (int i = 0; i < bits.length; i++) {
+      bits[i] |= other.bits[i];
+    }
+  }
+
+  /**
+   * <p>Sets each bit of this matrix to the XOR of it and the same bit of another.</p>
+   *
+   * @param other A matrix of the same dimensions
+   */
+  public void xor(BitMatrix other) {
+    checkSameDimensions(other);
+    fillAll();
+    other.fillAll();
+    for (int i = 0; i < bits.length; i++) {
+      bits[i] ^= other.bits[i];
+    }
+  }
+
+  /**
+   * @return A new matrix holding this one rotated by 90 degrees clockwise
+   */
+  public BitMatrix rotate90() {
+    // Flipping upside down, then transposing, rotates clockwise
+    return flipVertically().transpose();
+  }
+
+  /**
+   * @return A new matrix holding this one rotated by 180 degrees
+   */
+  public BitMatrix rotate180() {
+    fillAll();
+    BitMatrix result = new BitMatrix(width, height);
+    // Reversing the words of a row, and the bits of each word, moves bit x to
+    // rowSize * 32 - 1 - x. Shifting right by the padding then puts it at width - 1 - x.
+    int padding = (rowSize << 5) - width;
+    for (int y = 0; y < height; y++) {
+      int offset = y * rowSize;
+      int resultOffset = (height - 1 - y) * rowSize;
+      for (int i = 0; i < rowSize; i++) {
+        int word = reverseBits(bits[offset + rowSize - 1 - i]) >>> padding;
+        if (padding != 0 && i + 1 < rowSize) {
+          word |= reverseBits(bits[offset + rowSize - 2 - i]) << (32 - padding);
+        }
+        result.bits[resultOffset + i] = word;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return A new matrix holding this one rotated by 90 degrees counterclockwise
+   */
+  public BitMatrix rotate270() {
+    return transpose().flipVertically();
+  }
+
+  /**
+   * @return A new matrix whose (y, x) bit is the (x, y) bit of this one
+   */
+  public BitMatrix transpose() {
+    fillAll();
+    BitMatrix result = new BitMatrix(height, width);
+    int[] block = new int[32];
+    for (int blockY = 0; blockY < height; blockY += 32) {
+      for (int blockX = 0; blockX < width; blockX += 32) {
+        int word = blockX >> 5;
+        for (int i = 0; i < 32; i++) {
+          int y = blockY + i;
+          block[i] = y < height ? bits[y * rowSize + word] : 0;
+        }
+        transpose32(block);
+        int resultWord = blockY >> 5;
+        int rows = Math.min(32, width - blockX);
+        for (int i = 0; i < rows; i++) {
+          result.bits[(blockX + i) * result.rowSize + resultWord] = block[i];
+        }
+      }
+    }
+    return result;
+  }
+
+  private BitMatrix flipVertically() {
+    fillAll();
+    BitMatrix result = new BitMatrix(width, height);
+    for (int y = 0; y < height; y++) {
+      System.arraycopy(bits, y * rowSize, result.bits, (height - 1 - y) * rowSize, rowSize);
+    }
+    return result;
+  }
+
+  // Transposes a 32x32 block of bits in place, where bit x of block[y] is (x, y), by swapping
+  // ever smaller off-diagonal sub-blocks; see Hacker's Delight, section 7-3.
+  private static void transpose32(int[] block) {
+    int mask = 0x0000FFFF;
+    for (int j = 16; j != 0; j >>>= 1, mask ^= mask << j) {
+      for (int k = 0; k < 32; k = ((k | j) + 1) & ~j) {
+        int t = ((block[k] >>> j) ^ block[k | j]) & mask;
+        block[k] ^= t << j;
+        block[k | j] ^= t;
+      }
+    }
+  }
+
+  // Integer.reverse() and Integer.bitCount() are not available in J2ME
+
+  private static int reverseBits(int i) {
+    i = (i & 0x55555555) << 1 | (i >>> 1) & 0x55555555;
+    i = (i & 0x33333333) << 2 | (i >>> 2) & 0x33333333;
+    i = (i & 0x0F0F0F0F) << 4 | (i >>> 4) & 0x0F0F0F0F;
+    return (i << 24) | ((i & 0xFF00) << 8) | ((i >>> 8) & 0xFF00) | (i >>> 24);
+  }
+
+  private static int bitCount(int i) {
+    i = i - ((i >>> 1) & 0x55555555);
+    i = (i & 0x33333333) + ((i >>> 2) & 0x33333333);
+    i = (i + (i >>> 4)) & 0x0F0F0F0F;
+    return (i * 0x01010101) >>> 24;
+  }
+
+  // Ones in the bits of a row's last word which lie inside the matrix
+  private static int lastWordMask(int width) {
+    int used = width & 0x1f;
+    return used == 0 ? -1 : (1 << used) - 1;
+  }
+
+  /**
+   * Computes the bits of a matrix on demand. See {@link BitMatrix#setTileFiller(TileFiller)}.
+   */
+  interface TileFiller {
+
+    /**
+     * Sets the black bits of the tile whose top left corner is (left, top). Tiles are 32 pixels
+     * wide and 8 high, less at the right and bottom edges of the matrix.
+     */
+    void fillTile(BitMatrix matrix, int left, int top);
+  }
+
+  /**
+   * Makes this matrix compute its bits one tile at a time, the first time any bit of a tile is
+   * read or written. The matrix must be clear.
+   */
+  void setTileFiller(TileFiller filler) {
+    int numTiles = ((height + (1 << TILE_HEIGHT_SHIFT) - 1) >> TILE_HEIGHT_SHIFT) * rowSize;
+    tileFiller = filler;
+    filledTiles = new int[(numTiles + 31) >> 5];
+    tilesLeft = numTiles;
+  }
+
+  // Fills the tile holding the given word of row y, if that hasn't been done yet.
+  private void fillTile(int word, int y) {
+    int tileTop = y >> TILE_HEIGHT_SHIFT;
+    int tile = tileTop * rowSize + word;
+    int mask = 1 << (tile & 0x1f);
+    if ((filledTiles[tile >> 5] & mask) == 0) {
+      // Mark it first, as the filler sets bits in the tile through set().
+      filledTiles[tile >> 5] |= mask;
+      TileFiller filler = tileFiller;
+      if (--tilesLeft == 0) {
+        tileFiller = null;
+        filledTiles = null;
+      }
+      filler.fillTile(this, word << 5, tileTop << TILE_HEIGHT_SHIFT);
+    }
+  }
+
+  private void fillRegion(int left, int top, int width, int height) {
+    int lastWord = (left + width - 1) >> 5;
+    int bottom = top + height - 1;
+    // The tile row holding row y starts at row y rounded down to a multiple of the tile height.
+    for (int y = top; tileFiller != null && y <= bottom;
+         y = ((y >> TILE_HEIGHT_SHIFT) + 1) << TILE_HEIGHT_SHIFT) {
+      for (int word = left >> 5; tileFiller != null && word <= lastWord; word++) {
+        fillTile(word, y);
+      }
+    }
+  }
+
+  private void fillAll() {
+    if (tileFiller != null) {
+      fillRegion(0, 0, width, height);
+    }
+  }
+
+  private void checkRegion(int left, int top, int width, int height) {
+    if (top < 0 || left < 0) {
+      throw new IllegalArgumentException("Left and top must be nonnegative");
+    }
+    if (height < 1 || width < 1) {
+      throw new IllegalArgumentException("Height and width must be at least 1");
+    }
+    if (top + height > this.height || left + width > this.width) {
+      throw new IllegalArgumentException("The region must fit inside the matrix");
+    }
+  }
+
+  private void checkSameDimensions(BitMatrix other) {
+    if (width != other.width || height != other.height) {
+      throw new IllegalArgumentException("Dimensions must match");
+    }
+  }
+
   /**
    * This is useful in detecting a corner of a 'pure' barcode.
    * 
    * @return {x,y} coordinate of top-left-most 1 bit, or null if it is all white
    */
   public int[] getTopLeftOnBit() {
+    fillAll();
     int bitsOffset = 0;
     while (bitsOffset < bits.length && bits[bitsOffset] == 0) {
       bitsOffset++;
@@ -189,6 +532,8 @@ public final class BitMatrix {
       return false;
     }
     BitMatrix other = (BitMatrix) o;
+    fillAll();
+    other.fillAll();
     if (width != other.width || height != other.height ||
         rowSize != other.rowSize || bits.length != other.bits.length) {
       return false;
@@ -202,6 +547,7 @@ public final class BitMatrix {
   }
 
   public int hashCode() {
+    fillAll();
     int hash = width;
     hash = 31 * hash + width;
     hash = 31 * hash + height;
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2010 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.common;
+
+/**
+ * <p>Holds the large buffers needed to binarize an image so that they can be reused from one
+ * frame to the next, instead of being allocated anew for every image. Pass the same instance to
+ * the {@link HybridBinarizer}, {@link LocalMeanBinarizer} or {@link GlobalHistogramBinarizer}
+ * created for each frame, and decode with
+ * {@link com.google.zxing.MultiFormatReader#decodeWithState(com.google.zxing.BinaryBitmap)};
+ * once frames of the same size have been seen, binarizing and decoding them allocates almost
+ * nothing.</p>
+ *
+ * <p>A context is not thread-safe: use one per decoding thread. The {@link BitMatrix} produced by
+ * a binarizer using a context is only valid until the next image is binarized with the same
+ * context, so don't hold on to it, or to the {@link com.google.zxing.BinaryBitmap} it came
+ * from, across frames.</p>
+ */
+public final class DecodeContext {
+
+  private byte[] luminances;
+  private byte[] rowLuminances;
+  private int[] buckets;
+  private int[][] blackPoints;
+  private int[] integralImage;
+  private BitMatrix matrix;
+
+  /**
+   * @return an array of at least size bytes, with arbitrary contents
+   */
+  byte[] getLuminances(int size) {
+    if (luminances == null || luminances.length < size) {
+      luminances = new byte[size];
+    }
+    return luminances;
+  }
+
+  /**
+   * @return an array of at least width bytes, with arbitrary contents, distinct from the one
+   *  returned by {@link #getLuminances(int)}
+   */
+  byte[] getRowLuminances(int width) {
+    if (rowLuminances == null || rowLuminances.length < width) {
+      rowLuminances = new byte[width];
+    }
+    return rowLuminances;
+  }
+
+  /**
+   * @return an array of exactly numBuckets ints, all zero
+   */
+  int[] getBuckets(int numBuckets) {
+    if (buckets == null || buckets.length != numBuckets) {
+      buckets = new int[numBuckets];
+    } else {
+      for (int x = 0; x < numBuckets; x++) {
+        buckets[x] = 0;
+      }
+    }
+    return buckets;
+  }
+
+  /**
+   * @return a subHeight x subWidth array, with arbitrary contents
+   */
+  int[][] getBlackPoints(int subWidth, int subHeight) {
+    if (blackPoints == null || blackPoints.length != subHeight ||
+        (subHeight > 0 && blackPoints[0].length != subWidth)) {
+      blackPoints = new int[subHeight][subWidth];
+    }
+    return blackPoints;
+  }
+
+  /**
+   * @return an array of at least size ints, with arbitrary contents
+   */
+  int[] getIntegralImage(int size) {
+    if (integralImage == null || integralImage.length < size) {
+      integralImage = new int[size];
+    }
+    return integralImage;
+  }
+
+  /**
+   * @return a matrix of exactly the given dimensions, all clear
+   */
+  BitMatrix getBitMatrix(int width, int height) {
+    if (matrix == null || matrix.getWidth() != width || matrix.getHeight() != height) {
+      matrix = new BitMatrix(width, height);
+    } else {
+      matrix.clear();
+    }
+    return matrix;
+  }
+
+}
@@ -37,11 +37,24 @@ public class GlobalHistogramBinarizer extends Binarizer {
   private static final int LUMINANCE_SHIFT = 8 - LUMINANCE_BITS;
   private static final int LUMINANCE_BUCKETS = 1 << LUMINANCE_BITS;
 
+  private final DecodeContext context;
   private byte[] luminances = null;
   private int[] buckets = null;
 
   public GlobalHistogramBinarizer(LuminanceSource source) {
+    this(source, null);
+  }
+
+  /**
+   * Creates a binarizer which takes its buffers from the given {@link DecodeContext} instead of
+   * allocating them for each image. See that class for the restrictions this implies.
+   *
+   * @param source The LuminanceSource to binarize
+   * @param context The buffers to reuse, or null to allocate new ones
+   */
+  public GlobalHistogramBinarizer(LuminanceSource source, DecodeContext context) {
     super(source);
+    this.context = context;
   }
 
   // Applies simple sharpening to the row data to improve performance of the 1D Readers.
@@ -83,7 +96,8 @@ public class GlobalHistogramBinarizer extends Binarizer {
     LuminanceSource source = getLuminanceSource();
     int width = source.getWidth();
     int height = source.getHeight();
-    BitMatrix matrix = new BitMatrix(width, height);
+    BitMatrix matrix = context == null ? new BitMatrix(width, height) :
+        context.getBitMatrix(width, height);
 
     // Quickly calculates the histogram by sampling four rows from the image. This proved to be
     // more robust on the blackbox tests than sampling a diagonal as we used to do.
@@ -103,25 +117,48 @@ public class GlobalHistogramBinarizer extends Binarizer {
     // We delay reading the entire image luminance until the black point estimation succeeds.
     // Although we end up reading four rows twice, it is consistent with our motto of
     // "fail quickly" which is necessary for continuous scanning.
-    byte[] localLuminances = source.getMatrix();
-    for (int y = 0; y < height; y++) {
-      int offset = y * width;
-      for (int x = 0; x< width; x++) {
-        int pixel = localLuminances[offset + x] & 0xff;
-        if (pixel < blackPoint) {
-          matrix.set(x, y);
-        }
+    if (context == null) {
+      byte[] localLuminances = source.getMatrix();
+      for (int y = 0; y < height; y++) {
+        thresholdRow(localLuminances, y * width, width, blackPoint, matrix, y);
+      }
+    } else {
+      // Fetching one row at a time into our own buffer avoids getMatrix(), which may allocate.
+      for (int y = 0; y < height; y++) {
+        byte[] localLuminances = source.getRow(y, luminances);
+        thresholdRow(localLuminances, 0, width, blackPoint, matrix, y);
       }
     }
 
     return matrix;
   }
 
+  private static void thresholdRow(byte[] luminances, int offset, int width, int blackPoint,
+      BitMatrix matrix, int y) {
+    for (int x = 0; x < width; x++) {
+      int pixel = luminances[offset + x] & 0xff;
+      if (pixel < blackPoint) {
+        matrix.set(x, y);
+      }
+    }
+  }
+
+  // Does not pass on the DecodeContext: the new binarizer would overwrite our buffers while
+  // our results might still be in use.
   public Binarizer createBinarizer(LuminanceSource source) {
     return new GlobalHistogramBinarizer(source);
   }
 
+  DecodeContext getDecodeContext() {
+    return context;
+  }
+
   private void initArrays(int luminanceSize) {
+    if (context != null) {
+      luminances = context.getRowLuminances(luminanceSize);
+      buckets = context.getBuckets(LUMINANCE_BUCKETS);
+      return;
+    }
     if (luminances == null || luminances.length < luminanceSize) {
       luminances = new byte[luminanceSize];
     }
@@ -43,10 +43,67 @@ public final class HybridBinarizer extends GlobalHistogramBinarizer {
   // So this is the smallest dimension in each axis we can accept.
   private static final int MINIMUM_DIMENSION = 40;
 
+  // Below this many pixels it is cheaper to binarize on one thread than to start others.
+  private static final int MINIMUM_PARALLEL_PIXELS = 1 << 18;
+
+  private final int numThreads;
+  private final boolean lazy;
   private BitMatrix matrix = null;
 
   public HybridBinarizer(LuminanceSource source) {
-    super(source);
+    this(source, 1);
+  }
+
+  /**
+   * Creates a binarizer which splits large images into horizontal bands and binarizes them on up
+   * to numThreads threads, including the calling thread. The result is identical to that of the
+   * single threaded version. This is only worthwhile for multi-megapixel images on machines with
+   * several cores; small images are always binarized on the calling thread.
+   *
+   * @param source The LuminanceSource to binarize
+   * @param numThreads The maximum number of threads to use, at least 1
+   */
+  public HybridBinarizer(LuminanceSource source, int numThreads) {
+    this(source, numThreads, null);
+  }
+
+  /**
+   * As above, but also takes the luminance copy, black points and matrix from the given
+   * {@link DecodeContext} instead of allocating them for each image. See that class for the
+   * restrictions this implies.
+   *
+   * @param source The LuminanceSource to binarize
+   * @param numThreads The maximum number of threads to use, at least 1
+   * @param context The buffers to reuse, or null to allocate new ones
+   */
+  public HybridBinarizer(LuminanceSource source, int numThreads, DecodeContext context) {
+    this(source, numThreads, context, false);
+  }
+
+  /**
+   * Creates a binarizer whose matrix is thresholded lazily: {@link #getBlackMatrix()} returns at
+   * once, and each 32x8 tile of the matrix, and the black points of the blocks around it, are
+   * only computed the first time a detector reads that tile. The bits which come out are the same
+   * as those of the eager version. This saves time when only part of a large image is ever read,
+   * as when the finder pattern search skips many rows at a time, but the matrix must then not be
+   * read from several threads at once.
+   *
+   * @param source The LuminanceSource to binarize
+   * @param lazy Whether to threshold tiles only when they are first read
+   * @param context The buffers to reuse, or null to allocate new ones
+   */
+  public HybridBinarizer(LuminanceSource source, boolean lazy, DecodeContext context) {
+    this(source, 1, context, lazy);
+  }
+
+  private HybridBinarizer(LuminanceSource source, int numThreads, DecodeContext context,
+      boolean lazy) {
+    super(source, context);
+    if (numThreads < 1) {
+      throw new IllegalArgumentException("Need at least one thread");
+    }
+    this.numThreads = numThreads;
+    this.lazy = lazy;
   }
 
   public BitMatrix getBlackMatrix() throws NotFoundException {
@@ -54,8 +111,9 @@ public final class HybridBinarizer extends GlobalHistogramBinarizer {
     return matrix;
   }
 
+  // As in GlobalHistogramBinarizer, the DecodeContext is not shared with the new binarizer.
   public Binarizer createBinarizer(LuminanceSource source) {
-    return new HybridBinarizer(source);
+    return new HybridBinarizer(source, numThreads, null, lazy);
   }
 
   // Calculates the final BitMatrix once for all requests. This could be called once from the
@@ -65,15 +123,49 @@ public final class HybridBinarizer extends GlobalHistogramBinarizer {
     if (matrix == null) {
       LuminanceSource source = getLuminanceSource();
       if (source.getWidth() >= MINIMUM_DIMENSION && source.getHeight() >= MINIMUM_DIMENSION) {
-        byte[] luminances = source.getMatrix();
-        int width = source.getWidth();
+        DecodeContext context = getDecodeContext();
+        final int width = source.getWidth();
         int height = source.getHeight();
-        int subWidth = width >> 3;
-        int subHeight = height >> 3;
-        int[][] blackPoints = calculateBlackPoints(luminances, subWidth, subHeight, width);
+        final int subWidth = width >> 3;
+        final int subHeight = height >> 3;
+        final byte[] luminances;
+        final int[][] blackPoints;
+        final BitMatrix newMatrix;
+        if (context == null) {
+          luminances = source.getMatrix();
+          blackPoints = new int[subHeight][subWidth];
+          newMatrix = new BitMatrix(width, height);
+        } else {
+          luminances = copyLuminances(source, context);
+          blackPoints = context.getBlackPoints(subWidth, subHeight);
+          newMatrix = context.getBitMatrix(width, height);
+        }
 
-        matrix = new BitMatrix(width, height);
-        calculateThresholdForBlock(luminances, subWidth, subHeight, width, blackPoints, matrix);
+        if (lazy) {
+          newMatrix.setTileFiller(
+              new LazyThresholds(luminances, subWidth, subHeight, width, blackPoints));
+        } else if (numThreads > 1 && width * height >= MINIMUM_PARALLEL_PIXELS) {
+          // Each band of block rows only writes its own rows of blackPoints and of the matrix,
+          // and every int in the matrix belongs to a single row, so bands never share a word.
+          // The thresholds near a band's edges read black points from the neighboring bands,
+          // so all black points must be known before any thresholding starts.
+          new ParallelBands() {
+            protected void processBand(int start, int end) {
+              calculateBlackPoints(luminances, subWidth, width, blackPoints, start, end);
+            }
+          }.run(subHeight, numThreads);
+          new ParallelBands() {
+            protected void processBand(int start, int end) {
+              calculateThresholdForBlock(luminances, subWidth, subHeight, width, blackPoints,
+                  newMatrix, start, end);
+            }
+          }.run(subHeight, numThreads);
+        } else {
+          calculateBlackPoints(luminances, subWidth, width, blackPoints, 0, subHeight);
+          calculateThresholdForBlock(luminances, subWidth, subHeight, width, blackPoints,
+              newMatrix, 0, subHeight);
+        }
+        matrix = newMatrix;
       } else {
         // If the image is too small, fall back to the global histogram approach.
         matrix = super.getBlackMatrix();
@@ -81,13 +173,28 @@ public final class HybridBinarizer extends GlobalHistogramBinarizer {
     }
   }
 
+  // Copies the image into the context's buffer one row at a time, since getMatrix() is free to
+  // allocate a new array on every call.
+  static byte[] copyLuminances(LuminanceSource source, DecodeContext context) {
+    int width = source.getWidth();
+    int height = source.getHeight();
+    byte[] luminances = context.getLuminances(width * height);
+    byte[] row = context.getRowLuminances(width);
+    for (int y = 0; y < height; y++) {
+      row = source.getRow(y, row);
+      System.arraycopy(row, 0, luminances, y * width, width);
+    }
+    return luminances;
+  }
+
   // For each 8x8 block in the image, calculate the average black point using a 5x5 grid
   // of the blocks around it. Also handles the corner cases, but will ignore up to 7 pixels
   // on the right edge and 7 pixels at the bottom of the image if the overall dimensions are not
   // multiples of eight. In practice, leaving those pixels white does not seem to be a problem.
+  // Only block rows startY (inclusive) to endY (exclusive) are thresholded.
   private static void calculateThresholdForBlock(byte[] luminances, int subWidth, int subHeight,
-      int stride, int[][] blackPoints, BitMatrix matrix) {
-    for (int y = 0; y < subHeight; y++) {
+      int stride, int[][] blackPoints, BitMatrix matrix, int startY, int endY) {
+    for (int y = startY; y < endY; y++) {
       for (int x = 0; x < subWidth; x++) {
         int left = (x > 1) ? x : 2;
         left = (left < subWidth - 2) ? left : subWidth - 3;
@@ -108,6 +215,28 @@ public final class HybridBinarizer extends GlobalHistogramBinarizer {
     }
   }
 
+  // The same, but for a single block, computing any of the black points it needs which are
+  // still unknown (negative). Gives exactly the same results.
+  private static void calculateThresholdForBlockLazily(byte[] luminances, int subWidth,
+      int subHeight, int stride, int[][] blackPoints, BitMatrix matrix, int x, int y) {
+    int left = (x > 1) ? x : 2;
+    left = (left < subWidth - 2) ? left : subWidth - 3;
+    int top = (y > 1) ? y : 2;
+    top = (top < subHeight - 2) ? top : subHeight - 3;
+    int sum = 0;
+    for (int z = -2; z <= 2; z++) {
+      int[] blackRow = blackPoints[top + z];
+      for (int xx = left - 2; xx <= left + 2; xx++) {
+        if (blackRow[xx] < 0) {
+          calculateBlackPoints(luminances, xx, xx + 1, stride, blackPoints, top + z, top + z + 1);
+        }
+        sum += blackRow[xx];
+      }
+    }
+    int average = sum / 25;
+    threshold8x8Block(luminances, x << 3, y << 3, average, stride, matrix);
+  }
+
   // Applies a single threshold to an 8x8 block of pixels.
   private static void threshold8x8Block(byte[] luminances, int xoffset, int yoffset, int threshold,
       int stride, BitMatrix matrix) {
@@ -122,12 +251,18 @@ public final class HybridBinarizer extends GlobalHistogramBinarizer {
     }
   }
 
-  // Calculates a single black point for each 8x8 block of pixels and saves it away.
-  private static int[][] calculateBlackPoints(byte[] luminances, int subWidth, int subHeight,
-      int stride) {
-    int[][] blackPoints = new int[subHeight][subWidth];
-    for (int y = 0; y < subHeight; y++) {
-      for (int x = 0; x < subWidth; x++) {
+  // Calculates a single black point for each 8x8 block of pixels in block rows startY (inclusive)
+  // to endY (exclusive) and saves it away.
+  private static void calculateBlackPoints(byte[] luminances, int subWidth, int stride,
+      int[][] blackPoints, int startY, int endY) {
+    calculateBlackPoints(luminances, 0, subWidth, stride, blackPoints, startY, endY);
+  }
+
+  // As above, for block columns startX (inclusive) to endX (exclusive) only.
+  private static void calculateBlackPoints(byte[] luminances, int startX, int endX, int stride,
+      int[][] blackPoints, int startY, int endY) {
+    for (int y = startY; y < endY; y++) {
+      for (int x = startX; x < endX; x++) {
         int sum = 0;
         int min = 255;
         int max = 0;
@@ -152,7 +287,47 @@ public final class HybridBinarizer extends GlobalHistogramBinarizer {
         blackPoints[y][x] = average;
       }
     }
-    return blackPoints;
+  }
+
+  // Thresholds the blocks of one tile of a lazily computed matrix at a time. Tiles are one block
+  // high and four blocks wide.
+  private static final class LazyThresholds implements BitMatrix.TileFiller {
+
+    private final byte[] luminances;
+    private final int subWidth;
+    private final int subHeight;
+    private final int stride;
+    private final int[][] blackPoints;
+
+    LazyThresholds(byte[] luminances, int subWidth, int subHeight, int stride,
+        int[][] blackPoints) {
+      this.luminances = luminances;
+      this.subWidth = subWidth;
+      this.subHeight = subHeight;
+      this.stride = stride;
+      this.blackPoints = blackPoints;
+      // No black point has been calculated yet.
+      for (int y = 0; y < subHeight; y++) {
+        int[] blackRow = blackPoints[y];
+        for (int x = 0; x < subWidth; x++) {
+          blackRow[x] = -1;
+        }
+      }
+    }
+
+    public void fillTile(BitMatrix matrix, int left, int top) {
+      int y = top >> 3;
+      // As in the eager version, pixels beyond the last whole block stay white.
+      if (y >= subHeight) {
+        return;
+      }
+      int startX = left >> 3;
+      int endX = Math.min(subWidth, startX + 4);
+      for (int x = startX; x < endX; x++) {
+        calculateThresholdForBlockLazily(luminances, subWidth, subHeight, stride, blackPoints,
+            matrix, x, y);
+      }
+    }
   }
 
 }
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2010 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.zxing.common;
+
+import com.google.zxing.Binarizer;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+
+/**
+ * This Binarizer compares every pixel with the mean luminance of a square window centered on it,
+ * as described by Bradley and Roth: a pixel is black if it is at least a given percentage darker
+ * than that mean. The means come from a summed-area table built once per image, so the cost per
+ * pixel is constant whatever the window size, and the whole image costs time linear in its number
+ * of pixels. Unlike the fixed 8x8 blocks of {@link HybridBinarizer} the window can be made large
+ * enough to span several modules, which copes well with uneven lighting across an image.
+ *
+ * The window should be larger than the largest black area in a symbol, since the middle of a
+ * uniformly dark area larger than the window is no darker than its own mean. By default it is an
+ * eighth of the smaller dimension of the image.
+ *
+ * As with HybridBinarizer, 1D rows still use the global histogram approach of the superclass.
+ */
+public final class LocalMeanBinarizer extends GlobalHistogramBinarizer {
+
+  // Below this many pixels it is cheaper to threshold on one thread than to start others.
+  private static final int MINIMUM_PARALLEL_PIXELS = 1 << 18;
+
+  private static final int MINIMUM_WINDOW_SIZE = 16;
+
+  // Sums in the table are allowed to overflow, since the sums over a window are all found by
+  // adding and subtracting table entries; they come out right as long as the true sum over the
+  // largest window, 255 * MAXIMUM_WINDOW_SIZE^2, fits in an int.
+  private static final int MAXIMUM_WINDOW_SIZE = 2048;
+
+  private static final int DEFAULT_PERCENT = 5;
+
+  private final int windowSize;
+  private final int percent;
+  private final int numThreads;
+  private BitMatrix matrix = null;
+
+  public LocalMeanBinarizer(LuminanceSource source) {
+    this(source, 0, DEFAULT_PERCENT, 1, null);
+  }
+
+  /**
+   * @param source The LuminanceSource to binarize
+   * @param windowSize The side of the window to average over, in pixels, or 0 to choose one from
+   *  the size of the image
+   * @param percent How much darker than the mean of its window a pixel must be to be black, as a
+   *  percentage of the mean, from 0 to 99. The default is 5.
+   */
+  public LocalMeanBinarizer(LuminanceSource source, int windowSize, int percent) {
+    this(source, windowSize, percent, 1, null);
+  }
+
+  /**
+   * As above, but also splits large images into horizontal bands and thresholds them on up to
+   * numThreads threads, including the calling thread, and takes its buffers from the given
+   * {@link DecodeContext} instead of allocating them for each image. The result is the same
+   * either way.
+   *
+   * @param source The LuminanceSource to binarize
+   * @param windowSize The side of the window to average over, or 0 to choose one
+   * @param percent How much darker than the mean a pixel must be to be black, from 0 to 99
+   * @param numThreads The maximum number of threads to use, at least 1
+   * @param context The buffers to reuse, or null to allocate new ones
+   */
+  public LocalMeanBinarizer(LuminanceSource source, int windowSize, int percent, int numThreads,
+      DecodeContext context) {
+    super(source, context);
+    if (windowSize < 0 || windowSize > MAXIMUM_WINDOW_SIZE) {
+      throw new IllegalArgumentException("Bad window size: " + windowSize);
+    }
+    if (percent < 0 || percent >= 100) {
+      throw new IllegalArgumentException("Bad percentage: " + percent);
+    }
+    if (numThreads < 1) {
+      throw new IllegalArgumentException("Need at least one thread");
+    }
+    this.windowSize = windowSize;
+    this.percent = percent;
+    this.numThreads = numThreads;
+  }
+
+  public BitMatrix getBlackMatrix() throws NotFoundException {
+    binarizeEntireImage();
+    return matrix;
+  }
+
+  // As in GlobalHistogramBinarizer, the DecodeContext is not shared with the new binarizer.
+  public Binarizer createBinarizer(LuminanceSource source) {
+    return new LocalMeanBinarizer(source, windowSize, percent, numThreads, null);
+  }
+
+  private void binarizeEntireImage() {
+    if (matrix == null) {
+      LuminanceSource source = getLuminanceSource();
+      final int width = source.getWidth();
+      final int height = source.getHeight();
+      DecodeContext context = getDecodeContext();
+      final byte[] luminances;
+      final int[] integral;
+      final BitMatrix newMatrix;
+      int integralSize = (width + 1) * (height + 1);
+      if (context == null) {
+        luminances = source.getMatrix();
+        integral = new int[integralSize];
+        newMatrix = new BitMatrix(width, height);
+      } else {
+        luminances = HybridBinarizer.copyLuminances(source, context);
+        integral = context.getIntegralImage(integralSize);
+        newMatrix = context.getBitMatrix(width, height);
+      }
+      buildIntegralImage(luminances, width, height, integral);
+
+      int window = windowSize;
+      if (window == 0) {
+        // Capped like an explicit window size, or the sums over it could overflow
+        window = Math.min(MAXIMUM_WINDOW_SIZE,
+            Math.max(MINIMUM_WINDOW_SIZE, Math.min(width, height) >> 3));
+      }
+      final int radius = window >> 1;
+      if (numThreads > 1 && width * height >= MINIMUM_PARALLEL_PIXELS) {
+        // Each band only writes its own rows of the matrix, and every int in the matrix belongs
+        // to a single row, so bands never share a word.
+        new ParallelBands() {
+          protected void processBand(int start, int end) {
+            threshold(luminances, integral, width, height, radius, newMatrix, start, end);
+          }
+        }.run(height, numThreads);
+      } else {
+        threshold(luminances, integral, width, height, radius, newMatrix, 0, height);
+      }
+      matrix = newMatrix;
+    }
+  }
+
+  /**
+   * Fills in integral so that integral[y * (width + 1) + x] is the sum of all luminances above
+   * and to the left of (x, y), exclusive. The first row and column are therefore zero.
+   */
+  private static void buildIntegralImage(byte[] luminances, int width, int height,
+      int[] integral) {
+    int stride = width + 1;
+    for (int x = 0; x < stride; x++) {
+      integral[x] = 0;
+    }
+    for (int y = 0; y < height; y++) {
+      int offset = y * width;
+      int previous = y * stride;
+      int current = previous + stride;
+      integral[current] = 0;
+      int rowSum = 0;
+      for (int x = 1; x <= width; x++) {
+        rowSum += luminances[offset + x - 1] & 0xff;
+        integral[current + x] = integral[previous + x] + rowSum;
+      }
+    }
+  }
+
+  // Thresholds rows start (inclusive) to end (exclusive). Windows are clipped at the edges of the
+  // image, so pixels near the edges are compared with the mean of a smaller area.
+  private void threshold(byte[] luminances, int[] integral, int width, int height, int radius,
+      BitMatrix matrix, int start, int end) {
+    int stride = width + 1;
+    int keep = 100 - percent;
+    // Columns whose windows fit entirely within the image, from firstInner to lastInner.
+    int firstInner = radius;
+    int lastInner = width - radius - 1;
+    for (int y = start; y < end; y++) {
+      int top = Math.max(0, y - radius);
+      int bottom = Math.min(height, y + radius + 1);
+      int topRow = top * stride;
+      int bottomRow = bottom * stride;
+      int rows = bottom - top;
+      int offset = y * width;
+      for (int x = 0; x < width; x++) {
+        if (x == firstInner && firstInner <= lastInner) {
+          // Here every window has the same area, and its sides are a fixed distance either side
+          // of x, so there is no clipping to do.
+          long area = (long) rows * ((radius << 1) + 1) * 100;
+          int topLeft = topRow - radius;
+          int topRight = topRow + radius + 1;
+          int bottomLeft = bottomRow - radius;
+          int bottomRight = bottomRow + radius + 1;
+          for (; x <= lastInner; x++) {
+            int sum = integral[bottomRight + x] - integral[bottomLeft + x] -
+                integral[topRight + x] + integral[topLeft + x];
+            if ((luminances[offset + x] & 0xff) * area <= (long) sum * keep) {
+              matrix.set(x, y);
+            }
+          }
+          x--;
+          continue;
+        }
+        int left = Math.max(0, x - radius);
+        int right = Math.min(width, x + radius + 1);
+        int sum = integral[bottomRow + right] - integral[bottomRow + left] -
+            integral[topRow + right] + integral[topRow + left];
+        int count = rows * (right - left);
+        // pixel <= mean * keep / 100, without dividing.
+        if ((long) (luminances[offset + x] & 0xff) * count * 100 <= (long) sum * keep) {
+          matrix.set(x, y);
+        }
+      }
+    }
+  }
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2010 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.common;
+
+/**
+ * Splits work over a range of rows (of pixels, or of blocks of pixels) into contiguous bands and
+ * runs each band on its own thread, returning once all of them have finished. The calling thread
+ * processes the last band itself. Plain {@link Thread}s are used since J2ME has no
+ * java.util.concurrent; for the multi-megapixel images this is meant for, the cost of starting
+ * a few threads is small next to the work in each band.
+ *
+ * Subclasses must make sure that bands only write to disjoint state. Everything written by a
+ * band is visible to the caller after {@link #run(int, int)} returns.
+ *
+ * The rows need not be rows of an image; the multiple barcode readers run bands of candidate
+ * symbols this way.
+ */
+public abstract class ParallelBands {
+
+  private RuntimeException failure;
+
+  /**
+   * Does the work for rows start (inclusive) to end (exclusive).
+   */
+  protected abstract void processBand(int start, int end);
+
+  /**
+   * @param count number of rows to process
+   * @param numThreads maximum number of threads to use, including the calling thread
+   */
+  public final void run(int count, int numThreads) {
+    int numBands = numThreads < count ? numThreads : count;
+    if (numBands <= 1) {
+      processBand(0, count);
+      return;
+    }
+    failure = null;
+    Thread[] threads = new Thread[numBands - 1];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread(new Band(count * i / numBands, count * (i + 1) / numBands));
+      threads[i].start();
+    }
+    processBand(count * (numBands - 1) / numBands, count);
+
+    boolean interrupted = false;
+    for (int i = 0; i < threads.length; i++) {
+      // The bands write into shared arrays, so we can't return until they're all done.
+      while (true) {
+        try {
+          threads[i].join();
+          break;
+        } catch (InterruptedException ie) {
+          interrupted = true;
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    RuntimeException bandFailure = getFailure();
+    if (bandFailure != null) {
+      throw bandFailure;
+    }
+  }
+
+  private synchronized void setFailure(RuntimeException re) {
+    if (failure == null) {
+      failure = re;
+    }
+  }
+
+  private synchronized RuntimeException getFailure() {
+    return failure;
+  }
+
+  private final class Band implements Runnable {
+
+    private final int start;
+    private final int end;
+
+    Band(int start, int end) {
+      this.start = start;
+      this.end = end;
+    }
+
+    public void run() {
+      try {
+        processBand(start, end);
+      } catch (RuntimeException re) {
+        setFailure(re);
+      }
+    }
+  }
+
+}
@@ -31,6 +31,14 @@ package com.google.zxing.common.reedsolomon;
  * (see discussion of Euclidean algorithm)</li>
  * </ul>
  *
+ * <p>Decoding runs on arrays of ints, which are kept between calls so that decoding allocates
+ * nothing once they are large enough. Syndromes are computed with Horner's rule using a
+ * multiplication table per power, the error locator with the Berlekamp-Massey algorithm, error
+ * positions with Chien's search and error values with Forney's formula, all in the log domain.</p>
+ *
+ * <p>Because of that scratch space, instances are not thread-safe. Each thread needs its own, as
+ * it would anyway have its own QR Code or Data Matrix Decoder, which each create one.</p>
+ *
  * <p>Much credit is due to William Rucklidge since portions of this code are an indirect
  * port of his C++ Reed-Solomon implementation.</p>
  *
@@ -40,10 +48,32 @@ package com.google.zxing.common.reedsolomon;
  */
 public final class ReedSolomonDecoder {
 
-  private final GF256 field;
+  private final boolean dataMatrix;
+  // exp[i] is 2^i for all i up to 510, so that the sum of two logs never needs reducing mod 255
+  private final int[] exp;
+  private final int[] log;
+
+  // multiplyBy[i][a] is a * 2^i, built as each power is first needed for a syndrome
+  private final byte[][] multiplyBy;
+
+  // Scratch space, grown as needed
+  private int[] syndromes;
+  private int[] locator;
+  private int[] previousLocator;
+  private int[] temp;
+  private int[] errorPowers;
 
   public ReedSolomonDecoder(GF256 field) {
-    this.field = field;
+    dataMatrix = field.equals(GF256.DATA_MATRIX_FIELD);
+    exp = new int[512];
+    for (int i = 0; i < exp.length; i++) {
+      exp[i] = field.exp(i % 255);
+    }
+    log = new int[256];
+    for (int i = 1; i < log.length; i++) {
+      log[i] = field.log(i);
+    }
+    multiplyBy = new byte[255][];
   }
 
   /**
@@ -56,134 +86,190 @@ public final class ReedSolomonDecoder {
    * @throws ReedSolomonException if decoding fails for any reason
    */
   public void decode(int[] received, int twoS) throws ReedSolomonException {
-    GF256Poly poly = new GF256Poly(field, received);
-    int[] syndromeCoefficients = new int[twoS];
-    boolean dataMatrix = field.equals(GF256.DATA_MATRIX_FIELD);
-    boolean noError = true;
-    for (int i = 0; i < twoS; i++) {
-      // Thanks to sanfordsquires for this fix:
-      int eval = poly.evaluateAt(field.exp(dataMatrix ? i + 1 : i));
-      syndromeCoefficients[syndromeCoefficients.length - 1 - i] = eval;
-      if (eval != 0) {
-        noError = false;
-      }
-    }
-    if (noError) {
+    ensureCapacity(twoS);
+    if (computeSyndromes(received, twoS)) {
       return;
     }
-    GF256Poly syndrome = new GF256Poly(field, syndromeCoefficients);
-    GF256Poly[] sigmaOmega =
-        runEuclideanAlgorithm(field.buildMonomial(twoS, 1), syndrome, twoS);
-    GF256Poly sigma = sigmaOmega[0];
-    GF256Poly omega = sigmaOmega[1];
-    int[] errorLocations = findErrorLocations(sigma);
-    int[] errorMagnitudes = findErrorMagnitudes(omega, errorLocations, dataMatrix);
-    for (int i = 0; i < errorLocations.length; i++) {
-      int position = received.length - 1 - field.log(errorLocations[i]);
-      if (position < 0) {
-        throw new ReedSolomonException("Bad error location");
-      }
-      received[position] = GF256.addOrSubtract(received[position], errorMagnitudes[i]);
+    int numErrors = runBerlekampMassey(twoS);
+    if (numErrors > twoS / 2) {
+      throw new ReedSolomonException("Too many errors");
     }
+    if (findErrorPowers(numErrors, received.length) != numErrors) {
+      throw new ReedSolomonException("Error locator degree does not match number of roots");
+    }
+    correctErrors(received, numErrors);
   }
 
-  private GF256Poly[] runEuclideanAlgorithm(GF256Poly a, GF256Poly b, int R)
-      throws ReedSolomonException {
-    // Assume a's degree is >= b's
-    if (a.getDegree() < b.getDegree()) {
-      GF256Poly temp = a;
-      a = b;
-      b = temp;
+  private void ensureCapacity(int twoS) {
+    if (syndromes == null || syndromes.length < twoS) {
+      syndromes = new int[twoS];
+      locator = new int[twoS + 1];
+      previousLocator = new int[twoS + 1];
+      temp = new int[twoS + 1];
+      errorPowers = new int[twoS + 1];
     }
+  }
 
-    GF256Poly rLast = a;
-    GF256Poly r = b;
-    GF256Poly sLast = field.getOne();
-    GF256Poly s = field.getZero();
-    GF256Poly tLast = field.getZero();
-    GF256Poly t = field.getOne();
-
-    // Run Euclidean algorithm until r's degree is less than R/2
-    while (r.getDegree() >= R / 2) {
-      GF256Poly rLastLast = rLast;
-      GF256Poly sLastLast = sLast;
-      GF256Poly tLastLast = tLast;
-      rLast = r;
-      sLast = s;
-      tLast = t;
-
-      // Divide rLastLast by rLast, with quotient in q and remainder in r
-      if (rLast.isZero()) {
-        // Oops, Euclidean algorithm already terminated?
-        throw new ReedSolomonException("r_{i-1} was zero");
-      }
-      r = rLastLast;
-      GF256Poly q = field.getZero();
-      int denominatorLeadingTerm = rLast.getCoefficient(rLast.getDegree());
-      int dltInverse = field.inverse(denominatorLeadingTerm);
-      while (r.getDegree() >= rLast.getDegree() && !r.isZero()) {
-        int degreeDiff = r.getDegree() - rLast.getDegree();
-        int scale = field.multiply(r.getCoefficient(r.getDegree()), dltInverse);
-        q = q.addOrSubtract(field.buildMonomial(degreeDiff, scale));
-        r = r.addOrSubtract(rLast.multiplyByMonomial(degreeDiff, scale));
+  // Evaluates the received polynomial at 2^i, or 2^(i+1) for Data Matrix, for each i below twoS.
+  // Returns true iff all are zero, that is, there are no errors.
+  private boolean computeSyndromes(int[] received, int twoS) {
+    boolean noError = true;
+    for (int i = 0; i < twoS; i++) {
+      // Thanks to sanfordsquires for this fix:
+      byte[] multiply = getMultiplyBy((dataMatrix ? i + 1 : i) % 255);
+      int value = 0;
+      for (int j = 0; j < received.length; j++) {
+        value = (multiply[value] & 0xFF) ^ received[j];
+      }
+      syndromes[i] = value;
+      if (value != 0) {
+        noError = false;
       }
-
-      s = q.multiply(sLast).addOrSubtract(sLastLast);
-      t = q.multiply(tLast).addOrSubtract(tLastLast);
     }
+    return noError;
+  }
 
-    int sigmaTildeAtZero = t.getCoefficient(0);
-    if (sigmaTildeAtZero == 0) {
-      throw new ReedSolomonException("sigmaTilde(0) was zero");
+  private byte[] getMultiplyBy(int powerLog) {
+    byte[] table = multiplyBy[powerLog];
+    if (table == null) {
+      table = new byte[256];
+      for (int a = 1; a < 256; a++) {
+        table[a] = (byte) exp[log[a] + powerLog];
+      }
+      multiplyBy[powerLog] = table;
     }
-
-    int inverse = field.inverse(sigmaTildeAtZero);
-    GF256Poly sigma = t.multiply(inverse);
-    GF256Poly omega = r.multiply(inverse);
-    return new GF256Poly[]{sigma, omega};
+    return table;
   }
 
-  private int[] findErrorLocations(GF256Poly errorLocator) throws ReedSolomonException {
-    // This is a direct application of Chien's search
-    int numErrors = errorLocator.getDegree();
-    if (numErrors == 1) { // shortcut
-      return new int[] { errorLocator.getCoefficient(1) };
+  // Finds the shortest error locator polynomial generating the syndromes, with coefficient i of
+  // x^i in locator[i], and returns its degree.
+  private int runBerlekampMassey(int twoS) {
+    int[] c = locator;
+    int[] b = previousLocator;
+    int[] t = temp;
+    for (int i = 0; i <= twoS; i++) {
+      c[i] = 0;
+      b[i] = 0;
     }
-    int[] result = new int[numErrors];
-    int e = 0;
-    for (int i = 1; i < 256 && e < numErrors; i++) {
-      if (errorLocator.evaluateAt(i) == 0) {
-        result[e] = field.inverse(i);
-        e++;
+    c[0] = 1;
+    b[0] = 1;
+    int degree = 0;
+    int shift = 1;
+    int lastDiscrepancyLog = 0;
+    for (int k = 0; k < twoS; k++) {
+      int discrepancy = syndromes[k];
+      for (int i = 1; i <= degree; i++) {
+        if (c[i] != 0 && syndromes[k - i] != 0) {
+          discrepancy ^= exp[log[c[i]] + log[syndromes[k - i]]];
+        }
+      }
+      if (discrepancy == 0) {
+        shift++;
+        continue;
+      }
+      int scaleLog = log[discrepancy] - lastDiscrepancyLog;
+      if (scaleLog < 0) {
+        scaleLog += 255;
+      }
+      boolean lengthen = 2 * degree <= k;
+      if (lengthen) {
+        System.arraycopy(c, 0, t, 0, twoS + 1);
+      }
+      // c(x) -= discrepancy / lastDiscrepancy * x^shift * b(x)
+      for (int i = 0; i + shift <= twoS; i++) {
+        if (b[i] != 0) {
+          c[i + shift] ^= exp[log[b[i]] + scaleLog];
+        }
+      }
+      if (lengthen) {
+        degree = k + 1 - degree;
+        int[] swap = b;
+        b = t;
+        t = swap;
+        lastDiscrepancyLog = log[discrepancy];
+        shift = 1;
+      } else {
+        shift++;
       }
     }
-    if (e != numErrors) {
-      throw new ReedSolomonException("Error locator degree does not match number of roots");
+    // Keep the arrays, which may have been swapped, for next time
+    previousLocator = b;
+    temp = t;
+    return degree;
+  }
+
+  // Chien's search: finds the powers j of 2, below length, whose inverses are roots of the error
+  // locator; there is an error in received[length - 1 - j]. Returns the number found.
+  private int findErrorPowers(int numErrors, int length) {
+    int[] c = locator;
+    // termLogs[i] is the log of c[i] * 2^(-ij), or -1 if c[i] is 0
+    int[] termLogs = temp;
+    for (int i = 0; i <= numErrors; i++) {
+      termLogs[i] = c[i] == 0 ? -1 : log[c[i]];
     }
-    return result;
+    int found = 0;
+    for (int j = 0; j < length && found < numErrors; j++) {
+      int sum = 0;
+      for (int i = 0; i <= numErrors; i++) {
+        if (termLogs[i] >= 0) {
+          sum ^= exp[termLogs[i]];
+        }
+      }
+      if (sum == 0) {
+        errorPowers[found++] = j;
+      }
+      for (int i = 1; i <= numErrors; i++) {
+        if (termLogs[i] >= 0) {
+          termLogs[i] -= i;
+          if (termLogs[i] < 0) {
+            termLogs[i] += 255;
+          }
+        }
+      }
+    }
+    return found;
   }
 
-  private int[] findErrorMagnitudes(GF256Poly errorEvaluator, int[] errorLocations, boolean dataMatrix) {
-    // This is directly applying Forney's Formula
-    int s = errorLocations.length;
-    int[] result = new int[s];
-    for (int i = 0; i < s; i++) {
-      int xiInverse = field.inverse(errorLocations[i]);
-      int denominator = 1;
-      for (int j = 0; j < s; j++) {
-        if (i != j) {
-          denominator = field.multiply(denominator,
-              GF256.addOrSubtract(1, field.multiply(errorLocations[j], xiInverse)));
+  // Forney's formula: the error at 2^j is 2^j(1-b) * omega(2^-j) / locator'(2^-j), where omega is
+  // syndromes(x) * locator(x) mod x^numErrors, and b is the power of the first syndrome.
+  private void correctErrors(int[] received, int numErrors) throws ReedSolomonException {
+    int[] c = locator;
+    int[] omega = temp;
+    for (int i = 0; i < numErrors; i++) {
+      int value = 0;
+      for (int j = 0; j <= i; j++) {
+        if (c[j] != 0 && syndromes[i - j] != 0) {
+          value ^= exp[log[c[j]] + log[syndromes[i - j]]];
         }
       }
-      result[i] = field.multiply(errorEvaluator.evaluateAt(xiInverse),
-          field.inverse(denominator));
-      // Thanks to sanfordsquires for this fix:
-      if (dataMatrix) {
-        result[i] = field.multiply(result[i], xiInverse);
+      omega[i] = value;
+    }
+    for (int k = 0; k < numErrors; k++) {
+      int power = errorPowers[k];
+      int xInverseLog = power == 0 ? 0 : 255 - power;
+      int omegaValue = 0;
+      for (int i = numErrors - 1; i >= 0; i--) {
+        omegaValue = (omegaValue == 0 ? 0 : exp[log[omegaValue] + xInverseLog]) ^ omega[i];
+      }
+      // In GF(256) the derivative keeps only the odd powers: c[1] + c[3] x^2 + c[5] x^4 ...
+      int xSquaredLog = (2 * xInverseLog) % 255;
+      int derivativeValue = 0;
+      for (int i = (numErrors & 0x01) != 0 ? numErrors : numErrors - 1; i >= 1; i -= 2) {
+        derivativeValue =
+            (derivativeValue == 0 ? 0 : exp[log[derivativeValue] + xSquaredLog]) ^ c[i];
+      }
+      if (derivativeValue == 0) {
+        throw new ReedSolomonException("Error locator has a repeated root");
+      }
+      if (omegaValue != 0) {
+        int magnitudeLog = log[omegaValue] - log[derivativeValue] + 255;
+        if (!dataMatrix) {
+          magnitudeLog += power;
+        }
+        int position = received.length - 1 - power;
+        received[position] = GF256.addOrSubtract(received[position], exp[magnitudeLog % 255]);
       }
     }
-    return result;
   }
 
 }
@@ -32,6 +32,9 @@ import java.util.Hashtable;
  * (e.g. QR Codes). Instead this scans the four quadrants of the image -- and also the center
  * 'quadrant' to cover the case where a barcode is found in the center.
  *
+ * The whole image is binarized once, and each quadrant's matrix is cut out of it. Result points
+ * are given in the coordinates of the whole image.
+ *
  * @see GenericMultipleBarcodeReader
  */
 public final class ByQuadrantReader implements Reader {
@@ -55,30 +58,37 @@ public final class ByQuadrantReader implements Reader {
     int halfWidth = width / 2;
     int halfHeight = height / 2;
 
+    try {
+      // Cached by the image, so the quadrants below share it rather than binarizing themselves.
+      image.getBlackMatrix();
+    } catch (NotFoundException nfe) {
+      // then each quadrant will try its own binarization
+    }
+
     BinaryBitmap topLeft = image.crop(0, 0, halfWidth, halfHeight);
     try {
-      return delegate.decode(topLeft, hints);
+      return ResultPoints.translate(delegate.decode(topLeft, hints), 0, 0);
     } catch (NotFoundException re) {
       // continue
     }
 
     BinaryBitmap topRight = image.crop(halfWidth, 0, halfWidth, halfHeight);
     try {
-      return delegate.decode(topRight, hints);
+      return ResultPoints.translate(delegate.decode(topRight, hints), halfWidth, 0);
     } catch (NotFoundException re) {
       // continue
     }
 
     BinaryBitmap bottomLeft = image.crop(0, halfHeight, halfWidth, halfHeight);
     try {
-      return delegate.decode(bottomLeft, hints);
+      return ResultPoints.translate(delegate.decode(bottomLeft, hints), 0, halfHeight);
     } catch (NotFoundException re) {
       // continue
     }
 
     BinaryBitmap bottomRight = image.crop(halfWidth, halfHeight, halfWidth, halfHeight);
     try {
-      return delegate.decode(bottomRight, hints);
+      return ResultPoints.translate(delegate.decode(bottomRight, hints), halfWidth, halfHeight);
     } catch (NotFoundException re) {
       // continue
     }
@@ -86,7 +96,7 @@ public final class ByQuadrantReader implements Reader {
     int quarterWidth = halfWidth / 2;
     int quarterHeight = halfHeight / 2;
     BinaryBitmap center = image.crop(quarterWidth, quarterHeight, halfWidth, halfHeight);
-    return delegate.decode(center, hints);
+    return ResultPoints.translate(delegate.decode(center, hints), quarterWidth, quarterHeight);
   }
 
   public void reset() {
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2010 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.zxing.multi;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Binarizer;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.ChecksumException;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.FormatException;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.PyramidLuminanceSource;
+import com.google.zxing.Reader;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.detector.MonochromeRectangleDetector;
+import com.google.zxing.pdf417.detector.Detector;
+import com.google.zxing.qrcode.detector.FinderPattern;
+import com.google.zxing.qrcode.detector.FinderPatternFinder;
+import com.google.zxing.qrcode.detector.FinderPatternInfo;
+
+import java.util.Hashtable;
+import java.util.Vector;
+
+/**
+ * <p>Decodes 2D barcodes in large, high resolution images by looking for them in a scaled down
+ * copy first. The image is reduced with {@link PyramidLuminanceSource}s until it fits within a
+ * given size, and binarized at that size. The QR Code finder patterns, the Data Matrix rectangle
+ * and (if asked for) the PDF417 start and stop patterns are searched for there. Each candidate
+ * region is then cut out of the full resolution image and handed to the delegate {@link Reader},
+ * so nothing outside a symbol is ever read or binarized at full resolution.</p>
+ *
+ * <p>A region is not necessarily decoded at full resolution. The local binarizer cannot cope with
+ * modules much larger than its blocks, which is common when a symbol fills a multi-megapixel
+ * photo, so a QR Code region is scaled down just as far as its modules stay about
+ * {@value #TARGET_MODULE_SIZE} pixels wide. Other symbols, whose module size isn't known from the
+ * coarse search, are tried at the coarse scale and then at full resolution.</p>
+ *
+ * <p>If nothing is found in the small image, or nothing found there decodes, the delegate is
+ * given the whole image at full resolution, so nothing is lost but time. Symbols whose modules
+ * are too small to survive the scaling, and all 1D barcodes, are only found that way.</p>
+ *
+ * <p>Unlike a {@link Reader} this takes a {@link Binarizer} rather than a {@link BinaryBitmap},
+ * since it needs the {@link LuminanceSource} underneath. The image must support cropping.</p>
+ */
+public final class CoarseToFineDecoder {
+
+  private static final int DEFAULT_MAX_COARSE_DIMENSION = 1024;
+
+  // Finder pattern centers are 3.5 modules in from the edge of a QR Code, and the detector
+  // needs some quiet zone around it as well.
+  private static final float QR_CODE_MARGIN_MODULES = 8.0f;
+
+  private static final float TARGET_MODULE_SIZE = 4.0f;
+
+  private final Reader delegate;
+  private final int maxCoarseDimension;
+
+  public CoarseToFineDecoder(Reader delegate) {
+    this(delegate, DEFAULT_MAX_COARSE_DIMENSION);
+  }
+
+  /**
+   * @param delegate The reader to decode each candidate region, and the whole image if needed
+   * @param maxCoarseDimension The image is scaled down by powers of two until neither its width
+   *  nor its height is above this
+   */
+  public CoarseToFineDecoder(Reader delegate, int maxCoarseDimension) {
+    if (maxCoarseDimension < 1) {
+      throw new IllegalArgumentException("Maximum dimension must be positive.");
+    }
+    this.delegate = delegate;
+    this.maxCoarseDimension = maxCoarseDimension;
+  }
+
+  public Result decode(Binarizer binarizer)
+      throws NotFoundException, ChecksumException, FormatException {
+    return decode(binarizer, null);
+  }
+
+  /**
+   * @param binarizer A binarizer over the full resolution image. It is used to create binarizers
+   *  for the scaled down image and for each candidate region.
+   * @param hints Passed to the delegate
+   * @return the first result decoded from a candidate region, or else from the whole image
+   */
+  public Result decode(Binarizer binarizer, Hashtable hints)
+      throws NotFoundException, ChecksumException, FormatException {
+    LuminanceSource source = binarizer.getLuminanceSource();
+    if (source.isCropSupported()) {
+      LuminanceSource coarse = PyramidLuminanceSource.downscale(source, maxCoarseDimension);
+      if (coarse != source) {
+        int coarseScale = ((PyramidLuminanceSource) coarse).getScale();
+        Vector regions = locate(new BinaryBitmap(binarizer.createBinarizer(coarse)), coarseScale,
+            source.getWidth(), source.getHeight(), hints);
+        for (int i = 0; i < regions.size(); i++) {
+          Region region = (Region) regions.elementAt(i);
+          int[] scales;
+          if (region.moduleSize > 0.0f) {
+            int scale = 1;
+            while (scale < coarseScale && region.moduleSize / (scale << 1) >= TARGET_MODULE_SIZE) {
+              scale <<= 1;
+            }
+            scales = new int[] {scale};
+          } else {
+            scales = new int[] {coarseScale, 1};
+          }
+          for (int j = 0; j < scales.length; j++) {
+            try {
+              return decodeRegion(binarizer, region, scales[j], hints);
+            } catch (ReaderException re) {
+              // continue
+            }
+          }
+        }
+      }
+    }
+    return delegate.decode(new BinaryBitmap(binarizer), hints);
+  }
+
+  private Result decodeRegion(Binarizer binarizer, Region region, int scale, Hashtable hints)
+      throws ReaderException {
+    LuminanceSource scaled = binarizer.getLuminanceSource().crop(region.left, region.top,
+        region.width, region.height);
+    for (int i = 1; i < scale; i <<= 1) {
+      scaled = new PyramidLuminanceSource(scaled);
+    }
+    Result result = delegate.decode(new BinaryBitmap(binarizer.createBinarizer(scaled)), hints);
+    return ResultPoints.transform(result, scale, region.left, region.top);
+  }
+
+  /**
+   * @return the {@link Region}s of the full resolution image which may hold a symbol
+   */
+  private static Vector locate(BinaryBitmap coarse, int scale, int width, int height,
+      Hashtable hints) {
+    Vector regions = new Vector();
+    BitMatrix matrix;
+    try {
+      matrix = coarse.getBlackMatrix();
+    } catch (NotFoundException nfe) {
+      return regions;
+    }
+    Vector formats = hints == null ? null : (Vector) hints.get(DecodeHintType.POSSIBLE_FORMATS);
+
+    if (formats == null || formats.contains(BarcodeFormat.QR_CODE)) {
+      try {
+        FinderPatternInfo info = new FinderPatternFinder(matrix).find(hints);
+        FinderPattern topLeft = info.getTopLeft();
+        FinderPattern topRight = info.getTopRight();
+        FinderPattern bottomLeft = info.getBottomLeft();
+        ResultPoint bottomRight = new ResultPoint(
+            topRight.getX() + bottomLeft.getX() - topLeft.getX(),
+            topRight.getY() + bottomLeft.getY() - topLeft.getY());
+        float moduleSize = (topLeft.getEstimatedModuleSize() +
+            topRight.getEstimatedModuleSize() + bottomLeft.getEstimatedModuleSize()) / 3.0f;
+        addRegion(regions, new ResultPoint[] {topLeft, topRight, bottomLeft, bottomRight},
+            QR_CODE_MARGIN_MODULES * moduleSize, moduleSize * scale, scale, width, height);
+      } catch (ReaderException re) {
+        // continue
+      }
+    }
+
+    if (formats == null || formats.contains(BarcodeFormat.DATAMATRIX)) {
+      try {
+        addRegion(regions, new MonochromeRectangleDetector(matrix).detect(), -1.0f, 0.0f, scale,
+            width, height);
+      } catch (ReaderException re) {
+        // continue
+      }
+    }
+
+    // Like MultiFormatReader, only look for PDF417 when it is asked for.
+    if (formats != null && formats.contains(BarcodeFormat.PDF417)) {
+      try {
+        addRegion(regions, new Detector(coarse).detect(hints).getPoints(), -1.0f, 0.0f, scale,
+            width, height);
+      } catch (ReaderException re) {
+        // continue
+      }
+    }
+    return regions;
+  }
+
+  /**
+   * Adds the bounding box of the given points in the coarse image, grown by margin on each side,
+   * as a region of the full resolution image. A negative margin means an eighth of the larger
+   * side of the box, for symbols whose corners were found directly.
+   */
+  private static void addRegion(Vector regions, ResultPoint[] points, float margin,
+      float moduleSize, int scale, int width, int height) {
+    float minX = Float.MAX_VALUE;
+    float minY = Float.MAX_VALUE;
+    float maxX = -Float.MAX_VALUE;
+    float maxY = -Float.MAX_VALUE;
+    for (int i = 0; i < points.length; i++) {
+      ResultPoint point = points[i];
+      if (point == null) {
+        continue;
+      }
+      float x = point.getX();
+      float y = point.getY();
+      if (x < minX) {
+        minX = x;
+      }
+      if (y < minY) {
+        minY = y;
+      }
+      if (x > maxX) {
+        maxX = x;
+      }
+      if (y > maxY) {
+        maxY = y;
+      }
+    }
+    if (minX > maxX) {
+      return;
+    }
+    if (margin < 0.0f) {
+      margin = Math.max(maxX - minX, maxY - minY) / 8.0f;
+    }
+    // Allow for the pixel of slack in every coarse coordinate.
+    margin += 1.0f;
+    int left = Math.max(0, (int) ((minX - margin) * scale));
+    int top = Math.max(0, (int) ((minY - margin) * scale));
+    int right = Math.min(width, (int) ((maxX + margin + 1.0f) * scale));
+    int bottom = Math.min(height, (int) ((maxY + margin + 1.0f) * scale));
+    // The region must survive being scaled down as far as the coarse image was.
+    if (right - left < scale || bottom - top < scale) {
+      return;
+    }
+    regions.addElement(new Region(left, top, right - left, bottom - top, moduleSize));
+  }
+
+  /**
+   * A rectangle of the full resolution image which may hold a symbol, and the estimated size of
+   * its modules in full resolution pixels, or 0 if that isn't known.
+   */
+  private static final class Region {
+
+    private final int left;
+    private final int top;
+    private final int width;
+    private final int height;
+    private final float moduleSize;
+
+    Region(int left, int top, int width, int height, float moduleSize) {
+      this.left = left;
+      this.top = top;
+      this.width = width;
+      this.height = height;
+      this.moduleSize = moduleSize;
+    }
+  }
+
+}
@@ -91,7 +91,7 @@ public final class GenericMultipleBarcodeReader implements MultipleBarcodeReader
     if (alreadyFound) {
       return;
     }
-    results.addElement(translateResultPoints(result, xOffset, yOffset));
+    results.addElement(ResultPoints.translate(result, xOffset, yOffset));
     ResultPoint[] resultPoints = result.getResultPoints();
     if (resultPoints == null || resultPoints.length == 0) {
       return;
@@ -104,6 +104,9 @@ public final class GenericMultipleBarcodeReader implements MultipleBarcodeReader
     float maxY = 0.0f;
     for (int i = 0; i < resultPoints.length; i++) {
       ResultPoint point = resultPoints[i];
+      if (point == null) {
+        continue;
+      }
       float x = point.getX();
       float y = point.getY();
       if (x < minX) {
@@ -142,15 +145,4 @@ public final class GenericMultipleBarcodeReader implements MultipleBarcodeReader
     }
   }
 
-  private static Result translateResultPoints(Result result, int xOffset, int yOffset) {
-    ResultPoint[] oldResultPoints = result.getResultPoints();
-    ResultPoint[] newResultPoints = new ResultPoint[oldResultPoints.length];
-    for (int i = 0; i < oldResultPoints.length; i++) {
-      ResultPoint oldPoint = oldResultPoints[i];
-      newResultPoints[i] = new ResultPoint(oldPoint.getX() + xOffset, oldPoint.getY() + yOffset);
-    }
-    return new Result(result.getText(), result.getRawBytes(), newResultPoints,
-        result.getBarcodeFormat());
-  }
-
 }
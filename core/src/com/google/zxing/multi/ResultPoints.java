@@ -0,0 +1,62 @@
+/*
+ * Copyright 2010 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.multi;
+
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+
+/**
+ * Maps the points of a {@link Result} found in part of an image, possibly scaled down, back to
+ * the coordinates of the whole image. Shared by the readers in this package.
+ */
+final class ResultPoints {
+
+  private ResultPoints() {
+  }
+
+  static Result translate(Result result, int xOffset, int yOffset) {
+    return transform(result, 1, xOffset, yOffset);
+  }
+
+  /**
+   * @param result result whose points are in the coordinates of the part of the image
+   * @param scale how many image pixels each of those coordinates spans
+   * @param xOffset left of the part in the image
+   * @param yOffset top of the part in the image
+   * @return a copy of result, metadata included, with each point multiplied by scale and offset;
+   *  null points stay null, and result itself if there is nothing to change
+   */
+  static Result transform(Result result, int scale, int xOffset, int yOffset) {
+    ResultPoint[] oldResultPoints = result.getResultPoints();
+    if (oldResultPoints == null || (scale == 1 && xOffset == 0 && yOffset == 0)) {
+      return result;
+    }
+    ResultPoint[] newResultPoints = new ResultPoint[oldResultPoints.length];
+    for (int i = 0; i < oldResultPoints.length; i++) {
+      ResultPoint oldPoint = oldResultPoints[i];
+      if (oldPoint != null) {
+        newResultPoints[i] = new ResultPoint(oldPoint.getX() * scale + xOffset,
+            oldPoint.getY() * scale + yOffset);
+      }
+    }
+    Result transformed = new Result(result.getText(), result.getRawBytes(), newResultPoints,
+        result.getBarcodeFormat());
+    transformed.putAllMetadata(result.getResultMetadata());
+    return transformed;
+  }
+
+}
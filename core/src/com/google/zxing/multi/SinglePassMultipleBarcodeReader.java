@@ -0,0 +1,398 @@
+/*
+ * Copyright 2010 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.multi;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.Reader;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.ResultMetadataType;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.DecoderResult;
+import com.google.zxing.common.DetectorResult;
+import com.google.zxing.common.ParallelBands;
+import com.google.zxing.datamatrix.DataMatrixReader;
+import com.google.zxing.multi.qrcode.detector.MultiDetector;
+import com.google.zxing.pdf417.PDF417Reader;
+import com.google.zxing.qrcode.QRCodeReader;
+import com.google.zxing.qrcode.decoder.Decoder;
+
+import java.util.Hashtable;
+import java.util.Vector;
+
+/**
+ * <p>Finds all the QR Codes, Data Matrix and PDF417 symbols in an image, like a sheet of labels,
+ * from a single look at its black matrix, rather than by decoding, cropping around the result and
+ * recursing as {@link GenericMultipleBarcodeReader} does.</p>
+ *
+ * <p>Candidates are gathered in one pass over the matrix. The QR Code finder patterns are grouped
+ * into symbols by {@link MultiDetector}. At the same time, the image is divided into 8x8 pixel
+ * cells, and cells busy with black and white transitions are clustered into regions; any 2D
+ * symbol makes such a region, whatever its format. The QR Codes are decoded first, then every
+ * region which isn't mostly covered by one of them is cropped out of the shared matrix and given
+ * to each of the 2D readers. Candidates are decoded on several threads if asked to.</p>
+ *
+ * <p>Symbols closer together than about two cells end up in one region, where only one of them
+ * will be found, unless they are QR Codes. 1D barcodes are not looked for.</p>
+ */
+public final class SinglePassMultipleBarcodeReader implements MultipleBarcodeReader {
+
+  // Cells are a byte of a row's bits wide, and as many rows high.
+  private static final int CELL_SHIFT = 3;
+  private static final int CELL_AREA = 1 << (CELL_SHIFT << 1);
+  // Horizontal plus vertical transitions in a cell for it to be part of a symbol
+  private static final int MIN_TRANSITIONS = 8;
+  // Busy cells closer than this many cells belong to the same region, bridging the odd quiet cell
+  // inside a symbol with large modules.
+  private static final int LINK_DISTANCE = 2;
+  private static final int MIN_REGION_CELLS = 4;
+  private static final int REGION_MARGIN_CELLS = 2;
+
+  private static final int[] BITS_SET_IN_BYTE = new int[256];
+
+  static {
+    for (int i = 1; i < 256; i++) {
+      BITS_SET_IN_BYTE[i] = (i & 1) + BITS_SET_IN_BYTE[i >> 1];
+    }
+  }
+
+  private final int numThreads;
+
+  public SinglePassMultipleBarcodeReader() {
+    this(1);
+  }
+
+  /**
+   * @param numThreads the number of threads, including the calling one, to decode candidates on
+   */
+  public SinglePassMultipleBarcodeReader(int numThreads) {
+    if (numThreads < 1) {
+      throw new IllegalArgumentException("Need at least one thread");
+    }
+    this.numThreads = numThreads;
+  }
+
+  public Result[] decodeMultiple(BinaryBitmap image) throws NotFoundException {
+    return decodeMultiple(image, null);
+  }
+
+  public Result[] decodeMultiple(BinaryBitmap image, final Hashtable hints)
+      throws NotFoundException {
+    BitMatrix matrix = image.getBlackMatrix();
+    Vector formats = hints == null ? null : (Vector) hints.get(DecodeHintType.POSSIBLE_FORMATS);
+    final boolean tryQRCode = formats == null || formats.contains(BarcodeFormat.QR_CODE);
+    final boolean tryDataMatrix = formats == null || formats.contains(BarcodeFormat.DATAMATRIX);
+    final boolean tryPDF417 = formats == null || formats.contains(BarcodeFormat.PDF417);
+
+    // This reads every row of the matrix, which also means a lazily thresholded one is complete
+    // before the threads below share it.
+    Vector regions = findRegions(matrix);
+
+    Vector results = new Vector();
+    if (tryQRCode) {
+      DetectorResult[] detected;
+      try {
+        detected = new MultiDetector(matrix).detectMulti(hints);
+      } catch (NotFoundException nfe) {
+        detected = new DetectorResult[0];
+      }
+      final DetectorResult[] detectorResults = detected;
+      final Result[] qrCodeResults = new Result[detectorResults.length];
+      new ParallelBands() {
+        protected void processBand(int start, int end) {
+          Decoder decoder = new Decoder();
+          for (int i = start; i < end; i++) {
+            qrCodeResults[i] = decodeQRCode(decoder, detectorResults[i], hints);
+          }
+        }
+      }.run(detectorResults.length, numThreads);
+      addResults(qrCodeResults, results);
+
+      for (int i = regions.size() - 1; i >= 0; i--) {
+        if (isMostlyCovered((Region) regions.elementAt(i), results)) {
+          regions.removeElementAt(i);
+        }
+      }
+    }
+
+    final BinaryBitmap bitmap = image;
+    final Region[] candidates = new Region[regions.size()];
+    for (int i = 0; i < candidates.length; i++) {
+      candidates[i] = (Region) regions.elementAt(i);
+    }
+    final Result[] regionResults = new Result[candidates.length];
+    new ParallelBands() {
+      protected void processBand(int start, int end) {
+        // Readers keep state, so every thread has its own.
+        Vector readers = new Vector();
+        if (tryQRCode) {
+          readers.addElement(new QRCodeReader());
+        }
+        if (tryDataMatrix) {
+          readers.addElement(new DataMatrixReader());
+        }
+        if (tryPDF417) {
+          readers.addElement(new PDF417Reader());
+        }
+        for (int i = start; i < end; i++) {
+          regionResults[i] = decodeRegion(bitmap, candidates[i], readers, hints);
+        }
+      }
+    }.run(candidates.length, numThreads);
+    addResults(regionResults, results);
+
+    if (results.isEmpty()) {
+      throw NotFoundException.getNotFoundInstance();
+    }
+    int numResults = results.size();
+    Result[] resultArray = new Result[numResults];
+    for (int i = 0; i < numResults; i++) {
+      resultArray[i] = (Result) results.elementAt(i);
+    }
+    return resultArray;
+  }
+
+  /**
+   * Clusters the cells of the matrix which have enough transitions, and aren't nearly all black
+   * or all white, into the {@link Region}s which may hold a symbol.
+   */
+  private static Vector findRegions(BitMatrix matrix) {
+    int width = matrix.getWidth();
+    int height = matrix.getHeight();
+    int cellColumns = (width + (1 << CELL_SHIFT) - 1) >> CELL_SHIFT;
+    int cellRows = (height + (1 << CELL_SHIFT) - 1) >> CELL_SHIFT;
+    int[] transitions = new int[cellColumns * cellRows];
+    int[] blackCounts = new int[cellColumns * cellRows];
+
+    // Counts a byte of each 32 bit word at a time: bits set, and bits which differ from the one
+    // to their left or the one above.
+    BitArray row = new BitArray(width);
+    BitArray previousRow = new BitArray(width);
+    for (int y = 0; y < height; y++) {
+      row = matrix.getRow(y, row);
+      int[] bits = row.getBitArray();
+      int[] previousBits = previousRow.getBitArray();
+      int cellOffset = (y >> CELL_SHIFT) * cellColumns;
+      int carry = bits[0] & 0x01;
+      for (int i = 0; i < bits.length; i++) {
+        int word = bits[i];
+        int changes = word ^ ((word << 1) | carry);
+        carry = word >>> 31;
+        int verticalChanges = y == 0 ? 0 : word ^ previousBits[i];
+        for (int shift = 0; shift < 32; shift += 8) {
+          int cell = (i << 2) + (shift >> 3);
+          if (cell >= cellColumns) {
+            break;
+          }
+          transitions[cellOffset + cell] += BITS_SET_IN_BYTE[(changes >>> shift) & 0xff] +
+              BITS_SET_IN_BYTE[(verticalChanges >>> shift) & 0xff];
+          blackCounts[cellOffset + cell] += BITS_SET_IN_BYTE[(word >>> shift) & 0xff];
+        }
+      }
+      BitArray temp = previousRow;
+      previousRow = row;
+      row = temp;
+    }
+
+    boolean[] busy = new boolean[cellColumns * cellRows];
+    for (int i = 0; i < busy.length; i++) {
+      busy[i] = transitions[i] >= MIN_TRANSITIONS &&
+          blackCounts[i] >= (CELL_AREA >> 3) && blackCounts[i] <= CELL_AREA - (CELL_AREA >> 3);
+    }
+
+    // Flood fills each cluster, finding its bounds.
+    Vector regions = new Vector();
+    int[] stack = new int[busy.length];
+    for (int start = 0; start < busy.length; start++) {
+      if (!busy[start]) {
+        continue;
+      }
+      busy[start] = false;
+      stack[0] = start;
+      int stackSize = 1;
+      int numCells = 0;
+      int minX = cellColumns;
+      int minY = cellRows;
+      int maxX = -1;
+      int maxY = -1;
+      while (stackSize > 0) {
+        int cell = stack[--stackSize];
+        numCells++;
+        int cellX = cell % cellColumns;
+        int cellY = cell / cellColumns;
+        minX = Math.min(minX, cellX);
+        minY = Math.min(minY, cellY);
+        maxX = Math.max(maxX, cellX);
+        maxY = Math.max(maxY, cellY);
+        int top = Math.max(0, cellY - LINK_DISTANCE);
+        int bottom = Math.min(cellRows - 1, cellY + LINK_DISTANCE);
+        int left = Math.max(0, cellX - LINK_DISTANCE);
+        int right = Math.min(cellColumns - 1, cellX + LINK_DISTANCE);
+        for (int y = top; y <= bottom; y++) {
+          for (int x = left; x <= right; x++) {
+            int neighbor = y * cellColumns + x;
+            if (busy[neighbor]) {
+              busy[neighbor] = false;
+              stack[stackSize++] = neighbor;
+            }
+          }
+        }
+      }
+      if (numCells >= MIN_REGION_CELLS) {
+        int left = Math.max(0, (minX - REGION_MARGIN_CELLS) << CELL_SHIFT);
+        int top = Math.max(0, (minY - REGION_MARGIN_CELLS) << CELL_SHIFT);
+        int right = Math.min(width, (maxX + 1 + REGION_MARGIN_CELLS) << CELL_SHIFT);
+        int bottom = Math.min(height, (maxY + 1 + REGION_MARGIN_CELLS) << CELL_SHIFT);
+        regions.addElement(new Region(left, top, right - left, bottom - top));
+      }
+    }
+    return regions;
+  }
+
+  private static Result decodeQRCode(Decoder decoder, DetectorResult detectorResult,
+      Hashtable hints) {
+    DecoderResult decoderResult;
+    try {
+      decoderResult = decoder.decode(detectorResult.getBits(), hints);
+    } catch (ReaderException re) {
+      return null;
+    }
+    Result result = new Result(decoderResult.getText(), decoderResult.getRawBytes(),
+        detectorResult.getPoints(), BarcodeFormat.QR_CODE);
+    if (decoderResult.getByteSegments() != null) {
+      result.putMetadata(ResultMetadataType.BYTE_SEGMENTS, decoderResult.getByteSegments());
+    }
+    if (decoderResult.getECLevel() != null) {
+      result.putMetadata(ResultMetadataType.ERROR_CORRECTION_LEVEL,
+          decoderResult.getECLevel().toString());
+    }
+    return result;
+  }
+
+  private static Result decodeRegion(BinaryBitmap image, Region region, Vector readers,
+      Hashtable hints) {
+    // Cut out of the image's matrix, not binarized again
+    BinaryBitmap crop = image.crop(region.left, region.top, region.width, region.height);
+    for (int i = 0; i < readers.size(); i++) {
+      try {
+        Result result = ((Reader) readers.elementAt(i)).decode(crop, hints);
+        return ResultPoints.translate(result, region.left, region.top);
+      } catch (ReaderException re) {
+        // continue
+      }
+    }
+    return null;
+  }
+
+  private static void addResults(Result[] newResults, Vector results) {
+    for (int i = 0; i < newResults.length; i++) {
+      Result result = newResults[i];
+      if (result != null && !isDuplicate(result, results)) {
+        results.addElement(result);
+      }
+    }
+  }
+
+  private static boolean isDuplicate(Result result, Vector results) {
+    float[] bounds = getBounds(result);
+    for (int i = 0; i < results.size(); i++) {
+      Result existing = (Result) results.elementAt(i);
+      if (existing.getText().equals(result.getText()) &&
+          existing.getBarcodeFormat().equals(result.getBarcodeFormat())) {
+        float[] existingBounds = getBounds(existing);
+        if (bounds == null || existingBounds == null ||
+            (bounds[0] <= existingBounds[2] && existingBounds[0] <= bounds[2] &&
+             bounds[1] <= existingBounds[3] && existingBounds[1] <= bounds[3])) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  // Whether at least half of the region is within the bounds of the results found so far.
+  private static boolean isMostlyCovered(Region region, Vector results) {
+    float area = (float) region.width * region.height;
+    for (int i = 0; i < results.size(); i++) {
+      float[] bounds = getBounds((Result) results.elementAt(i));
+      if (bounds == null) {
+        continue;
+      }
+      float overlapWidth = Math.min(bounds[2], region.left + region.width) -
+          Math.max(bounds[0], region.left);
+      float overlapHeight = Math.min(bounds[3], region.top + region.height) -
+          Math.max(bounds[1], region.top);
+      if (overlapWidth > 0.0f && overlapHeight > 0.0f &&
+          overlapWidth * overlapHeight >= area / 2.0f) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return the left, top, right and bottom of the result's points, or null if it has none
+   */
+  private static float[] getBounds(Result result) {
+    ResultPoint[] points = result.getResultPoints();
+    if (points == null) {
+      return null;
+    }
+    float[] bounds = null;
+    for (int i = 0; i < points.length; i++) {
+      ResultPoint point = points[i];
+      if (point == null) {
+        continue;
+      }
+      float x = point.getX();
+      float y = point.getY();
+      if (bounds == null) {
+        bounds = new float[] {x, y, x, y};
+      } else {
+        bounds[0] = Math.min(bounds[0], x);
+        bounds[1] = Math.min(bounds[1], y);
+        bounds[2] = Math.max(bounds[2], x);
+        bounds[3] = Math.max(bounds[3], y);
+      }
+    }
+    return bounds;
+  }
+
+  /**
+   * A rectangle of the image which may hold a symbol.
+   */
+  private static final class Region {
+
+    private final int left;
+    private final int top;
+    private final int width;
+    private final int height;
+
+    Region(int left, int top, int width, int height) {
+      this.left = left;
+      this.top = top;
+      this.width = width;
+      this.height = height;
+    }
+  }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2010 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.multi;
+
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.Reader;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+
+import java.util.Hashtable;
+import java.util.Vector;
+
+/**
+ * <p>Finds barcodes in very large images, like document or pallet scans of a hundred megapixels
+ * or more, without ever binarizing the whole image at once. The image is cut into full width,
+ * horizontal strips which overlap by a fixed number of rows, and the strips are searched one
+ * after another with a {@link GenericMultipleBarcodeReader}. Only one strip's luminance and bit
+ * matrix are held at a time, so memory is bounded by the strip size rather than the image
+ * size, as long as the image's {@link com.google.zxing.LuminanceSource} crops by reference
+ * or copies just the cropped rows.</p>
+ *
+ * <p>A barcode no taller than the overlap lies entirely within at least one strip. One which
+ * lies in an overlap may be found in both strips; the second sighting is dropped if it has the
+ * same text and format and its points lie within the overlap distance of the first. Result
+ * points are given in the coordinates of the whole image.</p>
+ *
+ * <p>Images which fit in a single strip, and those whose source can't be cropped, are simply
+ * searched whole.</p>
+ */
+public final class StripedMultipleBarcodeReader implements MultipleBarcodeReader {
+
+  private static final int DEFAULT_STRIP_HEIGHT = 1024;
+  private static final int DEFAULT_OVERLAP = 256;
+
+  private final MultipleBarcodeReader delegate;
+  private final int stripHeight;
+  private final int overlap;
+
+  public StripedMultipleBarcodeReader(Reader delegate) {
+    this(delegate, DEFAULT_STRIP_HEIGHT, DEFAULT_OVERLAP);
+  }
+
+  /**
+   * @param delegate the reader to search each strip with
+   * @param stripHeight the number of rows in each strip
+   * @param overlap the number of rows shared by consecutive strips, which should be at least the
+   *  height of the tallest barcode expected
+   */
+  public StripedMultipleBarcodeReader(Reader delegate, int stripHeight, int overlap) {
+    if (overlap < 0 || stripHeight <= overlap) {
+      throw new IllegalArgumentException("Strips must be taller than their overlap");
+    }
+    this.delegate = new GenericMultipleBarcodeReader(delegate);
+    this.stripHeight = stripHeight;
+    this.overlap = overlap;
+  }
+
+  public Result[] decodeMultiple(BinaryBitmap image) throws NotFoundException {
+    return decodeMultiple(image, null);
+  }
+
+  public Result[] decodeMultiple(BinaryBitmap image, Hashtable hints) throws NotFoundException {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    if (height <= stripHeight || !image.isCropSupported()) {
+      return delegate.decodeMultiple(image, hints);
+    }
+    Vector results = new Vector();
+    int step = stripHeight - overlap;
+    for (int top = 0; top < height; top += step) {
+      int bottom = Math.min(height, top + stripHeight);
+      // The strip's bits are dropped before the next one is made.
+      BinaryBitmap strip = image.crop(0, top, width, bottom - top);
+      try {
+        Result[] stripResults = delegate.decodeMultiple(strip, hints);
+        for (int i = 0; i < stripResults.length; i++) {
+          Result result = ResultPoints.translate(stripResults[i], 0, top);
+          if (!isDuplicate(result, results)) {
+            results.addElement(result);
+          }
+        }
+      } catch (NotFoundException nfe) {
+        // continue with the next strip
+      }
+      if (bottom == height) {
+        break;
+      }
+    }
+    if (results.isEmpty()) {
+      throw NotFoundException.getNotFoundInstance();
+    }
+    int numResults = results.size();
+    Result[] resultArray = new Result[numResults];
+    for (int i = 0; i < numResults; i++) {
+      resultArray[i] = (Result) results.elementAt(i);
+    }
+    return resultArray;
+  }
+
+  private boolean isDuplicate(Result result, Vector results) {
+    for (int i = 0; i < results.size(); i++) {
+      Result existing = (Result) results.elementAt(i);
+      if (existing.getText().equals(result.getText()) &&
+          existing.getBarcodeFormat().equals(result.getBarcodeFormat()) &&
+          isNear(existing.getResultPoints(), result.getResultPoints())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // Whether the centers of two sets of points are no more than the overlap apart in either
+  // direction. Results without points can't be told apart, so they always match.
+  private boolean isNear(ResultPoint[] points1, ResultPoint[] points2) {
+    ResultPoint center1 = center(points1);
+    ResultPoint center2 = center(points2);
+    if (center1 == null || center2 == null) {
+      return true;
+    }
+    float dx = center1.getX() - center2.getX();
+    float dy = center1.getY() - center2.getY();
+    return Math.abs(dx) <= overlap && Math.abs(dy) <= overlap;
+  }
+
+  // The mean of the points which are there, or null if there are none
+  private static ResultPoint center(ResultPoint[] points) {
+    if (points == null) {
+      return null;
+    }
+    float sumX = 0.0f;
+    float sumY = 0.0f;
+    int count = 0;
+    for (int i = 0; i < points.length; i++) {
+      if (points[i] != null) {
+        sumX += points[i].getX();
+        sumY += points[i].getY();
+        count++;
+      }
+    }
+    return count == 0 ? null : new ResultPoint(sumX / count, sumY / count);
+  }
+
+}
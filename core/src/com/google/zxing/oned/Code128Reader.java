@@ -164,56 +164,47 @@ public final class Code128Reader extends OneDReader {
   private static final int CODE_STOP = 106;
 
   private static int[] findStartPattern(BitArray row) throws NotFoundException {
-    int width = row.getSize();
-    int rowOffset = 0;
-    while (rowOffset < width) {
-      if (row.get(rowOffset)) {
-        break;
-      }
-      rowOffset++;
-    }
+    int rowOffset = row.getNextSet(0);
 
     int counterPosition = 0;
     int[] counters = new int[6];
     int patternStart = rowOffset;
-    boolean isWhite = false;
     int patternLength = counters.length;
 
-    for (int i = rowOffset; i < width; i++) {
-      boolean pixel = row.get(i);
-      if (pixel ^ isWhite) {
-        counters[counterPosition]++;
-      } else {
-        if (counterPosition == patternLength - 1) {
-          int bestVariance = MAX_AVG_VARIANCE;
-          int bestMatch = -1;
-          for (int startCode = CODE_START_A; startCode <= CODE_START_C; startCode++) {
-            int variance = patternMatchVariance(counters, CODE_PATTERNS[startCode],
-                MAX_INDIVIDUAL_VARIANCE);
-            if (variance < bestVariance) {
-              bestVariance = variance;
-              bestMatch = startCode;
-            }
+    // Each iteration takes one whole run of pixels, ending where the next begins at i
+    int numRuns = row.getNumRuns();
+    int runStart = rowOffset;
+    for (int run = row.getRunIndex(rowOffset); run < numRuns - 1; run++) {
+      int i = row.getRunStart(run + 1);
+      counters[counterPosition] = i - runStart;
+      runStart = i;
+      if (counterPosition == patternLength - 1) {
+        int bestVariance = MAX_AVG_VARIANCE;
+        int bestMatch = -1;
+        for (int startCode = CODE_START_A; startCode <= CODE_START_C; startCode++) {
+          int variance = patternMatchVariance(counters, CODE_PATTERNS[startCode],
+              MAX_INDIVIDUAL_VARIANCE);
+          if (variance < bestVariance) {
+            bestVariance = variance;
+            bestMatch = startCode;
           }
-          if (bestMatch >= 0) {
-            // Look for whitespace before start pattern, >= 50% of width of start pattern
-            if (row.isRange(Math.max(0, patternStart - (i - patternStart) / 2), patternStart,
-                false)) {
-              return new int[]{patternStart, i, bestMatch};
-            }
-          }
-          patternStart += counters[0] + counters[1];
-          for (int y = 2; y < patternLength; y++) {
-            counters[y - 2] = counters[y];
+        }
+        if (bestMatch >= 0) {
+          // Look for whitespace before start pattern, >= 50% of width of start pattern
+          if (row.isRange(Math.max(0, patternStart - (i - patternStart) / 2), patternStart,
+              false)) {
+            return new int[]{patternStart, i, bestMatch};
           }
-          counters[patternLength - 2] = 0;
-          counters[patternLength - 1] = 0;
-          counterPosition--;
-        } else {
-          counterPosition++;
         }
-        counters[counterPosition] = 1;
-        isWhite = !isWhite;
+        patternStart += counters[0] + counters[1];
+        for (int y = 2; y < patternLength; y++) {
+          counters[y - 2] = counters[y];
+        }
+        counters[patternLength - 2] = 0;
+        counters[patternLength - 1] = 0;
+        counterPosition--;
+      } else {
+        counterPosition++;
       }
     }
     throw NotFoundException.getNotFoundInstance();
@@ -424,9 +415,7 @@ public final class Code128Reader extends OneDReader {
     // we fudged decoding CODE_STOP since it actually has 7 bars, not 6. There is a black bar left
     // to read off. Would be slightly better to properly read. Here we just skip it:
     int width = row.getSize();
-    while (nextStart < width && row.get(nextStart)) {
-      nextStart++;
-    }
+    nextStart = row.getNextUnset(nextStart);
     if (!row.isRange(nextStart, Math.min(width, nextStart + (nextStart - lastStart) / 2),
         false)) {
       throw NotFoundException.getNotFoundInstance();
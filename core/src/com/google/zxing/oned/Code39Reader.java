@@ -99,9 +99,7 @@ public final class Code39Reader extends OneDReader {
     int end = row.getSize();
 
     // Read off white space
-    while (nextStart < end && !row.get(nextStart)) {
-      nextStart++;
-    }
+    nextStart = row.getNextSet(nextStart);
 
     StringBuffer result = new StringBuffer(20);
     int[] counters = new int[9];
@@ -120,9 +118,7 @@ public final class Code39Reader extends OneDReader {
         nextStart += counters[i];
       }
       // Read off white space
-      while (nextStart < end && !row.get(nextStart)) {
-        nextStart++;
-      }
+      nextStart = row.getNextSet(nextStart);
     } while (decodedChar != '*');
     result.deleteCharAt(result.length() - 1); // remove asterisk
 
@@ -175,45 +171,36 @@ public final class Code39Reader extends OneDReader {
   }
 
   private static int[] findAsteriskPattern(BitArray row) throws NotFoundException {
-    int width = row.getSize();
-    int rowOffset = 0;
-    while (rowOffset < width) {
-      if (row.get(rowOffset)) {
-        break;
-      }
-      rowOffset++;
-    }
+    int rowOffset = row.getNextSet(0);
 
     int counterPosition = 0;
     int[] counters = new int[9];
     int patternStart = rowOffset;
-    boolean isWhite = false;
     int patternLength = counters.length;
 
-    for (int i = rowOffset; i < width; i++) {
-      boolean pixel = row.get(i);
-      if (pixel ^ isWhite) {
-        counters[counterPosition]++;
-      } else {
-        if (counterPosition == patternLength - 1) {
-          if (toNarrowWidePattern(counters) == ASTERISK_ENCODING) {
-            // Look for whitespace before start pattern, >= 50% of width of start pattern
-            if (row.isRange(Math.max(0, patternStart - (i - patternStart) / 2), patternStart, false)) {
-              return new int[]{patternStart, i};
-            }
-          }
-          patternStart += counters[0] + counters[1];
-          for (int y = 2; y < patternLength; y++) {
-            counters[y - 2] = counters[y];
+    // Each iteration takes one whole run of pixels, ending where the next begins at i
+    int numRuns = row.getNumRuns();
+    int runStart = rowOffset;
+    for (int run = row.getRunIndex(rowOffset); run < numRuns - 1; run++) {
+      int i = row.getRunStart(run + 1);
+      counters[counterPosition] = i - runStart;
+      runStart = i;
+      if (counterPosition == patternLength - 1) {
+        if (toNarrowWidePattern(counters) == ASTERISK_ENCODING) {
+          // Look for whitespace before start pattern, >= 50% of width of start pattern
+          if (row.isRange(Math.max(0, patternStart - (i - patternStart) / 2), patternStart, false)) {
+            return new int[]{patternStart, i};
           }
-          counters[patternLength - 2] = 0;
-          counters[patternLength - 1] = 0;
-          counterPosition--;
-        } else {
-          counterPosition++;
         }
-        counters[counterPosition] = 1;
-        isWhite = !isWhite;
+        patternStart += counters[0] + counters[1];
+        for (int y = 2; y < patternLength; y++) {
+          counters[y - 2] = counters[y];
+        }
+        counters[patternLength - 2] = 0;
+        counters[patternLength - 1] = 0;
+        counterPosition--;
+      } else {
+        counterPosition++;
       }
     }
     throw NotFoundException.getNotFoundInstance();
@@ -220,13 +220,7 @@ public final class ITFReader extends OneDReader {
    */
   private static int skipWhiteSpace(BitArray row) throws NotFoundException {
     int width = row.getSize();
-    int endStart = 0;
-    while (endStart < width) {
-      if (row.get(endStart)) {
-        break;
-      }
-      endStart++;
-    }
+    int endStart = row.getNextSet(0);
     if (endStart == width) {
       throw NotFoundException.getNotFoundInstance();
     }
@@ -286,32 +280,29 @@ public final class ITFReader extends OneDReader {
     // merged to a single method.
     int patternLength = pattern.length;
     int[] counters = new int[patternLength];
-    int width = row.getSize();
-    boolean isWhite = false;
 
     int counterPosition = 0;
     int patternStart = rowOffset;
-    for (int x = rowOffset; x < width; x++) {
-      boolean pixel = row.get(x);
-      if (pixel ^ isWhite) {
-        counters[counterPosition]++;
-      } else {
-        if (counterPosition == patternLength - 1) {
-          if (patternMatchVariance(counters, pattern, MAX_INDIVIDUAL_VARIANCE) < MAX_AVG_VARIANCE) {
-            return new int[]{patternStart, x};
-          }
-          patternStart += counters[0] + counters[1];
-          for (int y = 2; y < patternLength; y++) {
-            counters[y - 2] = counters[y];
-          }
-          counters[patternLength - 2] = 0;
-          counters[patternLength - 1] = 0;
-          counterPosition--;
-        } else {
-          counterPosition++;
+    // Each iteration takes one whole run of pixels, ending where the next begins at x
+    int numRuns = row.getNumRuns();
+    int runStart = rowOffset;
+    for (int run = row.getRunIndex(rowOffset); run < numRuns - 1; run++) {
+      int x = row.getRunStart(run + 1);
+      counters[counterPosition] = x - runStart;
+      runStart = x;
+      if (counterPosition == patternLength - 1) {
+        if (patternMatchVariance(counters, pattern, MAX_INDIVIDUAL_VARIANCE) < MAX_AVG_VARIANCE) {
+          return new int[]{patternStart, x};
+        }
+        patternStart += counters[0] + counters[1];
+        for (int y = 2; y < patternLength; y++) {
+          counters[y - 2] = counters[y];
         }
-        counters[counterPosition] = 1;
-        isWhite = !isWhite;
+        counters[patternLength - 2] = 0;
+        counters[patternLength - 1] = 0;
+        counterPosition--;
+      } else {
+        counterPosition++;
       }
     }
     throw NotFoundException.getNotFoundInstance();
@@ -27,6 +27,7 @@ import com.google.zxing.Result;
 import com.google.zxing.ResultMetadataType;
 import com.google.zxing.ResultPoint;
 import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
 
 import java.util.Enumeration;
 import java.util.Hashtable;
@@ -43,6 +44,13 @@ public abstract class OneDReader implements Reader {
   protected static final int INTEGER_MATH_SHIFT = 8;
   protected static final int PATTERN_MATCH_RESULT_SCALE_FACTOR = 1 << INTEGER_MATH_SHIFT;
 
+  // Degrees between lines when ANGLE_SWEEP doesn't map to a usable step
+  private static final int DEFAULT_ANGLE_STEP = 15;
+  private static final int MAX_ANGLE_STEP = 90;
+
+  // Reused across calls to doDecode(), which matters to continuous scan clients who reuse readers
+  private BitArray row;
+
   public Result decode(BinaryBitmap image) throws NotFoundException, FormatException {
     return decode(image, null);
   }
@@ -52,6 +60,9 @@ public abstract class OneDReader implements Reader {
     try {
       return doDecode(image, hints);
     } catch (NotFoundException nfe) {
+      if (hints != null && hints.containsKey(DecodeHintType.ANGLE_SWEEP)) {
+        return doDecodeAngles(image, hints);
+      }
       boolean tryHarder = hints != null && hints.containsKey(DecodeHintType.TRY_HARDER);
       if (tryHarder && image.isRotateSupported()) {
         BinaryBitmap rotatedImage = image.rotateCounterClockwise();
@@ -99,7 +110,12 @@ public abstract class OneDReader implements Reader {
   private Result doDecode(BinaryBitmap image, Hashtable hints) throws NotFoundException {
     int width = image.getWidth();
     int height = image.getHeight();
-    BitArray row = new BitArray(width);
+    // The row must be exactly as wide as the image, since decoders treat its size as the width.
+    BitArray row = this.row;
+    if (row == null || row.getSize() != width) {
+      row = new BitArray(width);
+      this.row = row;
+    }
 
     int middle = height >> 1;
     boolean tryHarder = hints != null && hints.containsKey(DecodeHintType.TRY_HARDER);
@@ -172,6 +188,186 @@ public abstract class OneDReader implements Reader {
     throw NotFoundException.getNotFoundInstance();
   }
 
+  /**
+   * Like {@link #doDecode(BinaryBitmap, Hashtable)}, but along lines across the black matrix at
+   * every multiple of the {@link DecodeHintType#ANGLE_SWEEP} angle up to 180 degrees, and at 90
+   * degrees, instead of along rows of the image. The lines at each angle are spaced and ordered as the rows are,
+   * from the middle of the image out, and each is sampled into a {@link BitArray} with
+   * Bresenham's algorithm. Result points are mapped back into the image, and the orientation
+   * of the barcode is recorded.
+   */
+  private Result doDecodeAngles(BinaryBitmap image, Hashtable hints) throws NotFoundException {
+    // Like TRY_HARDER, the hint may be given any value; only a positive Integer sets the step.
+    Object angleSweep = hints.get(DecodeHintType.ANGLE_SWEEP);
+    int angleStep = angleSweep instanceof Integer ? ((Integer) angleSweep).intValue() : 0;
+    if (angleStep < 1) {
+      angleStep = DEFAULT_ANGLE_STEP;
+    } else if (angleStep > MAX_ANGLE_STEP) {
+      angleStep = MAX_ANGLE_STEP;
+    }
+    // The callback would get points along the lines, not in the image.
+    if (hints.containsKey(DecodeHintType.NEED_RESULT_POINT_CALLBACK)) {
+      Hashtable newHints = new Hashtable(); // Can't use clone() in J2ME
+      Enumeration hintEnum = hints.keys();
+      while (hintEnum.hasMoreElements()) {
+        Object key = hintEnum.nextElement();
+        if (!key.equals(DecodeHintType.NEED_RESULT_POINT_CALLBACK)) {
+          newHints.put(key, hints.get(key));
+        }
+      }
+      hints = newHints;
+    }
+
+    BitMatrix matrix = image.getBlackMatrix();
+    int width = matrix.getWidth();
+    int height = matrix.getHeight();
+    float centerX = (width - 1) / 2.0f;
+    float centerY = (height - 1) / 2.0f;
+    float halfDiagonal = (float) Math.sqrt((double) (width * width + height * height)) / 2.0f;
+    boolean tryHarder = hints.containsKey(DecodeHintType.TRY_HARDER);
+    int lineStep = Math.max(1, Math.min(width, height) >> (tryHarder ? 8 : 5));
+    int maxLines = tryHarder ? Integer.MAX_VALUE : 15;
+    int lineNumber = 0;
+
+    for (int angle = angleStep; angle < 180; angle = nextAngle(angle, angleStep)) {
+      double radians = Math.toRadians((double) angle);
+      float dx = (float) Math.cos(radians);
+      float dy = (float) Math.sin(radians);
+      for (int x = 0; x < maxLines; x++) {
+        // Lines from the middle out, alternately on either side, as in doDecode()
+        int linesOut = (x + 1) >> 1;
+        int offset = lineStep * ((x & 0x01) == 0 ? linesOut : -linesOut);
+        if (linesOut * lineStep > halfDiagonal) {
+          break;
+        }
+        int[] ends = clipLine(centerX - dy * offset, centerY + dx * offset, dx, dy, width, height);
+        if (ends == null) {
+          continue;
+        }
+        BitArray row = sampleLine(matrix, ends[0], ends[1], ends[2], ends[3]);
+        int last = row.getSize() - 1;
+        for (int attempt = 0; attempt < 2; attempt++) {
+          if (attempt == 1) {
+            row.reverse();
+          }
+          Result result;
+          try {
+            result = decodeRow(lineNumber, row, hints);
+          } catch (ReaderException re) {
+            continue;
+          }
+          // Row positions back to image coordinates, measuring from the other end when reversed
+          ResultPoint[] points = result.getResultPoints();
+          for (int i = 0; i < points.length; i++) {
+            if (points[i] != null) {
+              float position = points[i].getX() / last;
+              if (attempt == 1) {
+                position = 1.0f - position;
+              }
+              points[i] = new ResultPoint(ends[0] + position * (ends[2] - ends[0]),
+                  ends[1] + position * (ends[3] - ends[1]));
+            }
+          }
+          // Lines run clockwise of horizontal, as y grows downwards, so 90 degrees is the 270
+          // recorded when a rotated image is decoded.
+          int orientation = attempt == 0 ? 360 - angle : 540 - angle;
+          result.putMetadata(ResultMetadataType.ORIENTATION, new Integer(orientation % 360));
+          return result;
+        }
+        lineNumber++;
+      }
+    }
+    throw NotFoundException.getNotFoundInstance();
+  }
+
+  /**
+   * @return the next multiple of angleStep after angle, except that 90 degrees comes between
+   *  multiples if it isn't one. The sweep replaces the retry on a rotated image in
+   *  {@link #decode(BinaryBitmap, Hashtable)}, so it must not miss vertical barcodes.
+   */
+  private static int nextAngle(int angle, int angleStep) {
+    int next = (angle / angleStep + 1) * angleStep;
+    return angle < 90 && next > 90 ? 90 : next;
+  }
+
+  /**
+   * Clips the line through the given point in the given direction to the image.
+   *
+   * @return the pixel coordinates of the ends of the line, x and y of one and then of the other,
+   *  or null if it misses the image
+   */
+  private static int[] clipLine(float x, float y, float dx, float dy, int width, int height) {
+    float tMin = -Float.MAX_VALUE;
+    float tMax = Float.MAX_VALUE;
+    if (Math.abs(dx) > 1.0e-6f) {
+      float t1 = -x / dx;
+      float t2 = (width - 1 - x) / dx;
+      tMin = Math.max(tMin, Math.min(t1, t2));
+      tMax = Math.min(tMax, Math.max(t1, t2));
+    } else if (x < 0.0f || x > width - 1) {
+      return null;
+    }
+    if (Math.abs(dy) > 1.0e-6f) {
+      float t1 = -y / dy;
+      float t2 = (height - 1 - y) / dy;
+      tMin = Math.max(tMin, Math.min(t1, t2));
+      tMax = Math.min(tMax, Math.max(t1, t2));
+    } else if (y < 0.0f || y > height - 1) {
+      return null;
+    }
+    if (tMin > tMax) {
+      return null;
+    }
+    return new int[] {
+        clamp((int) (x + tMin * dx + 0.5f), width - 1),
+        clamp((int) (y + tMin * dy + 0.5f), height - 1),
+        clamp((int) (x + tMax * dx + 0.5f), width - 1),
+        clamp((int) (y + tMax * dy + 0.5f), height - 1)
+    };
+  }
+
+  private static int clamp(int value, int max) {
+    return value < 0 ? 0 : (value > max ? max : value);
+  }
+
+  /**
+   * Samples the pixels from (fromX, fromY) to (toX, toY) with Bresenham's algorithm, one per
+   * pixel along the longer axis.
+   */
+  private static BitArray sampleLine(BitMatrix matrix, int fromX, int fromY, int toX, int toY) {
+    int distanceX = Math.abs(toX - fromX);
+    int distanceY = Math.abs(toY - fromY);
+    int stepX = fromX < toX ? 1 : -1;
+    int stepY = fromY < toY ? 1 : -1;
+    boolean steep = distanceY > distanceX;
+    int major = steep ? distanceY : distanceX;
+    int minor = steep ? distanceX : distanceY;
+    BitArray row = new BitArray(major + 1);
+    int x = fromX;
+    int y = fromY;
+    int error = major >> 1;
+    for (int i = 0; i <= major; i++) {
+      if (matrix.get(x, y)) {
+        row.set(i);
+      }
+      error -= minor;
+      if (steep) {
+        y += stepY;
+        if (error < 0) {
+          x += stepX;
+          error += major;
+        }
+      } else {
+        x += stepX;
+        if (error < 0) {
+          y += stepY;
+          error += major;
+        }
+      }
+    }
+    return row;
+  }
+
   /**
    * Records the size of successive runs of white and black pixels in a row, starting at a given point.
    * The values are recorded in the given array, and the number of runs recorded is equal to the size
@@ -187,53 +383,38 @@ public abstract class OneDReader implements Reader {
    */
   protected static void recordPattern(BitArray row, int start, int[] counters) throws NotFoundException {
     int numCounters = counters.length;
-    for (int i = 0; i < numCounters; i++) {
-      counters[i] = 0;
-    }
     int end = row.getSize();
     if (start >= end) {
       throw NotFoundException.getNotFoundInstance();
     }
-    boolean isWhite = !row.get(start);
-    int counterPosition = 0;
-    int i = start;
-    while (i < end) {
-      boolean pixel = row.get(i);
-      if (pixel ^ isWhite) { // that is, exactly one is true
-        counters[counterPosition]++;
+    // The first counter is the rest of the run containing start, the others are whole runs. The
+    // last of them may be cut off by the end of the row.
+    int run = row.getRunIndex(start);
+    int availableRuns = row.getNumRuns() - run;
+    int position = start;
+    for (int i = 0; i < numCounters; i++) {
+      if (i < availableRuns) {
+        int next = row.getRunStart(run + i + 1);
+        counters[i] = next - position;
+        position = next;
       } else {
-        counterPosition++;
-        if (counterPosition == numCounters) {
-          break;
-        } else {
-          counters[counterPosition] = 1;
-          isWhite = !isWhite;
-        }
+        counters[i] = 0;
       }
-      i++;
     }
-    // If we read fully the last section of pixels and filled up our counters -- or filled
-    // the last counter but ran off the side of the image, OK. Otherwise, a problem.
-    if (!(counterPosition == numCounters || (counterPosition == numCounters - 1 && i == end))) {
+    if (availableRuns < numCounters) {
       throw NotFoundException.getNotFoundInstance();
     }
   }
 
   protected static void recordPatternInReverse(BitArray row, int start, int[] counters)
       throws NotFoundException {
-    // This could be more efficient I guess
-    int numTransitionsLeft = counters.length;
-    boolean last = row.get(start);
-    while (start > 0 && numTransitionsLeft >= 0) {
-      if (row.get(--start) != last) {
-        numTransitionsLeft--;
-        last = !last;
-      }
-    }
-    if (numTransitionsLeft >= 0) {
+    // Records the counters.length runs just before the one containing start. As before, the first
+    // of them must not be the first run in the row, which might have been cut off by its edge.
+    int run = row.getRunIndex(start) - counters.length;
+    if (run < 1) {
       throw NotFoundException.getNotFoundInstance();
     }
-    recordPattern(row, start + 1, counters);
+    recordPattern(row, row.getRunStart(run), counters);
   }
 
   /**
@@ -73,12 +73,8 @@ final class UPCEANExtensionSupport {
         lgPatternFound |= 1 << (4 - x);
       }
       // Read off separator
-      while (rowOffset < end && !row.get(rowOffset)) {
-        rowOffset++;
-      }
-      while (rowOffset < end && row.get(rowOffset)) {
-        rowOffset++;
-      }
+      rowOffset = row.getNextSet(rowOffset);
+      rowOffset = row.getNextUnset(rowOffset);
     }
 
     if (resultString.length() != 5) {
@@ -183,17 +183,13 @@ public final class RSSExpandedReader extends AbstractRSSReader{
 
   private static int getNextSecondBar(BitArray row, int initialPos){
     int currentPos = initialPos;
-    boolean current = row.get(currentPos);
-
-    while(currentPos < row.size && row.get(currentPos) == current) {
-      currentPos++;
-    }
-
-    current = !current;
-    while(currentPos < row.size && row.get(currentPos) == current) {
-      currentPos++;
+    if (row.get(currentPos)) {
+      currentPos = row.getNextUnset(currentPos);
+      currentPos = row.getNextSet(currentPos);
+    } else {
+      currentPos = row.getNextSet(currentPos);
+      currentPos = row.getNextUnset(currentPos);
     }
-
     return currentPos;
   }
 
@@ -271,8 +267,6 @@ public final class RSSExpandedReader extends AbstractRSSReader{
     counters[2] = 0;
     counters[3] = 0;
 
-    int width = row.getSize();
-
     int rowOffset;
     if (forcedOffset >= 0) {
       rowOffset = forcedOffset;
@@ -284,48 +278,40 @@ public final class RSSExpandedReader extends AbstractRSSReader{
     }
     boolean searchingEvenPair = previousPairs.size() % 2 != 0;
 
-    boolean isWhite = false;
-    while (rowOffset < width) {
-      isWhite = !row.get(rowOffset);
-      if (!isWhite) {
-        break;
-      }
-      rowOffset++;
-    }
+    rowOffset = row.getNextSet(rowOffset);
 
     int counterPosition = 0;
     int patternStart = rowOffset;
-    for (int x = rowOffset; x < width; x++) {
-      boolean pixel = row.get(x);
-      if (pixel ^ isWhite) {
-        counters[counterPosition]++;
-      } else {
-        if (counterPosition == 3) {
-          if (searchingEvenPair) {
-            reverseCounters(counters);
-          }
-
-          if (isFinderPattern(counters)){
-            this.startEnd[0] = patternStart;
-            this.startEnd[1] = x;
-            return;
-          }
+    // Each iteration takes one whole run of pixels, ending where the next begins at x
+    int numRuns = row.getNumRuns();
+    int runStart = rowOffset;
+    for (int run = row.getRunIndex(rowOffset); run < numRuns - 1; run++) {
+      int x = row.getRunStart(run + 1);
+      counters[counterPosition] = x - runStart;
+      runStart = x;
+      if (counterPosition == 3) {
+        if (searchingEvenPair) {
+          reverseCounters(counters);
+        }
 
-          if (searchingEvenPair) {
-            reverseCounters(counters);
-          }
+        if (isFinderPattern(counters)){
+          this.startEnd[0] = patternStart;
+          this.startEnd[1] = x;
+          return;
+        }
 
-          patternStart += counters[0] + counters[1];
-          counters[0] = counters[2];
-          counters[1] = counters[3];
-          counters[2] = 0;
-          counters[3] = 0;
-          counterPosition--;
-        } else {
-          counterPosition++;
+        if (searchingEvenPair) {
+          reverseCounters(counters);
         }
-        counters[counterPosition] = 1;
-        isWhite = !isWhite;
+
+        patternStart += counters[0] + counters[1];
+        counters[0] = counters[2];
+        counters[1] = counters[3];
+        counters[2] = 0;
+        counters[3] = 0;
+        counterPosition--;
+      } else {
+        counterPosition++;
       }
     }
     throw NotFoundException.getNotFoundInstance();
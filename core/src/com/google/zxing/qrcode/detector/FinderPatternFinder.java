@@ -72,7 +72,12 @@ public class FinderPatternFinder {
     return possibleCenters;
   }
 
-  FinderPatternInfo find(Hashtable hints) throws NotFoundException {
+  /**
+   * @param hints optional hints; only {@link DecodeHintType#TRY_HARDER} is used
+   * @return the three most likely finder patterns in the image
+   * @throws NotFoundException if three plausible finder patterns cannot be found
+   */
+  public FinderPatternInfo find(Hashtable hints) throws NotFoundException {
     boolean tryHarder = hints != null && hints.containsKey(DecodeHintType.TRY_HARDER);
     int maxI = image.getHeight();
     int maxJ = image.getWidth();
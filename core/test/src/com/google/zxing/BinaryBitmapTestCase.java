@@ -0,0 +1,102 @@
+/*
+ * Copyright 2010 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing;
+
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.HybridBinarizer;
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+/**
+ * Tests {@link BinaryBitmap}.
+ */
+public final class BinaryBitmapTestCase extends TestCase {
+
+  private static final int WIDTH = 203;
+  private static final int HEIGHT = 157;
+
+  public void testCropSharesParentMatrix() throws NotFoundException {
+    int[] count = new int[1];
+    BinaryBitmap bitmap = new BinaryBitmap(new CountingBinarizer(createSource(), count));
+    BitMatrix matrix = bitmap.getBlackMatrix();
+    assertEquals(1, count[0]);
+
+    BinaryBitmap crop = bitmap.crop(37, 11, 101, 97);
+    BitMatrix cropMatrix = crop.getBlackMatrix();
+    BinaryBitmap nested = crop.crop(5, 70, 60, 27);
+    BitMatrix nestedMatrix = nested.getBlackMatrix();
+    assertEquals(1, count[0]);
+    assertEquals(matrix.crop(37, 11, 101, 97), cropMatrix);
+    assertEquals(matrix.crop(42, 81, 60, 27), nestedMatrix);
+    assertSame(cropMatrix, crop.getBlackMatrix());
+  }
+
+  public void testCropBeforeParentMatrix() throws NotFoundException {
+    int[] count = new int[1];
+    BinaryBitmap bitmap = new BinaryBitmap(new CountingBinarizer(createSource(), count));
+    BinaryBitmap crop = bitmap.crop(37, 11, 101, 97);
+    // Asked for after the crop was made, the parent's matrix is still used.
+    BitMatrix matrix = bitmap.getBlackMatrix();
+    assertEquals(matrix.crop(37, 11, 101, 97), crop.getBlackMatrix());
+    assertEquals(1, count[0]);
+    // With no parent matrix, the crop binarizes its own data.
+    BinaryBitmap other = new BinaryBitmap(new CountingBinarizer(createSource(), count));
+    other.crop(0, 0, 100, 100).getBlackMatrix();
+    assertEquals(2, count[0]);
+  }
+
+  private static LuminanceSource createSource() {
+    byte[] luminances = new byte[WIDTH * HEIGHT];
+    Random random = new Random(WIDTH * 31 + HEIGHT);
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        boolean dark = ((x / 9) + (y / 7)) % 3 == 0;
+        luminances[y * WIDTH + x] = (byte) ((dark ? 40 : 180) + random.nextInt(40));
+      }
+    }
+    return new PlanarYUVLuminanceSource(luminances, WIDTH, HEIGHT);
+  }
+
+  // Counts how many black matrices it and the binarizers it creates have computed.
+  private static final class CountingBinarizer extends Binarizer {
+
+    private final Binarizer delegate;
+    private final int[] count;
+
+    CountingBinarizer(LuminanceSource source, int[] count) {
+      super(source);
+      delegate = new HybridBinarizer(source);
+      this.count = count;
+    }
+
+    public BitArray getBlackRow(int y, BitArray row) throws NotFoundException {
+      return delegate.getBlackRow(y, row);
+    }
+
+    public BitMatrix getBlackMatrix() throws NotFoundException {
+      count[0]++;
+      return delegate.getBlackMatrix();
+    }
+
+    public Binarizer createBinarizer(LuminanceSource source) {
+      return new CountingBinarizer(source, count);
+    }
+  }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2010 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing;
+
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.oned.MultiFormatOneDReader;
+import com.google.zxing.qrcode.QRCodeReader;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Hashtable;
+
+import javax.imageio.ImageIO;
+
+public final class MultiFormatReaderTestCase extends TestCase {
+
+  private static final String QR_CODE_IMAGE = "test/data/blackbox/qrcode-1/1.jpg";
+  private static final String EAN_13_IMAGE = "test/data/blackbox/ean13-1/1.JPG";
+
+  public void testAdaptiveReaderOrder() throws Exception {
+    Hashtable<DecodeHintType, Object> hints = new Hashtable<DecodeHintType, Object>();
+    hints.put(DecodeHintType.ADAPTIVE_READER_ORDER, Boolean.TRUE);
+    MultiFormatReader reader = new MultiFormatReader();
+    reader.setHints(hints);
+    assertTrue(reader.getReaders().elementAt(0) instanceof MultiFormatOneDReader);
+
+    Result result = reader.decodeWithState(load(QR_CODE_IMAGE));
+    assertEquals(BarcodeFormat.QR_CODE, result.getBarcodeFormat());
+    assertTrue(reader.getReaders().elementAt(0) instanceof QRCodeReader);
+
+    // The QR code reader's score has decayed since, so one more recent success overtakes it
+    result = reader.decodeWithState(load(EAN_13_IMAGE));
+    assertEquals(BarcodeFormat.EAN_13, result.getBarcodeFormat());
+    assertTrue(reader.getReaders().elementAt(0) instanceof MultiFormatOneDReader);
+  }
+
+  public void testFixedOrderByDefault() throws Exception {
+    MultiFormatReader reader = new MultiFormatReader();
+    reader.setHints(null);
+    reader.decodeWithState(load(QR_CODE_IMAGE));
+    assertTrue(reader.getReaders().elementAt(0) instanceof MultiFormatOneDReader);
+  }
+
+  public void testTimeBudget() throws Exception {
+    Hashtable<DecodeHintType, Object> hints = new Hashtable<DecodeHintType, Object>();
+    hints.put(DecodeHintType.DECODE_TIME_BUDGET, 0);
+    MultiFormatReader reader = new MultiFormatReader();
+    // Only the first reader, for 1D formats, gets to try
+    try {
+      reader.decode(load(QR_CODE_IMAGE), hints);
+      fail();
+    } catch (NotFoundException nfe) {
+      // good
+    }
+    Result result = reader.decode(load(EAN_13_IMAGE), hints);
+    assertEquals(BarcodeFormat.EAN_13, result.getBarcodeFormat());
+  }
+
+  private static BinaryBitmap load(String path) throws IOException {
+    LuminanceSource source = new BufferedImageLuminanceSource(ImageIO.read(new File(path)));
+    return new BinaryBitmap(new HybridBinarizer(source));
+  }
+
+}
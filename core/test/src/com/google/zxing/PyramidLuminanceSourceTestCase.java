@@ -0,0 +1,138 @@
+/*
+ * Copyright 2010 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.zxing;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests {@link PyramidLuminanceSource}.
+ */
+public final class PyramidLuminanceSourceTestCase extends TestCase {
+
+  public void testAveragesBoxes() {
+    // A 5x3 image; the last column and row are dropped.
+    byte[] data = {
+        0, 2, 10, 20, 99,
+        4, 6, 30, (byte) 255, 99,
+        99, 99, 99, 99, 99,
+    };
+    PyramidLuminanceSource source =
+        new PyramidLuminanceSource(new PlanarYUVLuminanceSource(data, 5, 3));
+    assertEquals(2, source.getWidth());
+    assertEquals(1, source.getHeight());
+    assertEquals(2, source.getScale());
+    byte[] row = source.getRow(0, null);
+    assertEquals(3, row[0] & 0xFF);
+    assertEquals((10 + 20 + 30 + 255 + 2) >> 2, row[1] & 0xFF);
+    byte[] matrix = source.getMatrix();
+    assertEquals(row[0], matrix[0]);
+    assertEquals(row[1], matrix[1]);
+    // Once computed, the matrix is cached and rows come from it.
+    assertSame(matrix, source.getMatrix());
+    assertEquals(row[1], source.getRow(0, new byte[1])[1]);
+  }
+
+  public void testDownscale() {
+    LuminanceSource original = new PlanarYUVLuminanceSource(new byte[1000 * 300], 1000, 300);
+    assertSame(original, PyramidLuminanceSource.downscale(original, 1000));
+
+    LuminanceSource coarse = PyramidLuminanceSource.downscale(original, 200);
+    assertEquals(125, coarse.getWidth());
+    assertEquals(37, coarse.getHeight());
+    PyramidLuminanceSource pyramid = (PyramidLuminanceSource) coarse;
+    assertEquals(8, pyramid.getScale());
+    PyramidLuminanceSource finer = (PyramidLuminanceSource) pyramid.getSource();
+    assertEquals(4, finer.getScale());
+    assertEquals(250, finer.getWidth());
+  }
+
+  public void testLevelsMatchDirectAverage() {
+    int width = 64;
+    int height = 32;
+    byte[] data = new byte[width * height];
+    new java.util.Random(0xCAFE).nextBytes(data);
+    LuminanceSource twice = new PyramidLuminanceSource(
+        new PyramidLuminanceSource(new PlanarYUVLuminanceSource(data, width, height)));
+    byte[] matrix = twice.getMatrix();
+    for (int y = 0; y < height / 4; y++) {
+      for (int x = 0; x < width / 4; x++) {
+        // Each level rounds, so compare with rounding twice.
+        int[] halves = new int[4];
+        for (int i = 0; i < 4; i++) {
+          int sx = 4 * x + 2 * (i & 1);
+          int sy = 4 * y + 2 * (i >> 1);
+          int sum = (data[sy * width + sx] & 0xFF) + (data[sy * width + sx + 1] & 0xFF) +
+              (data[(sy + 1) * width + sx] & 0xFF) + (data[(sy + 1) * width + sx + 1] & 0xFF);
+          halves[i] = (sum + 2) >> 2;
+        }
+        int expected = (halves[0] + halves[1] + halves[2] + halves[3] + 2) >> 2;
+        assertEquals(expected, matrix[y * (width / 4) + x] & 0xFF);
+      }
+    }
+  }
+
+  public void testRowsReuseSourceRows() {
+    int width = 40;
+    int height = 30;
+    byte[] data = new byte[width * height];
+    new java.util.Random(0xBEEF).nextBytes(data);
+    CountingLuminanceSource counting =
+        new CountingLuminanceSource(new PlanarYUVLuminanceSource(data, width, height));
+    LuminanceSource source = new PyramidLuminanceSource(counting);
+    byte[][] rows = new byte[height / 2][];
+    for (int y = 0; y < rows.length; y++) {
+      rows[y] = source.getRow(y, null);
+    }
+    // Only the first two rows read from the source needed new arrays.
+    assertEquals(rows.length * 2, counting.rowsRead);
+    assertEquals(2, counting.rowsAllocated);
+    // And the rows were not mixed up by the reuse.
+    byte[] matrix = source.getMatrix();
+    for (int y = 0; y < rows.length; y++) {
+      for (int x = 0; x < width / 2; x++) {
+        assertEquals(matrix[y * (width / 2) + x], rows[y][x]);
+      }
+    }
+  }
+
+  // Counts the rows asked of a source, and those for which the caller had no array to reuse.
+  private static final class CountingLuminanceSource extends LuminanceSource {
+
+    private final LuminanceSource delegate;
+    private int rowsRead;
+    private int rowsAllocated;
+
+    CountingLuminanceSource(LuminanceSource delegate) {
+      super(delegate.getWidth(), delegate.getHeight());
+      this.delegate = delegate;
+    }
+
+    public byte[] getRow(int y, byte[] row) {
+      rowsRead++;
+      if (row == null) {
+        rowsAllocated++;
+      }
+      return delegate.getRow(y, row);
+    }
+
+    public byte[] getMatrix() {
+      return delegate.getMatrix();
+    }
+  }
+
+}
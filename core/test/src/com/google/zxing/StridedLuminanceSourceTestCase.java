@@ -0,0 +1,209 @@
+/*
+ * Copyright 2010 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.zxing;
+
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+/**
+ * Tests the camera frame luminance sources, which share their cropping and rotation logic.
+ */
+public final class StridedLuminanceSourceTestCase extends TestCase {
+
+  private static final int WIDTH = 13;
+  private static final int HEIGHT = 7;
+  private static final int OFFSET = 5;
+  private static final int PADDING = 3;
+
+  public void testPlanarYUV() {
+    byte[] expected = randomLuminances();
+    int rowStride = WIDTH + PADDING;
+    byte[] data = new byte[OFFSET + rowStride * HEIGHT + WIDTH * HEIGHT / 2];
+    for (int y = 0; y < HEIGHT; y++) {
+      System.arraycopy(expected, y * WIDTH, data, OFFSET + y * rowStride, WIDTH);
+    }
+    checkSource(expected, new PlanarYUVLuminanceSource(data, OFFSET, WIDTH, HEIGHT, rowStride, 0,
+        0, WIDTH, HEIGHT));
+  }
+
+  public void testPlanarYUVWholeFrameIsNotCopied() {
+    byte[] data = randomLuminances();
+    assertSame(data, new PlanarYUVLuminanceSource(data, WIDTH, HEIGHT).getMatrix());
+  }
+
+  public void testPackedYUV() {
+    byte[] expected = randomLuminances();
+    int rowStride = 2 * WIDTH + PADDING;
+    byte[] yuyv = new byte[OFFSET + rowStride * HEIGHT];
+    byte[] uyvy = new byte[OFFSET + rowStride * HEIGHT];
+    for (int i = 0; i < yuyv.length; i++) {
+      yuyv[i] = (byte) 0x80;
+      uyvy[i] = (byte) 0x80;
+    }
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        int pixel = OFFSET + y * rowStride + 2 * x;
+        yuyv[pixel] = expected[y * WIDTH + x];
+        uyvy[pixel + 1] = expected[y * WIDTH + x];
+      }
+    }
+    checkSource(expected, new PackedYUVLuminanceSource(yuyv, OFFSET, WIDTH, HEIGHT, rowStride,
+        PackedYUVLuminanceSource.YUYV, 0, 0, WIDTH, HEIGHT));
+    checkSource(expected, new PackedYUVLuminanceSource(uyvy, OFFSET, WIDTH, HEIGHT, rowStride,
+        PackedYUVLuminanceSource.UYVY, 0, 0, WIDTH, HEIGHT));
+  }
+
+  public void testRGBA8888() {
+    Random random = new Random(0xBADC0DE);
+    int rowStride = 4 * WIDTH + PADDING;
+    byte[] data = new byte[OFFSET + rowStride * HEIGHT];
+    byte[] expected = new byte[WIDTH * HEIGHT];
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        int r = random.nextInt(256);
+        int g = random.nextInt(256);
+        int b = random.nextInt(256);
+        int pixel = OFFSET + y * rowStride + 4 * x;
+        data[pixel] = (byte) r;
+        data[pixel + 1] = (byte) g;
+        data[pixel + 2] = (byte) b;
+        data[pixel + 3] = (byte) random.nextInt(256);
+        expected[y * WIDTH + x] = (byte) ((306 * r + 601 * g + 117 * b) >> 10);
+      }
+    }
+    checkSource(expected, new RGBLuminanceSource(data, OFFSET, WIDTH, HEIGHT, rowStride,
+        RGBLuminanceSource.RGBA8888, 0, 0, WIDTH, HEIGHT));
+  }
+
+  public void testRGB565() {
+    byte[] data = new byte[8];
+    // White, pure red, pure green and pure blue, little-endian.
+    data[0] = (byte) 0xFF;
+    data[1] = (byte) 0xFF;
+    data[3] = (byte) 0xF8;
+    data[4] = (byte) 0xE0;
+    data[5] = (byte) 0x07;
+    data[6] = (byte) 0x1F;
+    byte[] row = new RGBLuminanceSource(data, 4, 1, RGBLuminanceSource.RGB565).getRow(0, null);
+    assertEquals(255, row[0] & 0xFF);
+    assertEquals((306 * 255) >> 10, row[1] & 0xFF);
+    assertEquals((601 * 255) >> 10, row[2] & 0xFF);
+    assertEquals((117 * 255) >> 10, row[3] & 0xFF);
+  }
+
+  public void testBadArguments() {
+    byte[] data = new byte[WIDTH * HEIGHT];
+    try {
+      new PlanarYUVLuminanceSource(data, 1, WIDTH, HEIGHT, WIDTH, 0, 0, WIDTH, HEIGHT);
+      fail("Frame should not fit");
+    } catch (IllegalArgumentException iae) {
+      // good
+    }
+    try {
+      new PlanarYUVLuminanceSource(data, 0, WIDTH, HEIGHT, WIDTH, 1, 0, WIDTH, HEIGHT);
+      fail("Crop should not fit");
+    } catch (IllegalArgumentException iae) {
+      // good
+    }
+    try {
+      new PlanarYUVLuminanceSource(data, WIDTH, HEIGHT).rotateCounterClockwise().crop(0, 0,
+          WIDTH, HEIGHT);
+      fail("Crop should not fit the rotated image");
+    } catch (IllegalArgumentException iae) {
+      // good
+    }
+    try {
+      new RGBLuminanceSource(data, 2, 2, 3);
+      fail("Format should be unknown");
+    } catch (IllegalArgumentException iae) {
+      // good
+    }
+  }
+
+  private static byte[] randomLuminances() {
+    Random random = new Random(0xDEADBEEF);
+    byte[] luminances = new byte[WIDTH * HEIGHT];
+    random.nextBytes(luminances);
+    return luminances;
+  }
+
+  // Checks the source against the expected image, and its crops and rotations against crops and
+  // rotations of the expected image.
+  private static void checkSource(byte[] expected, LuminanceSource source) {
+    assertMatches(expected, WIDTH, HEIGHT, source);
+
+    byte[] cropped = crop(expected, WIDTH, 2, 1, 9, 5);
+    LuminanceSource croppedSource = source.crop(2, 1, 9, 5);
+    assertMatches(cropped, 9, 5, croppedSource);
+    assertMatches(crop(cropped, 9, 3, 2, 4, 3), 4, 3, croppedSource.crop(3, 2, 4, 3));
+
+    byte[] image = expected;
+    int width = WIDTH;
+    int height = HEIGHT;
+    LuminanceSource rotated = source;
+    for (int i = 0; i < 4; i++) {
+      image = rotateCounterClockwise(image, width, height);
+      int temp = width;
+      width = height;
+      height = temp;
+      rotated = rotated.rotateCounterClockwise();
+      assertMatches(image, width, height, rotated);
+      assertMatches(crop(image, width, 1, 2, 3, 4), 3, 4, rotated.crop(1, 2, 3, 4));
+      assertMatches(rotateCounterClockwise(crop(image, width, 1, 2, 3, 4), 3, 4), 4, 3,
+          rotated.crop(1, 2, 3, 4).rotateCounterClockwise());
+    }
+  }
+
+  private static void assertMatches(byte[] expected, int width, int height,
+      LuminanceSource source) {
+    assertEquals(width, source.getWidth());
+    assertEquals(height, source.getHeight());
+    byte[] matrix = source.getMatrix();
+    for (int i = 0; i < width * height; i++) {
+      assertEquals(expected[i], matrix[i]);
+    }
+    byte[] row = null;
+    for (int y = 0; y < height; y++) {
+      row = source.getRow(y, row);
+      for (int x = 0; x < width; x++) {
+        assertEquals(expected[y * width + x], row[x]);
+      }
+    }
+  }
+
+  private static byte[] crop(byte[] image, int imageWidth, int left, int top, int width,
+      int height) {
+    byte[] result = new byte[width * height];
+    for (int y = 0; y < height; y++) {
+      System.arraycopy(image, (top + y) * imageWidth + left, result, y * width, width);
+    }
+    return result;
+  }
+
+  private static byte[] rotateCounterClockwise(byte[] image, int width, int height) {
+    byte[] result = new byte[width * height];
+    for (int y = 0; y < width; y++) {
+      for (int x = 0; x < height; x++) {
+        result[y * height + x] = image[x * width + (width - 1 - y)];
+      }
+    }
+    return result;
+  }
+
+}
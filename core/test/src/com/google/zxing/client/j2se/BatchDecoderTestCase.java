@@ -0,0 +1,159 @@
+/*
+ * Copyright 2010 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.client.j2se;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+import junit.framework.TestCase;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+public final class BatchDecoderTestCase extends TestCase {
+
+  private static final String QR_CODE_IMAGE = "test/data/blackbox/qrcode-1/1.jpg";
+  private static final String EAN_13_IMAGE = "test/data/blackbox/ean13-1/1.JPG";
+  private static final String RSS14_IMAGE = "test/data/blackbox/rss14-1/1.png";
+
+  public void testOutcomesInOrder() throws Exception {
+    List<LuminanceSource> sources = new ArrayList<LuminanceSource>();
+    sources.add(load(QR_CODE_IMAGE));
+    sources.add(blank());
+    sources.add(load(EAN_13_IMAGE));
+    sources.add(load(RSS14_IMAGE));
+    sources.add(blank());
+    BatchDecoder decoder = new BatchDecoder(3, null);
+    try {
+      List<BatchDecoder.Outcome> outcomes = decoder.decodeAll(sources);
+      assertEquals(sources.size(), outcomes.size());
+      for (int i = 0; i < outcomes.size(); i++) {
+        assertEquals(i, outcomes.get(i).getIndex());
+      }
+      assertEquals(BarcodeFormat.QR_CODE, outcomes.get(0).getResult().getBarcodeFormat());
+      assertTrue(outcomes.get(1).getFailure() instanceof NotFoundException);
+      assertEquals(BarcodeFormat.EAN_13, outcomes.get(2).getResult().getBarcodeFormat());
+      assertEquals("04412345678909", outcomes.get(3).getResult().getText());
+      assertTrue(outcomes.get(4).getFailure() instanceof NotFoundException);
+    } finally {
+      decoder.shutdown();
+    }
+  }
+
+  public void testForgetsEarlierImages() throws Exception {
+    // One thread, so the blank image is decoded with the reader which just found the RSS-14 code
+    BatchDecoder decoder = new BatchDecoder(1, null);
+    try {
+      assertTrue(decoder.decode(load(RSS14_IMAGE)).isSuccess());
+      assertFalse(decoder.decode(blank()).isSuccess());
+    } finally {
+      decoder.shutdown();
+    }
+  }
+
+  public void testInFlightBound() throws Exception {
+    final int maxInFlight = 2;
+    final AtomicInteger delivered = new AtomicInteger();
+    final int[] maxOutstanding = new int[1];
+    final LuminanceSource blank = blank();
+    Iterator<LuminanceSource> sources = new Iterator<LuminanceSource>() {
+      private int pulled;
+      public boolean hasNext() {
+        return pulled < 12;
+      }
+      public LuminanceSource next() {
+        // Every image pulled before this one has been handed to the executor by now
+        maxOutstanding[0] = Math.max(maxOutstanding[0], pulled - delivered.get());
+        pulled++;
+        return blank;
+      }
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      BatchDecoder decoder = new BatchDecoder(executor, maxInFlight, null);
+      int decoded = decoder.decode(sources, new BatchDecoder.Listener() {
+        public void decoded(BatchDecoder.Outcome outcome) {
+          try {
+            Thread.sleep(10L);
+          } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+          }
+          delivered.incrementAndGet();
+        }
+      });
+      assertEquals(12, decoded);
+      assertEquals(12, delivered.get());
+      assertTrue(maxOutstanding[0] <= maxInFlight);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  public void testListenerFailure() throws Exception {
+    final RuntimeException failure = new IllegalStateException();
+    final AtomicInteger delivered = new AtomicInteger();
+    List<LuminanceSource> sources = new ArrayList<LuminanceSource>();
+    for (int i = 0; i < 10; i++) {
+      sources.add(blank());
+    }
+    BatchDecoder decoder = new BatchDecoder(2, null);
+    try {
+      decoder.decode(sources.iterator(), new BatchDecoder.Listener() {
+        public void decoded(BatchDecoder.Outcome outcome) {
+          delivered.incrementAndGet();
+          if (outcome.getIndex() == 3) {
+            throw failure;
+          }
+        }
+      });
+      fail();
+    } catch (IllegalStateException ise) {
+      assertSame(failure, ise);
+    } finally {
+      decoder.shutdown();
+    }
+    assertTrue(delivered.get() >= 4);
+  }
+
+  private static LuminanceSource load(String path) throws IOException {
+    return new BufferedImageLuminanceSource(ImageIO.read(new File(path)));
+  }
+
+  private static LuminanceSource blank() {
+    BufferedImage image = new BufferedImage(200, 200, BufferedImage.TYPE_3BYTE_BGR);
+    Graphics graphics = image.getGraphics();
+    graphics.setColor(Color.WHITE);
+    graphics.fillRect(0, 0, 200, 200);
+    graphics.dispose();
+    return new BufferedImageLuminanceSource(image);
+  }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2010 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.client.j2se;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public final class BatchRunnerTestCase extends TestCase {
+
+  private static final File RSS14_DIR = new File("test/data/blackbox/rss14-1");
+  private static final File QR_CODE_IMAGE = new File("test/data/blackbox/qrcode-1/1.jpg");
+
+  public void testJsonLines() throws Exception {
+    File junk = File.createTempFile("junk", ".png");
+    try {
+      OutputStream junkOut = new FileOutputStream(junk);
+      junkOut.write(new byte[] {1, 2, 3});
+      junkOut.close();
+
+      FlushCountingWriter out = new FlushCountingWriter();
+      new BatchRunner(null, null, 2, 3, false, out).run(
+          Arrays.asList(RSS14_DIR, QR_CODE_IMAGE, junk));
+      List<String> lines = lines(out);
+
+      // Six images in the directory; its .txt files are skipped
+      assertEquals(8, lines.size());
+      // Written a line at a time, as each image is done, rather than all at the end
+      assertEquals(lines.size(), out.flushes);
+      assertTrue(lines.contains("{\"file\":" + quote(new File(RSS14_DIR, "1.png").getPath()) +
+          ",\"success\":true,\"format\":\"RSS14\",\"text\":\"04412345678909\"}"));
+      int successes = 0;
+      for (String line : lines) {
+        if (line.contains("\"success\":true")) {
+          successes++;
+        }
+        if (line.contains(junk.getName())) {
+          assertTrue(line, line.contains("\"success\":false,\"error\":\"Could not load image"));
+        }
+      }
+      assertEquals(7, successes);
+    } finally {
+      junk.delete();
+    }
+  }
+
+  public void testCsv() throws Exception {
+    StringWriter out = new StringWriter();
+    new BatchRunner(null, null, 1, 1, true, out).run(Arrays.asList(QR_CODE_IMAGE));
+    List<String> lines = lines(out);
+    assertEquals(2, lines.size());
+    assertEquals("file,success,format,text,error", lines.get(0));
+    assertTrue(lines.get(1).startsWith('"' + QR_CODE_IMAGE.getPath() + "\",true,QR_CODE,\""));
+  }
+
+  public void testNothingToDo() throws Exception {
+    StringWriter out = new StringWriter();
+    new BatchRunner(null, null, 2, 2, false, out).run(new ArrayList<File>());
+    assertEquals("", out.toString());
+  }
+
+  private static List<String> lines(Object out) throws IOException {
+    List<String> lines = new ArrayList<String>();
+    for (String line : out.toString().split("\n")) {
+      if (line.length() > 0) {
+        lines.add(line);
+      }
+    }
+    return lines;
+  }
+
+  private static String quote(String value) {
+    return '"' + value.replace("\\", "\\\\") + '"';
+  }
+
+  private static final class FlushCountingWriter extends StringWriter {
+    private int flushes;
+
+    @Override
+    public void flush() {
+      super.flush();
+      flushes++;
+    }
+  }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2010 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.client.j2se;
+
+import com.google.zxing.LuminanceSource;
+import junit.framework.TestCase;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * Checks that {@link BufferedImageLuminanceSource} gives the same luminance values for every
+ * image type, whether it reads the raster directly or goes through getRGB().
+ */
+public final class BufferedImageLuminanceSourceTestCase extends TestCase {
+
+  // Big enough that getMatrix() splits the work into bands when given more than one thread.
+  private static final int WIDTH = 600;
+  private static final int HEIGHT = 500;
+
+  private static final int[] TYPES = {
+      BufferedImage.TYPE_BYTE_GRAY,
+      BufferedImage.TYPE_3BYTE_BGR,
+      BufferedImage.TYPE_4BYTE_ABGR,
+      BufferedImage.TYPE_INT_RGB,
+      BufferedImage.TYPE_INT_ARGB,
+      // Not read from the raster, so these exercise the getRGB() path.
+      BufferedImage.TYPE_INT_BGR,
+      BufferedImage.TYPE_USHORT_GRAY,
+  };
+
+  public void testWholeImage() {
+    for (int type : TYPES) {
+      BufferedImage image = createImage(type);
+      for (int numThreads = 1; numThreads <= 3; numThreads += 2) {
+        LuminanceSource source = new BufferedImageLuminanceSource(image, numThreads);
+        assertLuminances(type, image, 0, 0, WIDTH, HEIGHT, source);
+      }
+    }
+  }
+
+  public void testCrop() {
+    for (int type : TYPES) {
+      BufferedImage image = createImage(type);
+      LuminanceSource source =
+          new BufferedImageLuminanceSource(image, 17, 23, WIDTH - 40, HEIGHT - 50);
+      assertLuminances(type, image, 17, 23, WIDTH - 40, HEIGHT - 50, source);
+      // Crops of crops, and of a source that converts on several threads.
+      assertLuminances(type, image, 20, 30, 100, 60, source.crop(3, 7, 100, 60));
+      LuminanceSource threaded = new BufferedImageLuminanceSource(image, 3);
+      assertLuminances(type, image, 5, 1, WIDTH - 5, HEIGHT - 1,
+          threaded.crop(5, 1, WIDTH - 5, HEIGHT - 1));
+    }
+  }
+
+  public void testSubimage() {
+    // A subimage shares its parent's raster, offset into it.
+    for (int type : TYPES) {
+      BufferedImage parent = createImage(type);
+      BufferedImage image = parent.getSubimage(31, 11, 200, 150);
+      LuminanceSource source = new BufferedImageLuminanceSource(image);
+      assertLuminances(type, image, 0, 0, 200, 150, source);
+      assertLuminances(type, image, 10, 20, 50, 40, source.crop(10, 20, 50, 40));
+    }
+  }
+
+  public void testNeedsOneThread() {
+    try {
+      new BufferedImageLuminanceSource(createImage(BufferedImage.TYPE_INT_RGB), 0);
+      fail();
+    } catch (IllegalArgumentException iae) {
+      // good
+    }
+  }
+
+  private static BufferedImage createImage(int type) {
+    BufferedImage image = new BufferedImage(WIDTH, HEIGHT, type);
+    Random random = new Random(type);
+    int[] rgb = new int[WIDTH];
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        // Opaque, since getRGB() of a translucent pixel depends on how the type stores alpha.
+        rgb[x] = 0xFF000000 | random.nextInt(0x1000000);
+      }
+      image.setRGB(0, y, WIDTH, 1, rgb, 0, WIDTH);
+    }
+    return image;
+  }
+
+  private static void assertLuminances(int type, BufferedImage image, int left, int top,
+      int width, int height, LuminanceSource source) {
+    assertEquals(width, source.getWidth());
+    assertEquals(height, source.getHeight());
+    byte[] matrix = source.getMatrix();
+    assertEquals(width * height, matrix.length);
+    byte[] row = null;
+    for (int y = 0; y < height; y++) {
+      row = source.getRow(y, row);
+      for (int x = 0; x < width; x++) {
+        int expected = luminance(image.getRGB(left + x, top + y));
+        String where = "type " + type + " at " + x + ',' + y;
+        assertEquals(where, expected, matrix[y * width + x] & 0xFF);
+        assertEquals(where, expected, row[x] & 0xFF);
+      }
+    }
+  }
+
+  private static int luminance(int pixel) {
+    return (306 * ((pixel >> 16) & 0xFF) +
+        601 * ((pixel >> 8) & 0xFF) +
+        117 * (pixel & 0xFF)) >> 10;
+  }
+
+}
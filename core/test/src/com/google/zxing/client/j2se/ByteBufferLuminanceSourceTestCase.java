@@ -0,0 +1,197 @@
+/*
+ * Copyright 2010 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.client.j2se;
+
+import com.google.zxing.LuminanceSource;
+import junit.framework.TestCase;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Tests {@link ByteBufferLuminanceSource} over heap, direct, offset and sliced buffers.
+ */
+public final class ByteBufferLuminanceSourceTestCase extends TestCase {
+
+  private static final int WIDTH = 13;
+  private static final int HEIGHT = 7;
+  private static final int OFFSET = 5;
+  private static final int PADDING = 3;
+
+  public void testHeap() {
+    byte[] expected = randomLuminances();
+    checkSource(expected, new ByteBufferLuminanceSource(ByteBuffer.wrap(expected.clone()), WIDTH,
+        HEIGHT));
+    ByteBuffer padded = ByteBuffer.wrap(layOut(expected, 0, WIDTH + PADDING));
+    checkSource(expected, new ByteBufferLuminanceSource(padded, WIDTH, HEIGHT, WIDTH + PADDING));
+  }
+
+  public void testHeapWholeFrameIsNotCopied() {
+    byte[] data = randomLuminances();
+    assertSame(data, new ByteBufferLuminanceSource(ByteBuffer.wrap(data), WIDTH, HEIGHT)
+        .getMatrix());
+  }
+
+  public void testDirect() {
+    byte[] expected = randomLuminances();
+    checkSource(expected, new ByteBufferLuminanceSource(direct(layOut(expected, 0, WIDTH)), WIDTH,
+        HEIGHT));
+    checkSource(expected, new ByteBufferLuminanceSource(
+        direct(layOut(expected, 0, WIDTH + PADDING)), WIDTH, HEIGHT, WIDTH + PADDING));
+  }
+
+  public void testReadOnly() {
+    // A read-only heap buffer has no accessible array, so it is read like a direct one.
+    byte[] expected = randomLuminances();
+    ByteBuffer buffer = ByteBuffer.wrap(layOut(expected, 0, WIDTH + PADDING)).asReadOnlyBuffer();
+    checkSource(expected, new ByteBufferLuminanceSource(buffer, WIDTH, HEIGHT, WIDTH + PADDING));
+  }
+
+  public void testOffset() {
+    // The frame starts at the buffer's position, which the source must leave alone.
+    byte[] expected = randomLuminances();
+    int rowStride = WIDTH + PADDING;
+    ByteBuffer[] buffers = {
+        ByteBuffer.wrap(layOut(expected, OFFSET, rowStride)),
+        direct(layOut(expected, OFFSET, rowStride)),
+    };
+    for (ByteBuffer buffer : buffers) {
+      buffer.position(OFFSET);
+      int limit = buffer.limit();
+      LuminanceSource source = new ByteBufferLuminanceSource(buffer, WIDTH, HEIGHT, rowStride);
+      // Moving the caller's buffer afterwards must not move the frame.
+      buffer.position(0);
+      checkSource(expected, source);
+      assertEquals(0, buffer.position());
+      assertEquals(limit, buffer.limit());
+    }
+  }
+
+  public void testSliced() {
+    byte[] expected = randomLuminances();
+    int rowStride = WIDTH + PADDING;
+    byte[] data = layOut(expected, OFFSET, rowStride);
+    ByteBuffer heap = ByteBuffer.wrap(data, OFFSET, data.length - OFFSET).slice();
+    assertEquals(OFFSET, heap.arrayOffset());
+    checkSource(expected, new ByteBufferLuminanceSource(heap, WIDTH, HEIGHT, rowStride));
+
+    ByteBuffer direct = direct(data);
+    direct.position(OFFSET);
+    checkSource(expected, new ByteBufferLuminanceSource(direct.slice(), WIDTH, HEIGHT, rowStride));
+
+    // Unpadded, so the whole frame would be one copy, but not from the start of the array.
+    byte[] unpadded = layOut(expected, OFFSET, WIDTH);
+    ByteBuffer slice = ByteBuffer.wrap(unpadded, OFFSET, WIDTH * HEIGHT).slice();
+    byte[] matrix = new ByteBufferLuminanceSource(slice, WIDTH, HEIGHT).getMatrix();
+    assertNotSame(unpadded, matrix);
+    assertMatches(expected, WIDTH, HEIGHT, new ByteBufferLuminanceSource(slice, WIDTH, HEIGHT));
+  }
+
+  public void testBadArguments() {
+    ByteBuffer buffer = ByteBuffer.allocate(WIDTH * HEIGHT);
+    try {
+      new ByteBufferLuminanceSource(buffer, WIDTH, HEIGHT, WIDTH - 1);
+      fail("Row stride should be too small");
+    } catch (IllegalArgumentException iae) {
+      // good
+    }
+    try {
+      new ByteBufferLuminanceSource(buffer, WIDTH, HEIGHT, WIDTH + 1);
+      fail("Frame should not fit");
+    } catch (IllegalArgumentException iae) {
+      // good
+    }
+    buffer.position(1);
+    try {
+      new ByteBufferLuminanceSource(buffer, WIDTH, HEIGHT);
+      fail("Frame should not fit after the position");
+    } catch (IllegalArgumentException iae) {
+      // good
+    }
+    buffer.position(0);
+    try {
+      new ByteBufferLuminanceSource(buffer, WIDTH, HEIGHT).crop(1, 0, WIDTH, HEIGHT);
+      fail("Crop should not fit");
+    } catch (IllegalArgumentException iae) {
+      // good
+    }
+  }
+
+  private static byte[] randomLuminances() {
+    Random random = new Random(0xDEADBEEF);
+    byte[] luminances = new byte[WIDTH * HEIGHT];
+    random.nextBytes(luminances);
+    return luminances;
+  }
+
+  // Lays the image out in rows rowStride apart starting at offset, filling the gaps with junk.
+  private static byte[] layOut(byte[] image, int offset, int rowStride) {
+    byte[] data = new byte[offset + rowStride * HEIGHT];
+    new Random(0xBADC0DE).nextBytes(data);
+    for (int y = 0; y < HEIGHT; y++) {
+      System.arraycopy(image, y * WIDTH, data, offset + y * rowStride, WIDTH);
+    }
+    return data;
+  }
+
+  private static ByteBuffer direct(byte[] data) {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(data.length);
+    buffer.put(data);
+    buffer.clear();
+    return buffer;
+  }
+
+  // Checks the source against the expected image, and its crops against crops of the image.
+  private static void checkSource(byte[] expected, LuminanceSource source) {
+    assertMatches(expected, WIDTH, HEIGHT, source);
+    byte[] cropped = crop(expected, WIDTH, 2, 1, 9, 5);
+    LuminanceSource croppedSource = source.crop(2, 1, 9, 5);
+    assertMatches(cropped, 9, 5, croppedSource);
+    assertMatches(crop(cropped, 9, 3, 2, 4, 3), 4, 3, croppedSource.crop(3, 2, 4, 3));
+    // Full width crops take the single copy path when the rows are unpadded.
+    assertMatches(crop(expected, WIDTH, 0, 2, WIDTH, 4), WIDTH, 4, source.crop(0, 2, WIDTH, 4));
+  }
+
+  private static void assertMatches(byte[] expected, int width, int height,
+      LuminanceSource source) {
+    assertEquals(width, source.getWidth());
+    assertEquals(height, source.getHeight());
+    byte[] matrix = source.getMatrix();
+    for (int i = 0; i < width * height; i++) {
+      assertEquals(expected[i], matrix[i]);
+    }
+    // A row array longer than needed is filled from the start.
+    byte[] row = new byte[width + 1];
+    for (int y = 0; y < height; y++) {
+      assertSame(row, source.getRow(y, row));
+      for (int x = 0; x < width; x++) {
+        assertEquals(expected[y * width + x], row[x]);
+      }
+    }
+    assertEquals(width, source.getRow(0, null).length);
+  }
+
+  private static byte[] crop(byte[] image, int imageWidth, int left, int top, int width,
+      int height) {
+    byte[] result = new byte[width * height];
+    for (int y = 0; y < height; y++) {
+      System.arraycopy(image, (top + y) * imageWidth + left, result, y * width, width);
+    }
+    return result;
+  }
+
+}
@@ -84,4 +84,72 @@ public final class BitArrayTestCase extends TestCase {
     assertFalse(array.isRange(0, 64, false));
   }
 
+  public void testReverse() {
+    BitArray array = new BitArray(37);
+    array.set(0);
+    array.set(5);
+    array.set(36);
+    array.reverse();
+    assertTrue(array.get(0));
+    assertTrue(array.get(31));
+    assertTrue(array.get(36));
+    for (int i = 1; i < 36; i++) {
+      if (i != 31) {
+        assertFalse(array.get(i));
+      }
+    }
+  }
+
+  public void testRuns() {
+    BitArray array = new BitArray(40);
+    for (int i = 3; i < 7; i++) {
+      array.set(i);
+    }
+    array.set(35);
+    // Runs are 0-2, 3-6, 7-34, 35 and 36-39
+    assertEquals(5, array.getNumRuns());
+    assertFalse(array.isRunSet(0));
+    assertTrue(array.isRunSet(1));
+    assertEquals(3, array.getRunStart(1));
+    assertEquals(36, array.getRunStart(4));
+    assertEquals(40, array.getRunStart(5));
+    assertEquals(0, array.getRunIndex(2));
+    assertEquals(1, array.getRunIndex(3));
+    assertEquals(2, array.getRunIndex(34));
+    assertEquals(3, array.getRunIndex(35));
+    assertEquals(4, array.getRunIndex(39));
+    // Changes must be reflected in the runs
+    array.set(0);
+    assertEquals(6, array.getNumRuns());
+    assertTrue(array.isRunSet(0));
+    array.clear();
+    assertEquals(1, array.getNumRuns());
+    assertFalse(array.isRunSet(0));
+    assertEquals(40, array.getRunStart(1));
+  }
+
+  public void testGetNextSet() {
+    BitArray array = new BitArray(70);
+    assertEquals(70, array.getNextSet(0));
+    array.set(31);
+    array.set(64);
+    assertEquals(31, array.getNextSet(0));
+    assertEquals(31, array.getNextSet(31));
+    assertEquals(64, array.getNextSet(32));
+    assertEquals(70, array.getNextSet(65));
+    assertEquals(70, array.getNextSet(70));
+  }
+
+  public void testGetNextUnset() {
+    BitArray array = new BitArray(70);
+    for (int i = 0; i < 70; i++) {
+      array.set(i);
+    }
+    assertEquals(70, array.getNextUnset(0));
+    array.flip(33);
+    assertEquals(33, array.getNextUnset(0));
+    assertEquals(33, array.getNextUnset(33));
+    assertEquals(70, array.getNextUnset(34));
+  }
+
 }
\ No newline at end of file
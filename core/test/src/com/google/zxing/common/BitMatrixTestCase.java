@@ -18,6 +18,8 @@ package com.google.zxing.common;
 
 import junit.framework.TestCase;
 
+import java.util.Random;
+
 /**
  * @author Sean Owen
  * @author dswitkin@google.com (Daniel Switkin)
@@ -121,4 +123,121 @@ public final class BitMatrixTestCase extends TestCase {
     }
   }
 
+  public void testRotate() {
+    // Sizes around multiples of 32 exercise the partial blocks and words
+    int[][] sizes = {{1, 1}, {5, 3}, {32, 32}, {33, 31}, {70, 97}};
+    for (int[] size : sizes) {
+      BitMatrix matrix = randomMatrix(size[0], size[1], 7);
+      int width = matrix.getWidth();
+      int height = matrix.getHeight();
+      BitMatrix rotated90 = matrix.rotate90();
+      BitMatrix rotated180 = matrix.rotate180();
+      BitMatrix rotated270 = matrix.rotate270();
+      BitMatrix transposed = matrix.transpose();
+      assertEquals(height, rotated90.getWidth());
+      assertEquals(width, rotated90.getHeight());
+      assertEquals(width, rotated180.getWidth());
+      assertEquals(height, rotated270.getWidth());
+      for (int y = 0; y < height; y++) {
+        for (int x = 0; x < width; x++) {
+          boolean bit = matrix.get(x, y);
+          assertEquals(bit, rotated90.get(height - 1 - y, x));
+          assertEquals(bit, rotated180.get(width - 1 - x, height - 1 - y));
+          assertEquals(bit, rotated270.get(y, width - 1 - x));
+          assertEquals(bit, transposed.get(y, x));
+        }
+      }
+      // Bits outside the matrix must stay clear, or equals() would break
+      assertEquals(matrix, rotated90.rotate270());
+      assertEquals(matrix, rotated180.rotate180());
+    }
+  }
+
+  public void testCrop() {
+    BitMatrix matrix = randomMatrix(100, 40, 3);
+    int[][] regions = {{0, 0, 100, 40}, {1, 2, 31, 5}, {31, 0, 33, 40}, {64, 10, 36, 1}};
+    for (int[] region : regions) {
+      BitMatrix cropped = matrix.crop(region[0], region[1], region[2], region[3]);
+      BitMatrix expected = new BitMatrix(region[2], region[3]);
+      for (int y = 0; y < region[3]; y++) {
+        for (int x = 0; x < region[2]; x++) {
+          if (matrix.get(region[0] + x, region[1] + y)) {
+            expected.set(x, y);
+          }
+        }
+      }
+      assertEquals(expected, cropped);
+    }
+    try {
+      matrix.crop(90, 0, 11, 1);
+      fail();
+    } catch (IllegalArgumentException iae) {
+      // good
+    }
+  }
+
+  public void testCountSetBits() {
+    BitMatrix matrix = randomMatrix(100, 40, 5);
+    int[][] regions = {{0, 0, 100, 40}, {3, 4, 1, 1}, {30, 1, 4, 20}, {31, 0, 66, 40}};
+    for (int[] region : regions) {
+      int expected = 0;
+      for (int y = region[1]; y < region[1] + region[3]; y++) {
+        for (int x = region[0]; x < region[0] + region[2]; x++) {
+          if (matrix.get(x, y)) {
+            expected++;
+          }
+        }
+      }
+      assertEquals(expected, matrix.countSetBits(region[0], region[1], region[2], region[3]));
+    }
+  }
+
+  public void testLogicalOperations() {
+    BitMatrix a = randomMatrix(45, 9, 1);
+    BitMatrix b = randomMatrix(45, 9, 2);
+    BitMatrix and = randomMatrix(45, 9, 1);
+    and.and(b);
+    BitMatrix or = randomMatrix(45, 9, 1);
+    or.or(b);
+    BitMatrix xor = randomMatrix(45, 9, 1);
+    xor.xor(b);
+    for (int y = 0; y < 9; y++) {
+      for (int x = 0; x < 45; x++) {
+        assertEquals(a.get(x, y) && b.get(x, y), and.get(x, y));
+        assertEquals(a.get(x, y) || b.get(x, y), or.get(x, y));
+        assertEquals(a.get(x, y) ^ b.get(x, y), xor.get(x, y));
+      }
+    }
+    try {
+      a.xor(new BitMatrix(45, 10));
+      fail();
+    } catch (IllegalArgumentException iae) {
+      // good
+    }
+  }
+
+  public void testCopyRows() {
+    BitMatrix source = randomMatrix(40, 10, 4);
+    BitMatrix matrix = new BitMatrix(40, 6);
+    matrix.copyRows(source, 3, 1, 4);
+    for (int y = 0; y < 6; y++) {
+      for (int x = 0; x < 40; x++) {
+        assertEquals(y >= 1 && y < 5 && source.get(x, y + 2), matrix.get(x, y));
+      }
+    }
+  }
+
+  private static BitMatrix randomMatrix(int width, int height, long seed) {
+    Random random = new Random(seed);
+    BitMatrix matrix = new BitMatrix(width, height);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        if (random.nextBoolean()) {
+          matrix.set(x, y);
+        }
+      }
+    }
+    return matrix;
+  }
+
 }
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2010 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.common;
+
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+public final class HybridBinarizerTestCase extends TestCase {
+
+  public void testParallelMatchesSerial() throws NotFoundException {
+    // Dimensions which aren't multiples of 8 and a band count which doesn't divide the rows
+    LuminanceSource source = new TestLuminanceSource(1003, 717);
+    BitMatrix serial = new HybridBinarizer(source).getBlackMatrix();
+    for (int numThreads = 2; numThreads <= 8; numThreads += 3) {
+      BitMatrix parallel = new HybridBinarizer(source, numThreads).getBlackMatrix();
+      assertEquals(serial, parallel);
+    }
+  }
+
+  public void testCreateBinarizerKeepsThreads() throws NotFoundException {
+    LuminanceSource source = new TestLuminanceSource(640, 480);
+    HybridBinarizer binarizer = new HybridBinarizer(source, 4);
+    BitMatrix fromCreated = binarizer.createBinarizer(source).getBlackMatrix();
+    assertEquals(new HybridBinarizer(source).getBlackMatrix(), fromCreated);
+  }
+
+  public void testDecodeContextMatchesAndIsReused() throws NotFoundException {
+    DecodeContext context = new DecodeContext();
+    LuminanceSource source = new TestLuminanceSource(640, 480);
+    BitMatrix expected = new HybridBinarizer(source).getBlackMatrix();
+    BitMatrix first = new HybridBinarizer(source, 1, context).getBlackMatrix();
+    assertEquals(expected, first);
+    // A different image of the same size must come back correct, in the same matrix
+    LuminanceSource other = new TestLuminanceSource(640, 480, 7);
+    BitMatrix second = new HybridBinarizer(other, 2, context).getBlackMatrix();
+    assertSame(first, second);
+    assertEquals(new HybridBinarizer(other).getBlackMatrix(), second);
+  }
+
+  public void testDecodeContextGlobalHistogram() throws NotFoundException {
+    DecodeContext context = new DecodeContext();
+    LuminanceSource source = new TestLuminanceSource(320, 240);
+    assertEquals(new GlobalHistogramBinarizer(source).getBlackMatrix(),
+        new GlobalHistogramBinarizer(source, context).getBlackMatrix());
+    BitArray expected = new GlobalHistogramBinarizer(source).getBlackRow(100, null);
+    BitArray row = new GlobalHistogramBinarizer(source, context).getBlackRow(100, null);
+    assertEquals(expected.toString(), row.toString());
+  }
+
+  public void testLazyMatchesEager() throws NotFoundException {
+    LuminanceSource source = new TestLuminanceSource(1003, 717);
+    BitMatrix eager = new HybridBinarizer(source).getBlackMatrix();
+    // Sparse reads first, in an order which fills tiles far apart from each other
+    BitMatrix lazy = new HybridBinarizer(source, true, null).getBlackMatrix();
+    for (int y = 716; y >= 0; y -= 37) {
+      for (int x = 0; x < 1003; x += 53) {
+        assertEquals(eager.get(x, y), lazy.get(x, y));
+      }
+    }
+    BitArray row = lazy.getRow(400, null);
+    for (int x = 0; x < 1003; x++) {
+      assertEquals(eager.get(x, 400), row.get(x));
+    }
+    // equals() fills whatever is left
+    assertEquals(eager, lazy);
+  }
+
+  public void testLazyWithDecodeContext() throws NotFoundException {
+    DecodeContext context = new DecodeContext();
+    LuminanceSource source = new TestLuminanceSource(640, 480);
+    assertEquals(new HybridBinarizer(source).getBlackMatrix(),
+        new HybridBinarizer(source, true, context).getBlackMatrix());
+    // The reused matrix and black points must not leak into the next image, lazy or not
+    LuminanceSource other = new TestLuminanceSource(640, 480, 7);
+    BitMatrix expected = new HybridBinarizer(other).getBlackMatrix();
+    BitMatrix lazy = new HybridBinarizer(other, true, context).getBlackMatrix();
+    assertEquals(expected.getTopLeftOnBit()[0], lazy.getTopLeftOnBit()[0]);
+    assertEquals(expected, lazy);
+    assertEquals(expected, new HybridBinarizer(other, 1, context).getBlackMatrix());
+  }
+
+  public void testNeedsOneThread() {
+    try {
+      new HybridBinarizer(new TestLuminanceSource(64, 64), 0);
+      fail();
+    } catch (IllegalArgumentException iae) {
+      // good
+    }
+  }
+
+  // Noisy dark squares on a background with a horizontal gradient, so that block thresholds
+  // vary across the image and any mixup between bands would show.
+  private static final class TestLuminanceSource extends LuminanceSource {
+
+    private final byte[] luminances;
+
+    TestLuminanceSource(int width, int height) {
+      this(width, height, width * 31 + height);
+    }
+
+    TestLuminanceSource(int width, int height, long seed) {
+      super(width, height);
+      luminances = new byte[width * height];
+      Random random = new Random(seed);
+      for (int y = 0; y < height; y++) {
+        for (int x = 0; x < width; x++) {
+          int background = 96 + 128 * x / width;
+          boolean dark = ((x / 13) + (y / 11)) % 3 == 0;
+          int value = (dark ? background / 3 : background) + random.nextInt(16);
+          luminances[y * width + x] = (byte) value;
+        }
+      }
+    }
+
+    public byte[] getRow(int y, byte[] row) {
+      int width = getWidth();
+      if (row == null || row.length < width) {
+        row = new byte[width];
+      }
+      System.arraycopy(luminances, y * width, row, 0, width);
+      return row;
+    }
+
+    public byte[] getMatrix() {
+      return luminances;
+    }
+  }
+
+}
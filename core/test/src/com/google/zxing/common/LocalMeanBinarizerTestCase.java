@@ -0,0 +1,118 @@
+/*
+ * Copyright 2010 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.zxing.common;
+
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+public final class LocalMeanBinarizerTestCase extends TestCase {
+
+  private static final int SQUARE = 8;
+
+  public void testUnevenLighting() throws NotFoundException {
+    // A checkerboard whose light squares at the dark end of the image are darker than the dark
+    // squares at the light end, so no single threshold can separate them.
+    int width = 320;
+    int height = 96;
+    byte[] data = new byte[width * height];
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        int light = 40 + 200 * x / width;
+        data[y * width + x] = (byte) (isDark(x, y) ? light / 3 : light);
+      }
+    }
+    LuminanceSource source = new PlanarYUVLuminanceSource(data, width, height);
+    BitMatrix matrix = new LocalMeanBinarizer(source, 3 * SQUARE, 5).getBlackMatrix();
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        assertEquals(isDark(x, y), matrix.get(x, y));
+      }
+    }
+  }
+
+  public void testParallelAndContextMatchSerial() throws NotFoundException {
+    // Dimensions and a band count which don't divide evenly
+    LuminanceSource source = randomSource(1003, 717, 1);
+    BitMatrix serial = new LocalMeanBinarizer(source).getBlackMatrix();
+    DecodeContext context = new DecodeContext();
+    for (int numThreads = 1; numThreads <= 7; numThreads += 3) {
+      BitMatrix matrix =
+          new LocalMeanBinarizer(source, 0, 5, numThreads, context).getBlackMatrix();
+      assertEquals(serial, matrix);
+    }
+    // A different image of the same size must come back correct, in the same matrix
+    LuminanceSource other = randomSource(1003, 717, 2);
+    BitMatrix first = new LocalMeanBinarizer(source, 0, 5, 1, context).getBlackMatrix();
+    BitMatrix second = new LocalMeanBinarizer(other, 0, 5, 1, context).getBlackMatrix();
+    assertSame(first, second);
+    assertEquals(new LocalMeanBinarizer(other).getBlackMatrix(), second);
+  }
+
+  public void testWindowLargerThanImage() throws NotFoundException {
+    // Every window is clipped on every side; the result must be the same as a global mean.
+    LuminanceSource source = randomSource(50, 40, 3);
+    BitMatrix matrix = new LocalMeanBinarizer(source, 200, 0).getBlackMatrix();
+    byte[] luminances = source.getMatrix();
+    int sum = 0;
+    for (int i = 0; i < 50 * 40; i++) {
+      sum += luminances[i] & 0xff;
+    }
+    for (int y = 0; y < 40; y++) {
+      for (int x = 0; x < 50; x++) {
+        assertEquals((luminances[y * 50 + x] & 0xff) * 50 * 40 <= sum, matrix.get(x, y));
+      }
+    }
+  }
+
+  public void testBadArguments() {
+    LuminanceSource source = randomSource(64, 64, 4);
+    try {
+      new LocalMeanBinarizer(source, -1, 5);
+      fail();
+    } catch (IllegalArgumentException iae) {
+      // good
+    }
+    try {
+      new LocalMeanBinarizer(source, 0, 100);
+      fail();
+    } catch (IllegalArgumentException iae) {
+      // good
+    }
+    try {
+      new LocalMeanBinarizer(source, 0, 5, 0, null);
+      fail();
+    } catch (IllegalArgumentException iae) {
+      // good
+    }
+  }
+
+  private static boolean isDark(int x, int y) {
+    return ((x / SQUARE + y / SQUARE) & 0x01) == 0;
+  }
+
+  private static LuminanceSource randomSource(int width, int height, long seed) {
+    byte[] data = new byte[width * height];
+    new Random(seed).nextBytes(data);
+    return new PlanarYUVLuminanceSource(data, width, height);
+  }
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2010 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.common.reedsolomon;
+
+import java.util.Random;
+
+/**
+ * Decodes random codewords of random lengths, with random errors, through a single decoder per
+ * field so that its reused scratch space is exercised as it grows and is reused for shorter
+ * codes. QR Codes use generator roots from 2^0 up and Data Matrix from 2^1 up, so codewords are
+ * encoded here with roots from either.
+ */
+public final class ReedSolomonDecoderRandomTestCase extends AbstractReedSolomonTestCase {
+
+  private static final int ITERATIONS = 2000;
+
+  public void testQRCode() {
+    doTestRandomCodewords(GF256.QR_CODE_FIELD, 0, 0x1234);
+  }
+
+  public void testDataMatrix() {
+    doTestRandomCodewords(GF256.DATA_MATRIX_FIELD, 1, 0x5678);
+  }
+
+  public void testEncoderAgrees() {
+    // The encoding below must agree with the real encoder where there is one.
+    Random random = getRandom();
+    for (int i = 0; i < 100; i++) {
+      int twoS = 2 + random.nextInt(60);
+      int[] data = randomData(1 + random.nextInt(255 - twoS), random);
+      int[] expected = new int[data.length + twoS];
+      System.arraycopy(data, 0, expected, 0, data.length);
+      new ReedSolomonEncoder(GF256.QR_CODE_FIELD).encode(expected, twoS);
+      int[] codeword = encode(GF256.QR_CODE_FIELD, 0, data, twoS);
+      assertArraysEqual(expected, 0, codeword, 0, codeword.length);
+    }
+  }
+
+  private static void doTestRandomCodewords(GF256 field, int firstRoot, long seed) {
+    ReedSolomonDecoder decoder = new ReedSolomonDecoder(field);
+    Random random = new Random(seed);
+    int miscorrections = 0;
+    for (int i = 0; i < ITERATIONS; i++) {
+      int twoS = 2 + random.nextInt(68);
+      int[] data = randomData(1 + random.nextInt(255 - twoS), random);
+      int[] codeword = encode(field, firstRoot, data, twoS);
+      int capacity = twoS / 2;
+
+      // Up to capacity, including no errors at all, the codeword is recovered.
+      int[] received = codeword.clone();
+      corrupt(received, random.nextInt(capacity + 1), random);
+      try {
+        decoder.decode(received, twoS);
+      } catch (ReedSolomonException rse) {
+        fail("Failed to correct " + twoS + " bytes at iteration " + i);
+      }
+      assertArraysEqual(codeword, 0, received, 0, codeword.length);
+
+      // Past capacity the original can't be recovered. Usually that is detected, but the errors
+      // may happen to land within capacity of another codeword, and then they are "corrected".
+      received = codeword.clone();
+      corrupt(received, Math.min(codeword.length, capacity + 1 + random.nextInt(capacity + 1)),
+          random);
+      try {
+        decoder.decode(received, twoS);
+      } catch (ReedSolomonException rse) {
+        continue;
+      }
+      // If so, the result must at least be a different, valid codeword.
+      assertFalse(equals(codeword, received));
+      int[] receivedData = new int[data.length];
+      System.arraycopy(received, 0, receivedData, 0, data.length);
+      assertArraysEqual(encode(field, firstRoot, receivedData, twoS), 0, received, 0,
+          received.length);
+      miscorrections++;
+    }
+    // Far fewer than the failures, or decoding is not detecting them.
+    assertTrue(miscorrections < ITERATIONS / 20);
+  }
+
+  private static int[] randomData(int length, Random random) {
+    int[] data = new int[length];
+    for (int i = 0; i < length; i++) {
+      data[i] = random.nextInt(256);
+    }
+    return data;
+  }
+
+  // Appends twoS check bytes to data, the remainder after dividing by the generator with roots
+  // 2^firstRoot to 2^(firstRoot + twoS - 1).
+  private static int[] encode(GF256 field, int firstRoot, int[] data, int twoS) {
+    // Coefficients from the highest degree down; the leading one is always 1.
+    int[] generator = {1};
+    for (int i = 0; i < twoS; i++) {
+      int root = field.exp(firstRoot + i);
+      int[] product = new int[generator.length + 1];
+      for (int j = 0; j < generator.length; j++) {
+        product[j] ^= generator[j];
+        product[j + 1] ^= field.multiply(generator[j], root);
+      }
+      generator = product;
+    }
+    int[] codeword = new int[data.length + twoS];
+    System.arraycopy(data, 0, codeword, 0, data.length);
+    int[] remainder = codeword.clone();
+    for (int i = 0; i < data.length; i++) {
+      int coefficient = remainder[i];
+      if (coefficient != 0) {
+        for (int j = 1; j < generator.length; j++) {
+          remainder[i + j] ^= field.multiply(generator[j], coefficient);
+        }
+      }
+    }
+    System.arraycopy(remainder, data.length, codeword, data.length, twoS);
+    return codeword;
+  }
+
+  private static boolean equals(int[] a, int[] b) {
+    for (int i = 0; i < a.length; i++) {
+      if (a[i] != b[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2010 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.multi;
+
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+import com.google.zxing.common.HybridBinarizer;
+import junit.framework.TestCase;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Tests {@link ByQuadrantReader}.
+ */
+public final class ByQuadrantReaderTestCase extends TestCase {
+
+  private static final String QR_CODE_IMAGE = "test/data/blackbox/qrcode-1/1.jpg";
+
+  public void testPointsInWholeImage() throws Exception {
+    BufferedImage image = ImageIO.read(new File(QR_CODE_IMAGE));
+    int width = image.getWidth();
+    int height = image.getHeight();
+    Result expected = new MultiFormatReader().decode(
+        new BinaryBitmap(new HybridBinarizer(new BufferedImageLuminanceSource(image))));
+
+    // The photo fills the bottom right quadrant.
+    BufferedImage large = new BufferedImage(width * 2, height * 2, BufferedImage.TYPE_3BYTE_BGR);
+    Graphics2D graphics = large.createGraphics();
+    graphics.setColor(Color.WHITE);
+    graphics.fillRect(0, 0, large.getWidth(), large.getHeight());
+    graphics.drawImage(image, width, height, null);
+    graphics.dispose();
+
+    BinaryBitmap bitmap =
+        new BinaryBitmap(new HybridBinarizer(new BufferedImageLuminanceSource(large)));
+    Result result = new ByQuadrantReader(new MultiFormatReader()).decode(bitmap);
+    assertEquals(expected.getText(), result.getText());
+    ResultPoint[] expectedPoints = expected.getResultPoints();
+    ResultPoint[] points = result.getResultPoints();
+    assertEquals(expectedPoints.length, points.length);
+    for (int i = 0; i < points.length; i++) {
+      assertEquals(expectedPoints[i].getX() + width, points[i].getX(), 2.0f);
+      assertEquals(expectedPoints[i].getY() + height, points[i].getY(), 2.0f);
+    }
+  }
+
+}
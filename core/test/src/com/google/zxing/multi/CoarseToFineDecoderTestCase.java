@@ -0,0 +1,83 @@
+/*
+ * Copyright 2010 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.zxing.multi;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+import com.google.zxing.common.HybridBinarizer;
+import junit.framework.TestCase;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Tests {@link CoarseToFineDecoder}.
+ */
+public final class CoarseToFineDecoderTestCase extends TestCase {
+
+  private static final String QR_CODE_IMAGE = "test/data/blackbox/qrcode-1/1.jpg";
+  private static final int SCALE = 4;
+
+  public void testLargeImage() throws Exception {
+    BufferedImage image = ImageIO.read(new File(QR_CODE_IMAGE));
+    Result expected = new MultiFormatReader().decode(
+        new BinaryBitmap(new HybridBinarizer(new BufferedImageLuminanceSource(image))));
+
+    // Blowing the photo up gives modules far larger than the binarizer's blocks.
+    BufferedImage large = new BufferedImage(image.getWidth() * SCALE, image.getHeight() * SCALE,
+        BufferedImage.TYPE_3BYTE_BGR);
+    Graphics2D graphics = large.createGraphics();
+    graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+        RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+    graphics.drawImage(image, 0, 0, large.getWidth(), large.getHeight(), null);
+    graphics.dispose();
+    LuminanceSource source = new BufferedImageLuminanceSource(large);
+
+    Result result = new CoarseToFineDecoder(new MultiFormatReader(), 1000).decode(
+        new HybridBinarizer(source));
+    assertEquals(BarcodeFormat.QR_CODE, result.getBarcodeFormat());
+    assertEquals(expected.getText(), result.getText());
+
+    // Points come back in the coordinates of the full resolution image.
+    ResultPoint[] expectedPoints = expected.getResultPoints();
+    ResultPoint[] points = result.getResultPoints();
+    assertEquals(expectedPoints.length, points.length);
+    for (int i = 0; i < points.length; i++) {
+      assertEquals(expectedPoints[i].getX() * SCALE, points[i].getX(), 4.0f * SCALE);
+      assertEquals(expectedPoints[i].getY() * SCALE, points[i].getY(), 4.0f * SCALE);
+    }
+  }
+
+  public void testSmallImageIsDecodedDirectly() throws Exception {
+    LuminanceSource source =
+        new BufferedImageLuminanceSource(ImageIO.read(new File(QR_CODE_IMAGE)));
+    Result result = new CoarseToFineDecoder(new MultiFormatReader()).decode(
+        new HybridBinarizer(source));
+    assertEquals(BarcodeFormat.QR_CODE, result.getBarcodeFormat());
+  }
+
+}
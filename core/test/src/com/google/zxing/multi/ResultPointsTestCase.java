@@ -0,0 +1,66 @@
+/*
+ * Copyright 2010 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.multi;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Result;
+import com.google.zxing.ResultMetadataType;
+import com.google.zxing.ResultPoint;
+import junit.framework.TestCase;
+
+/**
+ * Tests {@link ResultPoints}.
+ */
+public final class ResultPointsTestCase extends TestCase {
+
+  public void testTranslate() {
+    Result result = newResult(new ResultPoint[] {new ResultPoint(1.0f, 2.0f), null});
+    Result translated = ResultPoints.translate(result, 10, 20);
+    assertEquals("text", translated.getText());
+    assertEquals(BarcodeFormat.QR_CODE, translated.getBarcodeFormat());
+    assertEquals("other", translated.getResultMetadata().get(ResultMetadataType.OTHER));
+    ResultPoint[] points = translated.getResultPoints();
+    assertEquals(2, points.length);
+    assertEquals(11.0f, points[0].getX());
+    assertEquals(22.0f, points[0].getY());
+    assertNull(points[1]);
+    // The original is left alone.
+    assertEquals(1.0f, result.getResultPoints()[0].getX());
+  }
+
+  public void testTransform() {
+    Result result = newResult(new ResultPoint[] {null, new ResultPoint(1.0f, 2.0f)});
+    ResultPoint[] points = ResultPoints.transform(result, 4, 10, 20).getResultPoints();
+    assertNull(points[0]);
+    assertEquals(14.0f, points[1].getX());
+    assertEquals(28.0f, points[1].getY());
+  }
+
+  public void testNothingToChange() {
+    Result result = newResult(new ResultPoint[] {new ResultPoint(1.0f, 2.0f)});
+    assertSame(result, ResultPoints.translate(result, 0, 0));
+    Result noPoints = newResult(null);
+    assertSame(noPoints, ResultPoints.transform(noPoints, 2, 10, 20));
+  }
+
+  private static Result newResult(ResultPoint[] points) {
+    Result result = new Result("text", null, points, BarcodeFormat.QR_CODE);
+    result.putMetadata(ResultMetadataType.OTHER, "other");
+    return result;
+  }
+
+}
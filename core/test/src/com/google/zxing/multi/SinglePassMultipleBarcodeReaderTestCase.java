@@ -0,0 +1,124 @@
+/*
+ * Copyright 2010 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.multi;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+import com.google.zxing.client.j2se.MatrixToImageWriter;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.QRCodeWriter;
+import junit.framework.TestCase;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.Hashtable;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Tests {@link SinglePassMultipleBarcodeReader}.
+ */
+public final class SinglePassMultipleBarcodeReaderTestCase extends TestCase {
+
+  private static final String DATA_MATRIX_IMAGE = "test/data/blackbox/datamatrix-1/abcdefg.png";
+  private static final String DATA_MATRIX_TEXT =
+      "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ1234567890!@#$%^&*(),./\\";
+  private static final String SECOND_DATA_MATRIX_IMAGE =
+      "test/data/blackbox/datamatrix-1/zxing_URL_L_Kayway.png";
+  private static final String SECOND_DATA_MATRIX_TEXT = "http://code.google.com/p/zxing/";
+  private static final String PDF417_IMAGE = "test/data/blackbox/pdf417/02.png";
+  private static final int CELL_SIZE = 400;
+
+  public void testLabelSheet() throws Exception {
+    BufferedImage sheet = createSheet();
+    for (int numThreads = 1; numThreads <= 3; numThreads += 2) {
+      BinaryBitmap bitmap =
+          new BinaryBitmap(new HybridBinarizer(new BufferedImageLuminanceSource(sheet)));
+      Result[] results = new SinglePassMultipleBarcodeReader(numThreads).decodeMultiple(bitmap);
+      assertEquals(9, results.length);
+      Hashtable found = new Hashtable();
+      for (int i = 0; i < results.length; i++) {
+        Result result = results[i];
+        assertNull(found.put(result.getText(), result.getBarcodeFormat()));
+        // Points are in the coordinates of the sheet, within the symbol's own cell.
+        int cell = getCell(result.getResultPoints()[0]);
+        switch (cell) {
+          case 6:
+            assertEquals(DATA_MATRIX_TEXT, result.getText());
+            break;
+          case 7:
+            assertEquals(SECOND_DATA_MATRIX_TEXT, result.getText());
+            break;
+          case 8:
+            assertEquals("12345678", result.getText());
+            assertEquals(BarcodeFormat.PDF417, result.getBarcodeFormat());
+            break;
+          default:
+            assertEquals("label-" + cell, result.getText());
+            assertEquals(BarcodeFormat.QR_CODE, result.getBarcodeFormat());
+            break;
+        }
+      }
+      assertEquals(BarcodeFormat.DATAMATRIX, found.get(DATA_MATRIX_TEXT));
+      assertEquals(BarcodeFormat.DATAMATRIX, found.get(SECOND_DATA_MATRIX_TEXT));
+    }
+  }
+
+  public void testNeedsOneThread() {
+    try {
+      new SinglePassMultipleBarcodeReader(0);
+      fail();
+    } catch (IllegalArgumentException iae) {
+      // good
+    }
+  }
+
+  // Six QR Codes, then two Data Matrix and a PDF417 symbol, in a grid three cells wide.
+  private static BufferedImage createSheet() throws Exception {
+    BufferedImage sheet = new BufferedImage(CELL_SIZE * 3, CELL_SIZE * 3,
+        BufferedImage.TYPE_3BYTE_BGR);
+    Graphics2D graphics = sheet.createGraphics();
+    graphics.setColor(Color.WHITE);
+    graphics.fillRect(0, 0, sheet.getWidth(), sheet.getHeight());
+    for (int cell = 0; cell < 9; cell++) {
+      BufferedImage symbol;
+      if (cell == 6) {
+        symbol = ImageIO.read(new File(DATA_MATRIX_IMAGE));
+      } else if (cell == 7) {
+        symbol = ImageIO.read(new File(SECOND_DATA_MATRIX_IMAGE));
+      } else if (cell == 8) {
+        symbol = ImageIO.read(new File(PDF417_IMAGE));
+      } else {
+        symbol = MatrixToImageWriter.toBufferedImage(
+            new QRCodeWriter().encode("label-" + cell, BarcodeFormat.QR_CODE, 200, 200));
+      }
+      graphics.drawImage(symbol, (cell % 3) * CELL_SIZE + 40, (cell / 3) * CELL_SIZE + 40, null);
+    }
+    graphics.dispose();
+    return sheet;
+  }
+
+  private static int getCell(ResultPoint point) {
+    return ((int) point.getY() / CELL_SIZE) * 3 + (int) point.getX() / CELL_SIZE;
+  }
+
+}
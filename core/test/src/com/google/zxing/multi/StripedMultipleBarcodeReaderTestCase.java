@@ -0,0 +1,85 @@
+/*
+ * Copyright 2010 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.multi;
+
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+import com.google.zxing.common.HybridBinarizer;
+import junit.framework.TestCase;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Tests {@link StripedMultipleBarcodeReader}.
+ */
+public final class StripedMultipleBarcodeReaderTestCase extends TestCase {
+
+  private static final String QR_CODE_IMAGE = "test/data/blackbox/qrcode-1/1.jpg";
+
+  public void testTallImage() throws Exception {
+    BufferedImage image = ImageIO.read(new File(QR_CODE_IMAGE));
+    int width = image.getWidth();
+    int height = image.getHeight();
+    String expected = new MultiFormatReader().decode(
+        new BinaryBitmap(new HybridBinarizer(new BufferedImageLuminanceSource(image)))).getText();
+
+    // Two copies of the photo, far apart; the second is seen whole by three strips.
+    BufferedImage tall = new BufferedImage(width, height * 5, BufferedImage.TYPE_3BYTE_BGR);
+    Graphics2D graphics = tall.createGraphics();
+    graphics.setColor(Color.WHITE);
+    graphics.fillRect(0, 0, tall.getWidth(), tall.getHeight());
+    int[] tops = {height / 4, height * 3};
+    for (int i = 0; i < tops.length; i++) {
+      graphics.drawImage(image, 0, tops[i], null);
+    }
+    graphics.dispose();
+
+    BinaryBitmap bitmap =
+        new BinaryBitmap(new HybridBinarizer(new BufferedImageLuminanceSource(tall)));
+    int overlap = height + height / 2;
+    Result[] results = new StripedMultipleBarcodeReader(new MultiFormatReader(),
+        overlap + height / 2, overlap).decodeMultiple(bitmap);
+    assertEquals(2, results.length);
+    for (int i = 0; i < results.length; i++) {
+      assertEquals(expected, results[i].getText());
+      // Points come back in the coordinates of the whole image.
+      ResultPoint[] points = results[i].getResultPoints();
+      for (int j = 0; j < points.length; j++) {
+        float y = points[j].getY();
+        assertTrue(y >= tops[i] && y < tops[i] + height);
+      }
+    }
+  }
+
+  public void testStripsMustBeTallerThanOverlap() {
+    try {
+      new StripedMultipleBarcodeReader(new MultiFormatReader(), 100, 100);
+      fail();
+    } catch (IllegalArgumentException iae) {
+      // good
+    }
+  }
+
+}
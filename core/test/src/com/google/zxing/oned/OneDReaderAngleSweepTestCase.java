@@ -0,0 +1,130 @@
+/*
+ * Copyright 2010 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.oned;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.Result;
+import com.google.zxing.ResultMetadataType;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+import com.google.zxing.client.j2se.MatrixToImageWriter;
+import com.google.zxing.common.HybridBinarizer;
+import junit.framework.TestCase;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Hashtable;
+
+/**
+ * Tests the {@link DecodeHintType#ANGLE_SWEEP} mode of {@link OneDReader}.
+ */
+public final class OneDReaderAngleSweepTestCase extends TestCase {
+
+  private static final String CONTENTS = "ANGLE-SWEEP-1234";
+  private static final int SIZE = 900;
+  private static final int MODULE_SIZE = 3;
+
+  public void testRotatedBarcodes() throws Exception {
+    int[] angles = {10, 30, 90, 135, 200, 290};
+    for (int i = 0; i < angles.length; i++) {
+      BinaryBitmap bitmap = createRotatedBarcode(angles[i]);
+      Result result = new Code128Reader().decode(bitmap, createHints());
+      assertEquals(CONTENTS, result.getText());
+      // A barcode reads across a range of angles, so the line it was found on may be off by a step.
+      int orientation =
+          ((Integer) result.getResultMetadata().get(ResultMetadataType.ORIENTATION)).intValue();
+      int difference = Math.abs((orientation + angles[i]) % 360);
+      assertTrue(difference <= 15 || difference >= 345);
+      // The ends of the barcode were drawn about its middle, in the middle of the image.
+      ResultPoint[] points = result.getResultPoints();
+      float middleX = (points[0].getX() + points[1].getX()) / 2.0f;
+      float middleY = (points[0].getY() + points[1].getY()) / 2.0f;
+      assertEquals(SIZE / 2.0f, middleX, 10.0f);
+      assertEquals(SIZE / 2.0f, middleY, 10.0f);
+    }
+  }
+
+  public void testHintValues() throws Exception {
+    // Anything but a usable Integer falls back to the default step, rather than failing.
+    BinaryBitmap bitmap = createRotatedBarcode(30);
+    Object[] values = {Boolean.TRUE, "15", new Integer(0), new Integer(-30)};
+    for (int i = 0; i < values.length; i++) {
+      Hashtable hints = new Hashtable();
+      hints.put(DecodeHintType.ANGLE_SWEEP, values[i]);
+      assertEquals(CONTENTS, new Code128Reader().decode(bitmap, hints).getText());
+    }
+    // Too large a step is taken as 90 degrees, which can't see this barcode but still searches.
+    Hashtable hints = new Hashtable();
+    hints.put(DecodeHintType.ANGLE_SWEEP, new Integer(1000));
+    try {
+      new Code128Reader().decode(bitmap, hints);
+      fail();
+    } catch (NotFoundException nfe) {
+      // good
+    }
+    assertEquals(CONTENTS, new Code128Reader().decode(createRotatedBarcode(90), hints).getText());
+  }
+
+  public void testVerticalWithUnevenStep() throws Exception {
+    // 40 degree steps never reach 90, but a vertical barcode must still be found, as it would be
+    // by rotating the image when trying harder without the hint.
+    Hashtable hints = new Hashtable();
+    hints.put(DecodeHintType.ANGLE_SWEEP, new Integer(40));
+    hints.put(DecodeHintType.TRY_HARDER, Boolean.TRUE);
+    Result result = new Code128Reader().decode(createRotatedBarcode(90), hints);
+    assertEquals(CONTENTS, result.getText());
+    int orientation =
+        ((Integer) result.getResultMetadata().get(ResultMetadataType.ORIENTATION)).intValue();
+    assertTrue(orientation == 90 || orientation == 270);
+  }
+
+  public void testNotFoundWithoutHint() throws Exception {
+    try {
+      new Code128Reader().decode(createRotatedBarcode(45));
+      fail();
+    } catch (NotFoundException nfe) {
+      // good
+    }
+  }
+
+  private static Hashtable createHints() {
+    Hashtable hints = new Hashtable();
+    hints.put(DecodeHintType.ANGLE_SWEEP, new Integer(15));
+    return hints;
+  }
+
+  // Draws the barcode turned clockwise by the given angle about the middle of the image.
+  private static BinaryBitmap createRotatedBarcode(int angle) throws Exception {
+    BufferedImage barcode = MatrixToImageWriter.toBufferedImage(
+        new Code128Writer().encode(CONTENTS, BarcodeFormat.CODE_128, 0, 60));
+    int width = barcode.getWidth() * MODULE_SIZE;
+    BufferedImage image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_3BYTE_BGR);
+    Graphics2D graphics = image.createGraphics();
+    graphics.setColor(Color.WHITE);
+    graphics.fillRect(0, 0, SIZE, SIZE);
+    graphics.rotate(Math.toRadians(angle), SIZE / 2.0, SIZE / 2.0);
+    graphics.drawImage(barcode, (SIZE - width) / 2, (SIZE - barcode.getHeight()) / 2, width,
+        barcode.getHeight(), null);
+    graphics.dispose();
+    return new BinaryBitmap(new HybridBinarizer(new BufferedImageLuminanceSource(image)));
+  }
+
+}
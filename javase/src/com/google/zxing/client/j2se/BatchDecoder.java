@@ -0,0 +1,328 @@
+/*
+ * Copyright 2010 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.client.j2se;
+
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.Result;
+import com.google.zxing.common.DecodeContext;
+import com.google.zxing.common.HybridBinarizer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>Decodes many images in parallel. Unlike {@link MultiFormatReader}, one instance may be shared
+ * by any number of threads: each image is decoded with a reader, configured once with the hints
+ * given here, and a {@link DecodeContext} which no other thread is using at the time. These are
+ * kept for the next image, so there are only ever as many as there have been images decoded at
+ * once, and they go when the decoder does rather than staying with the executor's threads.</p>
+ *
+ * <p>Provided here instead of core since it depends on java.util.concurrent.</p>
+ */
+public final class BatchDecoder {
+
+  /**
+   * Receives the outcome of each image as soon as it has been decoded, from whichever thread
+   * decoded it. Implementations must therefore be thread-safe.
+   */
+  public interface Listener {
+    void decoded(Outcome outcome);
+  }
+
+  /**
+   * The result of decoding one image of a batch: either a {@link Result}, or the exception which
+   * prevented one from being found.
+   */
+  public static final class Outcome {
+
+    private final int index;
+    private final Result result;
+    private final Throwable failure;
+    private final long decodeNanos;
+
+    Outcome(int index, Result result, Throwable failure, long decodeNanos) {
+      this.index = index;
+      this.result = result;
+      this.failure = failure;
+      this.decodeNanos = decodeNanos;
+    }
+
+    /**
+     * @return position of the image in the batch, counting from 0
+     */
+    public int getIndex() {
+      return index;
+    }
+
+    public boolean isSuccess() {
+      return result != null;
+    }
+
+    /**
+     * @return the decoded barcode, or null if decoding failed
+     */
+    public Result getResult() {
+      return result;
+    }
+
+    /**
+     * @return why decoding failed -- usually a {@link com.google.zxing.ReaderException} -- or
+     *  null if it succeeded
+     */
+    public Throwable getFailure() {
+      return failure;
+    }
+
+    /**
+     * @return how long the image took to decode, not counting time spent waiting for a thread
+     */
+    public long getDecodeNanos() {
+      return decodeNanos;
+    }
+
+    public String toString() {
+      return index + ": " + (result != null ? result.getText() : String.valueOf(failure));
+    }
+  }
+
+  private final Executor executor;
+  private final ExecutorService ownExecutor;
+  private final int maxInFlight;
+  private final Hashtable<DecodeHintType, Object> hints;
+  private final Queue<DecoderState> idleStates;
+
+  /**
+   * Creates a decoder with its own pool of threads, which should be released with
+   * {@link #shutdown()} once it is no longer needed.
+   *
+   * @param numThreads number of images to decode at once, typically the number of cores
+   * @param hints passed to every reader, or null
+   */
+  public BatchDecoder(int numThreads, Hashtable<DecodeHintType, Object> hints) {
+    this(Executors.newFixedThreadPool(numThreads, new DaemonThreadFactory()), numThreads, hints,
+        true);
+  }
+
+  /**
+   * Creates a decoder which runs on the caller's executor. The executor is not shut down by
+   * {@link #shutdown()}.
+   *
+   * @param executor runs the decoding tasks
+   * @param maxInFlight maximum number of images submitted to the executor but not yet decoded.
+   *  Set it to a small multiple of the executor's threads, so that sources are not read from
+   *  a stream much faster than they can be decoded.
+   * @param hints passed to every reader, or null
+   */
+  public BatchDecoder(Executor executor, int maxInFlight, Hashtable<DecodeHintType, Object> hints) {
+    this(executor, maxInFlight, hints, false);
+  }
+
+  private BatchDecoder(Executor executor,
+                       int maxInFlight,
+                       Hashtable<DecodeHintType, Object> hints,
+                       boolean ownsExecutor) {
+    if (maxInFlight < 1) {
+      throw new IllegalArgumentException("Need at least one image in flight");
+    }
+    this.executor = executor;
+    this.ownExecutor = ownsExecutor ? (ExecutorService) executor : null;
+    this.maxInFlight = maxInFlight;
+    // Copied, since the readers may be configured long after this constructor returns
+    this.hints = hints == null ? null : new Hashtable<DecodeHintType, Object>(hints);
+    idleStates = new ConcurrentLinkedQueue<DecoderState>();
+  }
+
+  /**
+   * Decodes all the given images, and returns their outcomes in the same order.
+   *
+   * @param sources the images to decode
+   * @return one {@link Outcome} per image
+   * @throws InterruptedException if interrupted while waiting; images already submitted are
+   *  still decoded, but their outcomes are lost
+   */
+  public List<Outcome> decodeAll(Collection<? extends LuminanceSource> sources)
+      throws InterruptedException {
+    final Outcome[] outcomes = new Outcome[sources.size()];
+    decode(sources.iterator(), new Listener() {
+      public void decoded(Outcome outcome) {
+        outcomes[outcome.getIndex()] = outcome;
+      }
+    });
+    List<Outcome> result = new ArrayList<Outcome>(outcomes.length);
+    for (Outcome outcome : outcomes) {
+      result.add(outcome);
+    }
+    return result;
+  }
+
+  /**
+   * Decodes the images from the given iterator, which may produce them lazily, passing each
+   * outcome to the listener as soon as it is known. At most maxInFlight images are pending at
+   * once, so sources are only requested from the iterator as fast as they can be decoded. Returns
+   * once the listener has received every outcome.
+   *
+   * @param sources the images to decode
+   * @param listener receives one {@link Outcome} per image, in no particular order
+   * @return number of images decoded
+   * @throws InterruptedException if interrupted while waiting; images already submitted are
+   *  still decoded and passed to the listener
+   * @throws RuntimeException the first exception thrown by the listener, once every image has been
+   *  decoded; no more images are submitted after it is thrown
+   */
+  public int decode(Iterator<? extends LuminanceSource> sources, Listener listener)
+      throws InterruptedException {
+    Semaphore permits = new Semaphore(maxInFlight);
+    AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    int index = 0;
+    while (failure.get() == null && sources.hasNext()) {
+      LuminanceSource source = sources.next();
+      permits.acquire();
+      try {
+        executor.execute(new DecodeTask(index, source, listener, permits, failure));
+      } catch (RejectedExecutionException ree) {
+        permits.release();
+        throw ree;
+      }
+      index++;
+    }
+    // All permits are back once every task has called the listener
+    permits.acquire(maxInFlight);
+    permits.release(maxInFlight);
+    Throwable t = failure.get();
+    if (t instanceof RuntimeException) {
+      throw (RuntimeException) t;
+    }
+    if (t instanceof Error) {
+      throw (Error) t;
+    }
+    return index;
+  }
+
+  /**
+   * Decodes one image on the calling thread, with a reader taken from the same pool of idle
+   * readers the worker threads use, or a new one if none is idle. It goes back to the pool after.
+   *
+   * @param source the image to decode
+   * @return its {@link Outcome}, with index 0
+   */
+  public Outcome decode(LuminanceSource source) {
+    return decode(0, source);
+  }
+
+  /**
+   * Stops the threads created by {@link #BatchDecoder(int, Hashtable)}. Does nothing if the
+   * decoder runs on the caller's executor.
+   */
+  public void shutdown() {
+    if (ownExecutor != null) {
+      ownExecutor.shutdown();
+    }
+  }
+
+  private Outcome decode(int index, LuminanceSource source) {
+    long start = System.nanoTime();
+    DecoderState state = idleStates.poll();
+    if (state == null) {
+      state = new DecoderState(hints);
+    }
+    try {
+      BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(source, 1, state.context));
+      // Some readers, like the RSS-14 reader, remember what they saw in the last image
+      state.reader.reset();
+      Result result = state.reader.decodeWithState(bitmap);
+      return new Outcome(index, result, null, System.nanoTime() - start);
+    } catch (Exception e) {
+      // ReaderExceptions, but also unexpected failures, are reported for this image alone
+      return new Outcome(index, null, e, System.nanoTime() - start);
+    } finally {
+      idleStates.offer(state);
+    }
+  }
+
+  private final class DecodeTask implements Runnable {
+
+    private final int index;
+    private final LuminanceSource source;
+    private final Listener listener;
+    private final Semaphore permits;
+    private final AtomicReference<Throwable> failure;
+
+    DecodeTask(int index,
+               LuminanceSource source,
+               Listener listener,
+               Semaphore permits,
+               AtomicReference<Throwable> failure) {
+      this.index = index;
+      this.source = source;
+      this.listener = listener;
+      this.permits = permits;
+      this.failure = failure;
+    }
+
+    public void run() {
+      try {
+        listener.decoded(decode(index, source));
+      } catch (Throwable t) {
+        // Left to the thread waiting in decode(), rather than lost on the executor's thread
+        failure.compareAndSet(null, t);
+      } finally {
+        permits.release();
+      }
+    }
+  }
+
+  /**
+   * A reader and the buffers it decodes with, used by one thread at a time.
+   */
+  private static final class DecoderState {
+
+    private final MultiFormatReader reader;
+    private final DecodeContext context;
+
+    DecoderState(Hashtable<DecodeHintType, Object> hints) {
+      reader = new MultiFormatReader();
+      reader.setHints(hints);
+      context = new DecodeContext();
+    }
+  }
+
+  private static final class DaemonThreadFactory implements ThreadFactory {
+    private final ThreadFactory delegate = Executors.defaultThreadFactory();
+
+    public Thread newThread(Runnable runnable) {
+      Thread thread = delegate.newThread(runnable);
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+
+}
@@ -0,0 +1,415 @@
+/*
+ * Copyright 2010 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.client.j2se;
+
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.imageio.ImageIO;
+
+/**
+ * <p>Decodes every image under a set of files and directories, as used by the --batch mode of
+ * {@link CommandLineRunner}. The work runs as a pipeline of bounded queues: one thread walks the
+ * directories, several threads load images, and a {@link BatchDecoder} decodes them on several
+ * more, so that reading and decompressing images overlaps with decoding. One line per image is written as soon as it is
+ * decoded, as JSON Lines or CSV, followed by a summary on standard error.</p>
+ */
+final class BatchRunner {
+
+  // Marks the end of each queue; one is queued per consumer
+  private static final File NO_MORE_FILES = new File("");
+  private static final LoadedImage NO_MORE_IMAGES = new LoadedImage(null, null);
+
+  private final int[] crop;
+  private final int numLoaders;
+  private final int numDecoders;
+  private final boolean csv;
+  private final Writer out;
+  private final Hashtable<DecodeHintType, Object> hints;
+
+  private final BlockingQueue<File> files;
+  private final BlockingQueue<LoadedImage> images;
+  private final Map<Integer, File> decodingFiles;
+
+  private final AtomicInteger total = new AtomicInteger();
+  private final AtomicInteger successful = new AtomicInteger();
+  private final AtomicInteger unreadable = new AtomicInteger();
+  private final AtomicLong loadNanos = new AtomicLong();
+  private final AtomicLong decodeNanos = new AtomicLong();
+  private long listNanos;
+
+  /**
+   * @param hints passed to every reader
+   * @param crop left, top, width and height of the region of each image to examine, or null
+   * @param numLoaders number of threads reading images
+   * @param numDecoders number of threads decoding images
+   * @param csv write CSV instead of JSON Lines
+   * @param out receives the result lines
+   */
+  BatchRunner(Hashtable<DecodeHintType, Object> hints,
+              int[] crop,
+              int numLoaders,
+              int numDecoders,
+              boolean csv,
+              Writer out) {
+    this.crop = crop;
+    this.numLoaders = numLoaders;
+    this.numDecoders = numDecoders;
+    this.csv = csv;
+    this.out = out;
+    this.hints = hints;
+    files = new ArrayBlockingQueue<File>(numLoaders * 16);
+    images = new ArrayBlockingQueue<LoadedImage>(numDecoders * 2);
+    decodingFiles = new ConcurrentHashMap<Integer, File>();
+  }
+
+  void run(List<File> roots) throws IOException, InterruptedException {
+    if (csv) {
+      write("file,success,format,text,error\n");
+    }
+    long start = System.nanoTime();
+
+    List<Thread> threads = new ArrayList<Thread>(numLoaders + 1);
+    threads.add(start(new Walker(roots), "walker"));
+    for (int i = 0; i < numLoaders; i++) {
+      threads.add(start(new Loader(), "loader-" + i));
+    }
+
+    BatchDecoder decoder = new BatchDecoder(numDecoders, hints);
+    try {
+      // Takes images from the loaders only as fast as they can be decoded
+      decoder.decode(new LoadedImageIterator(), new BatchDecoder.Listener() {
+        public void decoded(BatchDecoder.Outcome outcome) {
+          File file = decodingFiles.remove(outcome.getIndex());
+          decodeNanos.addAndGet(outcome.getDecodeNanos());
+          Throwable failure = outcome.getFailure();
+          if (outcome.isSuccess()) {
+            successful.incrementAndGet();
+            write(file, outcome.getResult(), null);
+          } else if (failure instanceof ReaderException) {
+            write(file, null, failure.getClass().getSimpleName());
+          } else {
+            write(file, null, String.valueOf(failure));
+          }
+        }
+      });
+    } finally {
+      decoder.shutdown();
+      // Only still running if decoding stopped early; they would otherwise block on a full queue
+      for (Thread thread : threads) {
+        thread.interrupt();
+      }
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    printSummary(System.nanoTime() - start);
+  }
+
+  private static Thread start(Runnable runnable, String name) {
+    Thread thread = new Thread(runnable, name);
+    thread.start();
+    return thread;
+  }
+
+  private void walk(File file) throws InterruptedException {
+    String filename = file.getName().toLowerCase();
+    // Skip hidden files, text files and the results of dumping the black point, as for directories
+    // in non-batch mode.
+    if (filename.startsWith(".") && !filename.equals(".") && !filename.equals("..")) {
+      return;
+    }
+    if (file.isDirectory()) {
+      long listStart = System.nanoTime();
+      File[] children = file.listFiles();
+      listNanos += System.nanoTime() - listStart;
+      if (children == null) {
+        System.err.println(file + ": Could not list directory");
+        return;
+      }
+      for (File child : children) {
+        walk(child);
+      }
+    } else if (!filename.endsWith(".txt") && !filename.contains(".mono.png")) {
+      files.put(file);
+    }
+  }
+
+  private void printSummary(long elapsedNanos) {
+    int count = total.get();
+    int decoded = successful.get();
+    double seconds = elapsedNanos / 1.0e9;
+    System.err.println();
+    System.err.println("Decoded " + decoded + " files out of " + count + " successfully (" +
+        (count == 0 ? 0 : decoded * 100 / count) + "%), " + unreadable.get() +
+        " could not be loaded");
+    System.err.println("Elapsed " + format(seconds) + " s, " +
+        format(seconds == 0.0 ? 0.0 : count / seconds) + " images/s with " + numLoaders +
+        " loading and " + numDecoders + " decoding threads");
+    System.err.println("Listing directories: " + format(listNanos / 1.0e9) + " s");
+    if (count > 0) {
+      // Summed over all threads, so these can add up to more than the elapsed time
+      System.err.println("Loading: " + format(loadNanos.get() / 1.0e6 / count) + " ms/image");
+      System.err.println("Decoding: " + format(decodeNanos.get() / 1.0e6 / count) + " ms/image");
+    }
+  }
+
+  private static String format(double value) {
+    return String.valueOf(Math.round(value * 100.0) / 100.0);
+  }
+
+  private void write(File file, Result result, String error) {
+    StringBuilder line = new StringBuilder(100);
+    String path = file.getPath();
+    if (csv) {
+      appendCsv(line, path).append(',').append(result != null).append(',');
+      if (result != null) {
+        line.append(result.getBarcodeFormat()).append(',');
+        appendCsv(line, result.getText()).append(',');
+      } else {
+        line.append(",,");
+        appendCsv(line, error);
+      }
+    } else {
+      line.append("{\"file\":");
+      appendJson(line, path).append(",\"success\":").append(result != null);
+      if (result != null) {
+        line.append(",\"format\":\"").append(result.getBarcodeFormat()).append("\",\"text\":");
+        appendJson(line, result.getText());
+      } else {
+        line.append(",\"error\":");
+        appendJson(line, error);
+      }
+      line.append('}');
+    }
+    line.append('\n');
+    try {
+      write(line.toString());
+    } catch (IOException ioe) {
+      System.err.println("Could not write result for " + path + ": " + ioe);
+    }
+  }
+
+  /**
+   * Writes and flushes one line, so that each result can be seen as soon as it is known.
+   */
+  private void write(String line) throws IOException {
+    synchronized (out) {
+      out.write(line);
+      out.flush();
+    }
+  }
+
+  private static StringBuilder appendCsv(StringBuilder line, String value) {
+    line.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"') {
+        line.append('"');
+      }
+      line.append(c);
+    }
+    return line.append('"');
+  }
+
+  private static StringBuilder appendJson(StringBuilder line, String value) {
+    line.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"':
+          line.append("\\\"");
+          break;
+        case '\\':
+          line.append("\\\\");
+          break;
+        case '\n':
+          line.append("\\n");
+          break;
+        case '\r':
+          line.append("\\r");
+          break;
+        case '\t':
+          line.append("\\t");
+          break;
+        default:
+          if (c < 0x20) {
+            String hex = Integer.toHexString(c);
+            line.append("\\u");
+            for (int j = hex.length(); j < 4; j++) {
+              line.append('0');
+            }
+            line.append(hex);
+          } else {
+            line.append(c);
+          }
+      }
+    }
+    return line.append('"');
+  }
+
+  private static final class LoadedImage {
+    private final File file;
+    private final LuminanceSource source;
+
+    LoadedImage(File file, LuminanceSource source) {
+      this.file = file;
+      this.source = source;
+    }
+  }
+
+  private final class Walker implements Runnable {
+
+    private final List<File> roots;
+
+    Walker(List<File> roots) {
+      this.roots = roots;
+    }
+
+    public void run() {
+      try {
+        for (File root : roots) {
+          walk(root);
+        }
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+      } finally {
+        // Even if walking failed, so that the loaders don't wait for ever
+        for (int i = 0; i < numLoaders; i++) {
+          putMarker(files, NO_MORE_FILES);
+        }
+      }
+    }
+  }
+
+  private final class Loader implements Runnable {
+    public void run() {
+      try {
+        File file;
+        while ((file = files.take()) != NO_MORE_FILES) {
+          long start = System.nanoTime();
+          LuminanceSource source = null;
+          String error = null;
+          try {
+            BufferedImage image = ImageIO.read(file);
+            if (image == null) {
+              error = "Could not load image";
+            } else if (crop == null) {
+              source = new BufferedImageLuminanceSource(image);
+            } else {
+              source = new BufferedImageLuminanceSource(image, crop[0], crop[1], crop[2], crop[3]);
+            }
+          } catch (IOException ioe) {
+            error = "Could not load image: " + ioe.getMessage();
+          } catch (RuntimeException re) {
+            // Bad crop rectangles, and decoder bugs in ImageIO plugins
+            error = "Could not load image: " + re;
+          }
+          loadNanos.addAndGet(System.nanoTime() - start);
+          total.incrementAndGet();
+          if (source == null) {
+            unreadable.incrementAndGet();
+            write(file, null, error);
+          } else {
+            images.put(new LoadedImage(file, source));
+          }
+        }
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+      } finally {
+        // Even if this thread died, so that the decoding side doesn't wait for ever
+        putMarker(images, NO_MORE_IMAGES);
+      }
+    }
+  }
+
+  /**
+   * Hands the loaded images to the {@link BatchDecoder}, until every loader has finished.
+   */
+  private final class LoadedImageIterator implements Iterator<LuminanceSource> {
+
+    private int finishedLoaders;
+    private LoadedImage next;
+    private int index;
+
+    public boolean hasNext() {
+      while (next == null && finishedLoaders < numLoaders) {
+        LoadedImage image;
+        try {
+          image = images.take();
+        } catch (InterruptedException ie) {
+          // Seen by the BatchDecoder as soon as it next waits
+          Thread.currentThread().interrupt();
+          return false;
+        }
+        if (image == NO_MORE_IMAGES) {
+          finishedLoaders++;
+        } else {
+          next = image;
+        }
+      }
+      return next != null;
+    }
+
+    public LuminanceSource next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      // The decoder numbers images in the order they are taken from here
+      decodingFiles.put(index++, next.file);
+      LuminanceSource source = next.source;
+      next = null;
+      return source;
+    }
+
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  /**
+   * Puts the marker for the end of a queue on it, waiting for room if need be.
+   */
+  private static <T> void putMarker(BlockingQueue<T> queue, T marker) {
+    try {
+      queue.put(marker);
+    } catch (InterruptedException ie) {
+      // Only interrupted when decoding stopped early, so nothing is waiting for the marker
+      Thread.currentThread().interrupt();
+    }
+  }
+
+}
@@ -17,31 +17,70 @@
 package com.google.zxing.client.j2se;
 
 import com.google.zxing.LuminanceSource;
+import com.google.zxing.common.ParallelBands;
 
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
 import java.awt.geom.AffineTransform;
 
 /**
  * This LuminanceSource implementation is meant for J2SE clients and our blackbox unit tests.
  *
+ * For the common image types (TYPE_BYTE_GRAY, TYPE_3BYTE_BGR, TYPE_4BYTE_ABGR, TYPE_INT_RGB and
+ * TYPE_INT_ARGB) pixels are read straight out of the image's raster, which is much cheaper than
+ * going through {@link BufferedImage#getRGB(int, int, int, int, int[], int, int)}. Other types
+ * still use getRGB(). Either way the luminance values are the same.
+ *
  * @author dswitkin@google.com (Daniel Switkin)
  * @author Sean Owen
  */
 public final class BufferedImageLuminanceSource extends LuminanceSource {
 
+  // Below this many pixels it is cheaper to convert on one thread than to start others.
+  private static final int MINIMUM_PARALLEL_PIXELS = 1 << 18;
+
   private final BufferedImage image;
   private final int left;
   private final int top;
+  private final int numThreads;
   private int[] rgbData;
+  private byte[] grayLuminances;
 
   public BufferedImageLuminanceSource(BufferedImage image) {
-    this(image, 0, 0, image.getWidth(), image.getHeight());
+    this(image, 0, 0, image.getWidth(), image.getHeight(), 1);
+  }
+
+  /**
+   * Creates a source which converts large images to luminance in horizontal bands on up to
+   * numThreads threads, including the calling thread, when {@link #getMatrix()} is called.
+   * Crops and rotations of this source do the same.
+   *
+   * @param image The image to read
+   * @param numThreads The maximum number of threads to use, at least 1
+   */
+  public BufferedImageLuminanceSource(BufferedImage image, int numThreads) {
+    this(image, 0, 0, image.getWidth(), image.getHeight(), numThreads);
   }
 
   public BufferedImageLuminanceSource(BufferedImage image, int left, int top, int width,
       int height) {
+    this(image, left, top, width, height, 1);
+  }
+
+  private BufferedImageLuminanceSource(BufferedImage image, int left, int top, int width,
+      int height, int numThreads) {
     super(width, height);
+    if (numThreads < 1) {
+      throw new IllegalArgumentException("Need at least one thread");
+    }
 
     int sourceWidth = image.getWidth();
     int sourceHeight = image.getHeight();
@@ -52,10 +91,9 @@ public final class BufferedImageLuminanceSource extends LuminanceSource {
     this.image = image;
     this.left = left;
     this.top = top;
+    this.numThreads = numThreads;
   }
 
-  // These methods use an integer calculation for luminance derived from:
-  // <code>Y = 0.299R + 0.587G + 0.114B</code>
   @Override
   public byte[] getRow(int y, byte[] row) {
     if (y < 0 || y >= getHeight()) {
@@ -66,16 +104,11 @@ public final class BufferedImageLuminanceSource extends LuminanceSource {
       row = new byte[width];
     }
 
-    if (rgbData == null || rgbData.length < width) {
-      rgbData = new int[width];
-    }
-    image.getRGB(left, top + y, width, 1, rgbData, 0, width);
-    for (int x = 0; x < width; x++) {
-      int pixel = rgbData[x];
-      int luminance = (306 * ((pixel >> 16) & 0xFF) +
-          601 * ((pixel >> 8) & 0xFF) +
-          117 * (pixel & 0xFF)) >> 10;
-      row[x] = (byte) luminance;
+    if (!convertRaster(y, y + 1, row, 0)) {
+      if (rgbData == null || rgbData.length < width) {
+        rgbData = new int[width];
+      }
+      convertRGB(y, y + 1, row, 0, rgbData);
     }
     return row;
   }
@@ -87,17 +120,10 @@ public final class BufferedImageLuminanceSource extends LuminanceSource {
     int area = width * height;
     byte[] matrix = new byte[area];
 
-    int[] rgb = new int[area];
-    image.getRGB(left, top, width, height, rgb, 0, width);
-    for (int y = 0; y < height; y++) {
-      int offset = y * width;
-      for (int x = 0; x < width; x++) {
-        int pixel = rgb[offset + x];
-        int luminance = (306 * ((pixel >> 16) & 0xFF) +
-            601 * ((pixel >> 8) & 0xFF) +
-            117 * (pixel & 0xFF)) >> 10;
-        matrix[offset + x] = (byte) luminance;
-      }
+    if (numThreads > 1 && area >= MINIMUM_PARALLEL_PIXELS) {
+      convertInBands(matrix);
+    } else {
+      convertRows(0, height, matrix);
     }
     return matrix;
   }
@@ -109,7 +135,8 @@ public final class BufferedImageLuminanceSource extends LuminanceSource {
 
   @Override
   public LuminanceSource crop(int left, int top, int width, int height) {
-    return new BufferedImageLuminanceSource(image, this.left + left, this.top + top, width, height);
+    return new BufferedImageLuminanceSource(image, this.left + left, this.top + top, width, height,
+        numThreads);
   }
 
   // Can't run AffineTransforms on images of unknown format.
@@ -140,7 +167,143 @@ public final class BufferedImageLuminanceSource extends LuminanceSource {
     // Maintain the cropped region, but rotate it too.
     int width = getWidth();
     return new BufferedImageLuminanceSource(rotatedImage, top, sourceWidth - (left + width),
-        getHeight(), width);
+        getHeight(), width, numThreads);
+  }
+
+  // Converts rows start (inclusive) to end (exclusive) of the cropped region into matrix.
+  private void convertRows(int start, int end, byte[] matrix) {
+    int width = getWidth();
+    if (!convertRaster(start, end, matrix, start * width)) {
+      // One row at a time, so that we don't need a second copy of the whole image as ints.
+      int[] rgb = new int[width];
+      for (int y = start; y < end; y++) {
+        convertRGB(y, y + 1, matrix, y * width, rgb);
+      }
+    }
+  }
+
+  private void convertInBands(final byte[] matrix) {
+    if (image.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+      // Build the table once up front rather than racing to build it in each band.
+      getGrayLuminances();
+    }
+    new ParallelBands() {
+      @Override
+      protected void processBand(int start, int end) {
+        convertRows(start, end, matrix);
+      }
+    }.run(getHeight(), numThreads);
+  }
+
+  // These methods use an integer calculation for luminance derived from:
+  // <code>Y = 0.299R + 0.587G + 0.114B</code>
+  private void convertRGB(int start, int end, byte[] matrix, int offset, int[] rgb) {
+    int width = getWidth();
+    int numRows = end - start;
+    image.getRGB(left, top + start, width, numRows, rgb, 0, width);
+    int area = width * numRows;
+    for (int i = 0; i < area; i++) {
+      matrix[offset + i] = (byte) luminance(rgb[i]);
+    }
+  }
+
+  /**
+   * Reads rows start (inclusive) to end (exclusive) of the cropped region directly from the
+   * image's raster into matrix, starting at offset.
+   *
+   * @return false if the image isn't one of the types which can be read this way, in which case
+   *  nothing is written
+   */
+  private boolean convertRaster(int start, int end, byte[] matrix, int offset) {
+    int type = image.getType();
+    if (type != BufferedImage.TYPE_BYTE_GRAY && type != BufferedImage.TYPE_3BYTE_BGR &&
+        type != BufferedImage.TYPE_4BYTE_ABGR && type != BufferedImage.TYPE_INT_RGB &&
+        type != BufferedImage.TYPE_INT_ARGB) {
+      return false;
+    }
+    Raster raster = image.getRaster();
+    SampleModel sampleModel = raster.getSampleModel();
+    DataBuffer dataBuffer = raster.getDataBuffer();
+    if (dataBuffer.getNumBanks() != 1) {
+      return false;
+    }
+    // The raster of a subimage shares its parent's data, so translate back into its coordinates.
+    int x0 = left - raster.getSampleModelTranslateX();
+    int y0 = top - raster.getSampleModelTranslateY();
+    int width = getWidth();
+
+    if (dataBuffer instanceof DataBufferByte && sampleModel instanceof ComponentSampleModel) {
+      ComponentSampleModel components = (ComponentSampleModel) sampleModel;
+      byte[] data = ((DataBufferByte) dataBuffer).getData();
+      int pixelStride = components.getPixelStride();
+      int scanlineStride = components.getScanlineStride();
+      int[] bandOffsets = components.getBandOffsets();
+      int base = dataBuffer.getOffset() + x0 * pixelStride;
+      if (type == BufferedImage.TYPE_BYTE_GRAY) {
+        byte[] grays = getGrayLuminances();
+        for (int y = start; y < end; y++) {
+          int pixel = base + (y0 + y) * scanlineStride + bandOffsets[0];
+          for (int x = 0; x < width; x++, pixel += pixelStride) {
+            matrix[offset++] = grays[data[pixel] & 0xFF];
+          }
+        }
+      } else {
+        // Bands are in R, G, B(, A) order whatever their order in memory.
+        for (int y = start; y < end; y++) {
+          int row = base + (y0 + y) * scanlineStride;
+          int red = row + bandOffsets[0];
+          int green = row + bandOffsets[1];
+          int blue = row + bandOffsets[2];
+          for (int x = 0; x < width; x++) {
+            matrix[offset++] = (byte) ((306 * (data[red] & 0xFF) +
+                601 * (data[green] & 0xFF) +
+                117 * (data[blue] & 0xFF)) >> 10);
+            red += pixelStride;
+            green += pixelStride;
+            blue += pixelStride;
+          }
+        }
+      }
+      return true;
+    }
+
+    if (dataBuffer instanceof DataBufferInt &&
+        sampleModel instanceof SinglePixelPackedSampleModel) {
+      // Both int types are laid out as 0x(AA)RRGGBB, just like the results of getRGB().
+      int[] data = ((DataBufferInt) dataBuffer).getData();
+      int scanlineStride = ((SinglePixelPackedSampleModel) sampleModel).getScanlineStride();
+      int base = dataBuffer.getOffset() + x0;
+      for (int y = start; y < end; y++) {
+        int pixel = base + (y0 + y) * scanlineStride;
+        for (int x = 0; x < width; x++) {
+          matrix[offset++] = (byte) luminance(data[pixel++]);
+        }
+      }
+      return true;
+    }
+    return false;
+  }
+
+  // getRGB() maps gray values through the image's color space, so to give the same results we
+  // do the same, once for each of the 256 possible values.
+  private byte[] getGrayLuminances() {
+    if (grayLuminances == null) {
+      ColorModel colorModel = image.getColorModel();
+      byte[] grays = new byte[256];
+      byte[] pixel = new byte[1];
+      for (int i = 0; i < 256; i++) {
+        pixel[0] = (byte) i;
+        grays[i] = (byte) luminance(colorModel.getRGB(pixel));
+      }
+      grayLuminances = grays;
+    }
+    return grayLuminances;
+  }
+
+  private static int luminance(int pixel) {
+    return (306 * ((pixel >> 16) & 0xFF) +
+        601 * ((pixel >> 8) & 0xFF) +
+        117 * (pixel & 0xFF)) >> 10;
   }
 
 }
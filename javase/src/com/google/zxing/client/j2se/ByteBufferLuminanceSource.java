@@ -0,0 +1,178 @@
+/*
+ * Copyright 2010 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.client.j2se;
+
+import com.google.zxing.LuminanceSource;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This LuminanceSource implementation reads 8-bit greyscale frames directly from a
+ * {@link ByteBuffer}, which may be a heap buffer, a direct buffer or a
+ * {@link java.nio.MappedByteBuffer} over a frame dump or shared memory. Rows may be padded: each
+ * one starts rowStride bytes after the previous one. Nothing is copied until a row is asked for,
+ * and cropping only narrows the window onto the same buffer.
+ *
+ * Rows are read with {@link #getRow(int, byte[])} straight into the caller's array, so the
+ * binarizers never need the whole frame on the heap unless a 2D reader asks for
+ * {@link #getMatrix()}; a {@link com.google.zxing.common.HybridBinarizer} given a
+ * {@link com.google.zxing.common.DecodeContext} reads rows into its reused buffer instead. For an
+ * uncropped, unpadded heap buffer getMatrix() returns the backing array itself.
+ *
+ * The buffer's position at construction marks the first pixel. This class never changes the
+ * position or limit of the buffer it is given, and reads through its own duplicates, so one buffer
+ * may back several sources used from different threads. The contents of the buffer must not
+ * change while a decode is in progress.
+ */
+public final class ByteBufferLuminanceSource extends LuminanceSource {
+
+  private final ByteBuffer buffer;
+  private final int dataWidth;
+  private final int dataHeight;
+  private final int rowStride;
+  private final int left;
+  private final int top;
+
+  public ByteBufferLuminanceSource(ByteBuffer buffer, int dataWidth, int dataHeight) {
+    this(buffer, dataWidth, dataHeight, dataWidth);
+  }
+
+  /**
+   * @param buffer The frame, starting at the buffer's current position
+   * @param dataWidth The width of the frame in pixels
+   * @param dataHeight The height of the frame in pixels
+   * @param rowStride The distance in bytes from the start of one row to the start of the next,
+   *  at least dataWidth
+   */
+  public ByteBufferLuminanceSource(ByteBuffer buffer, int dataWidth, int dataHeight,
+      int rowStride) {
+    this(buffer, dataWidth, dataHeight, rowStride, 0, 0, dataWidth, dataHeight);
+  }
+
+  public ByteBufferLuminanceSource(ByteBuffer buffer, int dataWidth, int dataHeight,
+      int rowStride, int left, int top, int width, int height) {
+    super(width, height);
+
+    if (rowStride < dataWidth) {
+      throw new IllegalArgumentException("Row stride is less than the width of the data.");
+    }
+    if (dataHeight > 0 &&
+        buffer.remaining() < (long) (dataHeight - 1) * rowStride + dataWidth) {
+      throw new IllegalArgumentException("Buffer is too small for the image data.");
+    }
+    if (left < 0 || top < 0 || left + width > dataWidth || top + height > dataHeight) {
+      throw new IllegalArgumentException("Crop rectangle does not fit within image data.");
+    }
+
+    // Slice so that index 0 of our view is the first pixel, whatever the caller does next.
+    this.buffer = buffer.slice();
+    this.dataWidth = dataWidth;
+    this.dataHeight = dataHeight;
+    this.rowStride = rowStride;
+    this.left = left;
+    this.top = top;
+  }
+
+  @Override
+  public byte[] getRow(int y, byte[] row) {
+    if (y < 0 || y >= getHeight()) {
+      throw new IllegalArgumentException("Requested row is outside the image: " + y);
+    }
+    int width = getWidth();
+    if (row == null || row.length < width) {
+      row = new byte[width];
+    }
+    int offset = (y + top) * rowStride + left;
+    if (buffer.hasArray()) {
+      System.arraycopy(buffer.array(), buffer.arrayOffset() + offset, row, 0, width);
+    } else {
+      ByteBuffer view = buffer.duplicate();
+      view.position(offset);
+      view.get(row, 0, width);
+    }
+    return row;
+  }
+
+  @Override
+  public byte[] getMatrix() {
+    int width = getWidth();
+    int height = getHeight();
+
+    // If the caller asks for the entire underlying heap array, save the copy and give them the
+    // original data. The docs specifically warn that result.length must be ignored.
+    if (buffer.hasArray() && buffer.arrayOffset() == 0 && width == rowStride &&
+        height == dataHeight) {
+      return buffer.array();
+    }
+
+    int area = width * height;
+    byte[] matrix = new byte[area];
+    int inputOffset = top * rowStride + left;
+
+    if (buffer.hasArray()) {
+      byte[] data = buffer.array();
+      inputOffset += buffer.arrayOffset();
+      if (width == rowStride) {
+        // The rows are contiguous, so perform a single copy.
+        System.arraycopy(data, inputOffset, matrix, 0, area);
+      } else {
+        for (int y = 0; y < height; y++) {
+          System.arraycopy(data, inputOffset, matrix, y * width, width);
+          inputOffset += rowStride;
+        }
+      }
+      return matrix;
+    }
+
+    ByteBuffer view = buffer.duplicate();
+    if (width == rowStride) {
+      view.position(inputOffset);
+      view.get(matrix, 0, area);
+    } else {
+      for (int y = 0; y < height; y++) {
+        view.position(inputOffset);
+        view.get(matrix, y * width, width);
+        inputOffset += rowStride;
+      }
+    }
+    return matrix;
+  }
+
+  @Override
+  public boolean isCropSupported() {
+    return true;
+  }
+
+  @Override
+  public LuminanceSource crop(int left, int top, int width, int height) {
+    return new ByteBufferLuminanceSource(buffer, dataWidth, dataHeight, rowStride,
+        this.left + left, this.top + top, width, height);
+  }
+
+  public int getDataWidth() {
+    return dataWidth;
+  }
+
+  public int getDataHeight() {
+    return dataHeight;
+  }
+
+  public int getRowStride() {
+    return rowStride;
+  }
+
+}
@@ -30,6 +30,7 @@ import com.google.zxing.common.BitMatrix;
 import com.google.zxing.common.HybridBinarizer;
 
 import java.awt.image.BufferedImage;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
@@ -40,7 +41,9 @@ import java.io.Writer;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Vector;
 
 import javax.imageio.ImageIO;
@@ -51,6 +54,9 @@ import javax.imageio.ImageIO;
  * request that hint. The raw text of each barcode is printed, and when running against directories,
  * summary statistics are also displayed.</p>
  *
+ * <p>With --batch, all the files under the given files and directories are instead decoded in
+ * parallel by a {@link BatchRunner}, and written out as JSON Lines or CSV.</p>
+ *
  * @author Sean Owen
  * @author dswitkin@google.com (Daniel Switkin)
  */
@@ -71,6 +77,11 @@ public final class CommandLineRunner {
     boolean dumpResults = false;
     boolean dumpBlackPoint = false;
     int[] crop = null;
+    boolean batch = false;
+    int threads = Runtime.getRuntime().availableProcessors();
+    int loaders = 2;
+    boolean csv = false;
+    String output = null;
     for (String arg : args) {
       if ("--try_harder".equals(arg)) {
         tryHarder = true;
@@ -88,6 +99,22 @@ public final class CommandLineRunner {
         for (int i = 0; i < crop.length; i++) {
           crop[i] = Integer.parseInt(tokens[i]);
         }
+      } else if ("--batch".equals(arg)) {
+        batch = true;
+      } else if (arg.startsWith("--threads=")) {
+        threads = Integer.parseInt(arg.substring(10));
+      } else if (arg.startsWith("--loaders=")) {
+        loaders = Integer.parseInt(arg.substring(10));
+      } else if (arg.startsWith("--format=")) {
+        String format = arg.substring(9);
+        if (!"jsonl".equals(format) && !"csv".equals(format)) {
+          System.err.println("Unknown output format " + format);
+          printUsage();
+          return;
+        }
+        csv = "csv".equals(format);
+      } else if (arg.startsWith("--output=")) {
+        output = arg.substring(9);
       } else if (arg.startsWith("-")) {
         System.err.println("Unknown command line option " + arg);
         printUsage();
@@ -96,6 +123,20 @@ public final class CommandLineRunner {
     }
 
     Hashtable<DecodeHintType, Object> hints = buildHints(tryHarder, pureBarcode, productsOnly);
+    if (batch) {
+      if (threads < 1 || loaders < 1) {
+        System.err.println("Need at least one thread of each kind");
+        return;
+      }
+      List<File> roots = new ArrayList<File>();
+      for (String arg : args) {
+        if (!arg.startsWith("--")) {
+          roots.add(new File(arg));
+        }
+      }
+      decodeBatch(roots, hints, crop, loaders, threads, csv, output);
+      return;
+    }
     for (String arg : args) {
       if (!arg.startsWith("--")) {
         decodeOneArgument(arg, hints, dumpResults, dumpBlackPoint, crop);
@@ -143,6 +184,11 @@ public final class CommandLineRunner {
     System.err.println("  --dump_results: Write the decoded contents to input.txt");
     System.err.println("  --dump_black_point: Compare black point algorithms as input.mono.png");
     System.err.println("  --crop=left,top,width,height: Only examine cropped region of input image(s)");
+    System.err.println("  --batch: Decode all files under the given files and dirs in parallel");
+    System.err.println("  --threads=n: In batch mode, decode on n threads, default is one per core");
+    System.err.println("  --loaders=n: In batch mode, load images on n threads, default is 2");
+    System.err.println("  --format={jsonl|csv}: In batch mode, the output format, default is jsonl");
+    System.err.println("  --output=file: In batch mode, write results to file instead of stdout");
   }
 
   private static void decodeOneArgument(String argument,
@@ -189,6 +235,26 @@ public final class CommandLineRunner {
     }
   }
 
+  private static void decodeBatch(List<File> roots,
+                                  Hashtable<DecodeHintType, Object> hints,
+                                  int[] crop,
+                                  int loaders,
+                                  int threads,
+                                  boolean csv,
+                                  String output) throws IOException, InterruptedException {
+    OutputStream outStream = output == null ? System.out : new FileOutputStream(output);
+    Writer out = new BufferedWriter(new OutputStreamWriter(outStream, Charset.forName("UTF8")));
+    try {
+      new BatchRunner(hints, crop, loaders, threads, csv, out).run(roots);
+    } finally {
+      if (output == null) {
+        out.flush();
+      } else {
+        out.close();
+      }
+    }
+  }
+
   private static void dumpResult(File input, Result result) throws IOException {
     String name = input.getAbsolutePath();
     int pos = name.lastIndexOf('.');
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2010 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.web;
+
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import org.apache.commons.codec.binary.Base64;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.Hashtable;
+import java.util.Map;
+
+/**
+ * Writes what was decoded from a batch of images as a JSON array, one element per image, each
+ * as soon as it is known. An element is either
+ *
+ * <pre>{"image": ..., "millis": ..., "cached": ..., "results": [{"text": ..., "format": ...,
+ *   "rawBytes": ..., "points": [{"x": ..., "y": ...}, ...], "metadata": {...}}, ...]}</pre>
+ *
+ * or, when nothing could be decoded, <code>{"image": ..., "error": ...}</code>. Byte arrays are
+ * written in Base64, and points which a reader left out as null.
+ */
+final class BatchResultWriter {
+
+  private final Writer out;
+  private boolean first;
+
+  BatchResultWriter(Writer out) throws IOException {
+    this.out = out;
+    first = true;
+    out.write('[');
+  }
+
+  /**
+   * @param millis how long decoding took
+   * @param cached whether the results were found in the cache rather than decoded just now
+   */
+  void writeResults(String image, long millis, boolean cached, Collection<Result> results)
+      throws IOException {
+    startElement(image);
+    out.write(",\"millis\":");
+    out.write(String.valueOf(millis));
+    out.write(",\"cached\":");
+    out.write(String.valueOf(cached));
+    out.write(",\"results\":[");
+    boolean firstResult = true;
+    for (Result result : results) {
+      if (!firstResult) {
+        out.write(',');
+      }
+      firstResult = false;
+      writeResult(result);
+    }
+    out.write("]}");
+    out.flush();
+  }
+
+  void writeError(String image, String error) throws IOException {
+    startElement(image);
+    out.write(",\"error\":");
+    writeString(error);
+    out.write('}');
+    out.flush();
+  }
+
+  void close() throws IOException {
+    out.write("]\n");
+    out.close();
+  }
+
+  private void startElement(String image) throws IOException {
+    if (!first) {
+      out.write(',');
+    }
+    first = false;
+    out.write("\n{\"image\":");
+    writeString(image);
+  }
+
+  private void writeResult(Result result) throws IOException {
+    out.write("{\"text\":");
+    writeString(result.getText());
+    out.write(",\"format\":");
+    writeString(result.getBarcodeFormat().toString());
+    byte[] rawBytes = result.getRawBytes();
+    if (rawBytes != null) {
+      out.write(",\"rawBytes\":");
+      writeValue(rawBytes);
+    }
+    ResultPoint[] points = result.getResultPoints();
+    if (points != null) {
+      out.write(",\"points\":[");
+      for (int i = 0; i < points.length; i++) {
+        if (i > 0) {
+          out.write(',');
+        }
+        if (points[i] == null) {
+          // Some readers leave gaps where a point wasn't found
+          out.write("null");
+          continue;
+        }
+        out.write("{\"x\":");
+        out.write(String.valueOf(points[i].getX()));
+        out.write(",\"y\":");
+        out.write(String.valueOf(points[i].getY()));
+        out.write('}');
+      }
+      out.write(']');
+    }
+    Hashtable metadata = result.getResultMetadata();
+    if (metadata != null) {
+      out.write(",\"metadata\":{");
+      boolean firstEntry = true;
+      for (Object entry : metadata.entrySet()) {
+        if (!firstEntry) {
+          out.write(',');
+        }
+        firstEntry = false;
+        writeString(((Map.Entry<?, ?>) entry).getKey().toString());
+        out.write(':');
+        writeValue(((Map.Entry<?, ?>) entry).getValue());
+      }
+      out.write('}');
+    }
+    out.write('}');
+  }
+
+  private void writeValue(Object value) throws IOException {
+    if (value instanceof Number || value instanceof Boolean) {
+      out.write(value.toString());
+    } else if (value instanceof byte[]) {
+      // Not encodeBase64String(), which breaks its output into lines
+      out.write('"');
+      out.write(new String(Base64.encodeBase64((byte[]) value), "US-ASCII"));
+      out.write('"');
+    } else if (value instanceof Collection) {
+      out.write('[');
+      boolean firstValue = true;
+      for (Object element : (Collection<?>) value) {
+        if (!firstValue) {
+          out.write(',');
+        }
+        firstValue = false;
+        writeValue(element);
+      }
+      out.write(']');
+    } else {
+      writeString(String.valueOf(value));
+    }
+  }
+
+  private void writeString(String s) throws IOException {
+    out.write('"');
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      switch (c) {
+        case '"':
+          out.write("\\\"");
+          break;
+        case '\\':
+          out.write("\\\\");
+          break;
+        case '\n':
+          out.write("\\n");
+          break;
+        case '\r':
+          out.write("\\r");
+          break;
+        case '\t':
+          out.write("\\t");
+          break;
+        default:
+          // U+2028 and U+2029 are fine in JSON, but not in JavaScript strings
+          if (c < 0x20 || c == 0x2028 || c == 0x2029) {
+            String hex = Integer.toHexString(c);
+            out.write("\\u");
+            for (int j = hex.length(); j < 4; j++) {
+              out.write('0');
+            }
+            out.write(hex);
+          } else {
+            out.write(c);
+          }
+      }
+    }
+    out.write('"');
+  }
+
+}
@@ -22,20 +22,22 @@ import com.google.zxing.ChecksumException;
 import com.google.zxing.DecodeHintType;
 import com.google.zxing.FormatException;
 import com.google.zxing.LuminanceSource;
-import com.google.zxing.MultiFormatReader;
 import com.google.zxing.NotFoundException;
 import com.google.zxing.Reader;
 import com.google.zxing.ReaderException;
 import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
 import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
 import com.google.zxing.common.GlobalHistogramBinarizer;
 import com.google.zxing.common.HybridBinarizer;
 
 import com.google.zxing.multi.GenericMultipleBarcodeReader;
 import com.google.zxing.multi.MultipleBarcodeReader;
-import org.apache.commons.fileupload.FileItem;
+import com.google.zxing.multi.StripedMultipleBarcodeReader;
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.FileUploadBase;
 import org.apache.commons.fileupload.FileUploadException;
-import org.apache.commons.fileupload.disk.DiskFileItemFactory;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
 import org.apache.http.Header;
 import org.apache.http.HttpMessage;
@@ -50,16 +52,22 @@ import org.apache.http.conn.scheme.Scheme;
 import org.apache.http.conn.scheme.SchemeRegistry;
 import org.apache.http.conn.ssl.SSLSocketFactory;
 import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRouteBean;
 import org.apache.http.impl.client.DefaultHttpClient;
-import org.apache.http.impl.conn.SingleClientConnManager;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
 import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.params.HttpParams;
 import org.apache.http.params.HttpProtocolParams;
 
 import java.awt.color.CMMException;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.net.URI;
@@ -68,11 +76,30 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
 import java.util.Vector;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
@@ -88,10 +115,40 @@ import javax.servlet.http.HttpServletResponse;
  */
 public final class DecodeServlet extends HttpServlet {
 
-  // No real reason to let people upload more than a 2MB image
+  // No real reason to let people upload more than a 2MB image, unless it's a large scan
   private static final long MAX_IMAGE_SIZE = 2000000L;
-  // No real reason to deal with more than maybe 2 megapixels
+  // No real reason to deal with more than maybe 2 megapixels in one piece
   private static final int MAX_PIXELS = 1 << 21;
+  // Larger scans are read and searched a strip at a time, which bounds the memory they take
+  private static final long MAX_STRIPED_PIXELS = 1L << 27;
+  // ... as long as the strips, of 1024 rows, are no more than 8 megapixels
+  private static final int MAX_STRIP_WIDTH = 1 << 13;
+
+  // Defaults for the init-params which configure fetching images by URL
+  private static final int DEFAULT_MAX_CONNECTIONS = 20;
+  private static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 5;
+  private static final int DEFAULT_CONNECT_TIMEOUT_MSEC = 5000;
+  private static final int DEFAULT_READ_TIMEOUT_MSEC = 10000;
+  private static final int DEFAULT_IDLE_CONNECTION_TIMEOUT_SEC = 30;
+  // Defaults for the init-params which configure decoding
+  private static final int DEFAULT_DECODE_THREADS = Runtime.getRuntime().availableProcessors();
+  private static final int DEFAULT_DECODE_QUEUE_SIZE = 16;
+  private static final int DEFAULT_DECODE_TIMEOUT_MSEC = 30000;
+  // Default for the init-param which allows files larger than MAX_IMAGE_SIZE, if they turn out
+  // to be scans of more than MAX_PIXELS which are read in strips. Not for batches.
+  private static final int DEFAULT_MAX_SCAN_SIZE_KB = 16384;
+  // What to tell clients who are turned away when decoding is saturated
+  private static final int RETRY_AFTER_SEC = 5;
+
+  private static final String BATCH_PATH = "/batchdecode";
+  private static final int MAX_BATCH_IMAGES = 64;
+  // Room for that many long URLs in a form field, and that many images in a request
+  private static final int MAX_BATCH_URLS_LENGTH = MAX_BATCH_IMAGES * 2048;
+  private static final long MAX_BATCH_SIZE = MAX_BATCH_IMAGES * (MAX_IMAGE_SIZE + 4096L);
+
+  private static final int DEFAULT_RESULT_CACHE_SIZE_KB = 4096;
+  private static final int DEFAULT_RESULT_CACHE_TTL_SEC = 60 * 60;
+  private static final int DEFAULT_RESULT_CACHE_NEGATIVE_TTL_SEC = 5 * 60;
 
   private static final Logger log = Logger.getLogger(DecodeServlet.class.getName());
 
@@ -120,9 +177,31 @@ public final class DecodeServlet extends HttpServlet {
     HINTS_PURE.put(DecodeHintType.PURE_BARCODE, Boolean.TRUE);
   }
 
-  private HttpParams params;
-  private SchemeRegistry registry;
-  private DiskFileItemFactory diskFileItemFactory;
+  // Readers aren't thread-safe, so each decode thread keeps its own for all the images it decodes
+  private static final ThreadLocal<Reader> READER = new ThreadLocal<Reader>() {
+    @Override
+    protected Reader initialValue() {
+      return new ReusableReader(HINTS);
+    }
+  };
+  private static final ThreadLocal<Reader> PURE_READER = new ThreadLocal<Reader>() {
+    @Override
+    protected Reader initialValue() {
+      return new ReusableReader(HINTS_PURE);
+    }
+  };
+
+  private ClientConnectionManager connectionManager;
+  private HttpClient client;
+  private Timer idleConnectionTimer;
+  private BlockingQueue<Runnable> decodeQueue;
+  private ExecutorService decodeExecutor;
+  private int decodeThreads;
+  private long decodeTimeout;
+  private long maxScanSize;
+  private ResultCache<DecodeOutcome> resultCache;
+  private long resultTTL;
+  private long negativeResultTTL;
 
   @Override
   public void init(ServletConfig servletConfig) {
@@ -130,14 +209,54 @@ public final class DecodeServlet extends HttpServlet {
     Logger logger = Logger.getLogger("com.google.zxing");
     logger.addHandler(new ServletContextLogHandler(servletConfig.getServletContext()));
 
-    params = new BasicHttpParams();
+    HttpParams params = new BasicHttpParams();
     HttpProtocolParams.setVersion(params, HttpVersion.HTTP_1_1);
+    int connectTimeout = getIntParameter(servletConfig, "connectTimeoutMsec",
+        DEFAULT_CONNECT_TIMEOUT_MSEC);
+    HttpConnectionParams.setConnectionTimeout(params, connectTimeout);
+    HttpConnectionParams.setSoTimeout(params,
+        getIntParameter(servletConfig, "readTimeoutMsec", DEFAULT_READ_TIMEOUT_MSEC));
+    // Waiting for a pooled connection counts as connecting
+    ConnManagerParams.setTimeout(params, connectTimeout);
+    ConnManagerParams.setMaxTotalConnections(params,
+        getIntParameter(servletConfig, "maxConnections", DEFAULT_MAX_CONNECTIONS));
+    ConnManagerParams.setMaxConnectionsPerRoute(params, new ConnPerRouteBean(getIntParameter(
+        servletConfig, "maxConnectionsPerRoute", DEFAULT_MAX_CONNECTIONS_PER_ROUTE)));
 
-    registry = new SchemeRegistry();
+    SchemeRegistry registry = new SchemeRegistry();
     registry.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), 80));
     registry.register(new Scheme("https", SSLSocketFactory.getSocketFactory(), 443));
 
-    diskFileItemFactory = new DiskFileItemFactory();
+    // One pool for the life of the servlet, so that connections to the same hosts are kept alive
+    // and reused across requests
+    connectionManager = new ThreadSafeClientConnManager(params, registry);
+    client = new DefaultHttpClient(connectionManager, params);
+
+    // Connections which the other end has closed, or which have sat unused too long, would
+    // otherwise linger in CLOSE_WAIT
+    long idleTimeout = getIntParameter(servletConfig, "idleConnectionTimeoutSec",
+        DEFAULT_IDLE_CONNECTION_TIMEOUT_SEC) * 1000L;
+    idleConnectionTimer = new Timer("DecodeServlet idle connection timer", true);
+    idleConnectionTimer.scheduleAtFixedRate(new IdleConnectionTask(idleTimeout),
+        idleTimeout, idleTimeout);
+
+    decodeThreads = getIntParameter(servletConfig, "decodeThreads", DEFAULT_DECODE_THREADS);
+    decodeQueue = new ArrayBlockingQueue<Runnable>(
+        getIntParameter(servletConfig, "decodeQueueSize", DEFAULT_DECODE_QUEUE_SIZE));
+    decodeExecutor = new ThreadPoolExecutor(decodeThreads, decodeThreads, 0L,
+        TimeUnit.MILLISECONDS, decodeQueue, new DecodeThreadFactory());
+    decodeTimeout = getIntParameter(servletConfig, "decodeTimeoutMsec",
+        DEFAULT_DECODE_TIMEOUT_MSEC);
+    maxScanSize = Math.max(MAX_IMAGE_SIZE, getIntParameter(servletConfig, "maxScanSizeKB",
+        DEFAULT_MAX_SCAN_SIZE_KB) * 1024L);
+
+    resultCache = new ResultCache<DecodeOutcome>(getIntParameter(servletConfig,
+        "resultCacheSizeKB", DEFAULT_RESULT_CACHE_SIZE_KB) * 1024L, HINTS);
+    resultTTL = getIntParameter(servletConfig, "resultCacheTTLSec",
+        DEFAULT_RESULT_CACHE_TTL_SEC) * 1000L;
+    negativeResultTTL = getIntParameter(servletConfig, "resultCacheNegativeTTLSec",
+        DEFAULT_RESULT_CACHE_NEGATIVE_TTL_SEC) * 1000L;
+    servletConfig.getServletContext().setAttribute("resultCache", resultCache);
 
     log.info("DecodeServlet configured");
   }
@@ -145,212 +264,295 @@ public final class DecodeServlet extends HttpServlet {
   @Override
   protected void doGet(HttpServletRequest request, HttpServletResponse response)
       throws ServletException, IOException {
-    String imageURIString = request.getParameter("u");
-    if (imageURIString == null || imageURIString.length() == 0) {
-      log.fine("URI was empty");
-      response.sendRedirect("badurl.jspx");
+    if (BATCH_PATH.equals(request.getServletPath())) {
+      // Not multipart; the URLs are all the images there are
+      Batch batch = new Batch(response);
+      addURLs(batch, request.getParameterValues("u"));
+      batch.finish();
       return;
     }
 
-    imageURIString = imageURIString.trim();
-
-    if (!(imageURIString.startsWith("http://") || imageURIString.startsWith("https://"))) {
-      imageURIString = "http://" + imageURIString;
-    }
-
-    URI imageURI;
+    byte[] imageBytes;
     try {
-      imageURI = new URI(imageURIString);
-    } catch (URISyntaxException urise) {
-      log.fine("URI was not valid: " + imageURIString);
+      imageBytes = fetchImage(request.getParameter("u"), maxScanSize);
+    } catch (FetchException fe) {
+      response.sendRedirect(fe.getErrorPage());
+      return;
+    } catch (IOException ioe) {
+      // Reading the image failed part way through
+      log.fine(ioe.toString());
       response.sendRedirect("badurl.jspx");
       return;
     }
-
-    ClientConnectionManager connectionManager = new SingleClientConnManager(params, registry);
-    HttpClient client = new DefaultHttpClient(connectionManager, params);
-
-    HttpUriRequest getRequest = new HttpGet(imageURI);
-    getRequest.addHeader("Connection", "close"); // Avoids CLOSE_WAIT socket issue?
-
-    try {
-
-      HttpResponse getResponse;
-      try {
-        getResponse = client.execute(getRequest);
-      } catch (IllegalArgumentException iae) {
-        // Thrown if hostname is bad or null
-        log.fine(iae.toString());
-        getRequest.abort();
-        response.sendRedirect("badurl.jspx");
-        return;
-      } catch (IOException ioe) {
-        // Encompasses lots of stuff, including
-        //  java.net.SocketException, java.net.UnknownHostException,
-        //  javax.net.ssl.SSLPeerUnverifiedException,
-        //  org.apache.http.NoHttpResponseException,
-        //  org.apache.http.client.ClientProtocolException,
-        log.fine(ioe.toString());
-        getRequest.abort();
-        response.sendRedirect("badurl.jspx");
-        return;
-      }
-
-      if (getResponse.getStatusLine().getStatusCode() != HttpServletResponse.SC_OK) {
-        log.fine("Unsuccessful return code: " + getResponse.getStatusLine().getStatusCode());
-        response.sendRedirect("badurl.jspx");
-        return;
-      }
-      if (!isSizeOK(getResponse)) {
-        log.fine("Too large");
-        response.sendRedirect("badimage.jspx");
-        return;
-      }
-
-      log.info("Decoding " + imageURI);
-      HttpEntity entity = getResponse.getEntity();
-      InputStream is = entity.getContent();
-      try {
-        processStream(is, request, response);
-      } finally {
-        entity.consumeContent();
-        is.close();
-      }
-
-    } finally {
-      connectionManager.shutdown();
-    }
-
+    processImage(imageBytes, request, response);
   }
 
   @Override
   protected void doPost(HttpServletRequest request, HttpServletResponse response)
           throws ServletException, IOException {
 
+    boolean isBatch = BATCH_PATH.equals(request.getServletPath());
     if (!ServletFileUpload.isMultipartContent(request)) {
+      if (isBatch) {
+        // A form of URLs
+        doGet(request, response);
+        return;
+      }
       log.fine("File upload was not multipart");
       response.sendRedirect("badimage.jspx");
       return;
     }
 
-    ServletFileUpload upload = new ServletFileUpload(diskFileItemFactory);
-    upload.setFileSizeMax(MAX_IMAGE_SIZE);
+    // Read the file straight from the request rather than spooling it to disk first;
+    // processStream() stops reading once it has seen more than maxScanSize bytes
+    ServletFileUpload upload = new ServletFileUpload();
 
-    // Parse the request
+    Batch batch = null;
+    if (isBatch) {
+      upload.setSizeMax(MAX_BATCH_SIZE);
+      batch = new Batch(response);
+    }
     try {
-      for (FileItem item : (List<FileItem>) upload.parseRequest(request)) {
-        if (!item.isFormField()) {
-          if (item.getSize() <= MAX_IMAGE_SIZE) {
-            log.info("Decoding uploaded file");
-            InputStream is = item.getInputStream();
-            try {
-              processStream(is, request, response);
-            } finally {
-              is.close();
-            }
-          } else {
-            log.fine("Too large");
-            response.sendRedirect("badimage.jspx");
-          }
+      FileItemIterator items = upload.getItemIterator(request);
+      while (items.hasNext()) {
+        FileItemStream item = items.next();
+        if (batch != null) {
+          addItem(batch, item);
+        } else if (!item.isFormField()) {
+          log.info("Decoding uploaded file");
+          // Not closed: that would only read through to the end of the part
+          processStream(item.openStream(), request, response);
           break;
         }
       }
     } catch (FileUploadException fue) {
       log.fine(fue.toString());
-      response.sendRedirect("badimage.jspx");
+      if (batch == null) {
+        response.sendRedirect("badimage.jspx");
+      }
+    } catch (FileUploadBase.FileUploadIOException fuioe) {
+      // The request went over MAX_BATCH_SIZE while a part was being read
+      if (batch == null) {
+        throw fuioe;
+      }
+      log.fine(fuioe.getCause().toString());
+    }
+    if (batch != null) {
+      // Whatever was read before any problem with the request is still answered
+      batch.finish();
     }
 
   }
 
-  private static void processStream(InputStream is, ServletRequest request,
-      HttpServletResponse response) throws ServletException, IOException {
+  private void addURLs(Batch batch, String[] imageURIStrings) throws IOException {
+    if (imageURIStrings == null) {
+      return;
+    }
+    for (String imageURIString : imageURIStrings) {
+      addURL(batch, imageURIString);
+    }
+  }
 
-    BufferedImage image;
+  private void addURL(Batch batch, String imageURIString) throws IOException {
+    if (batch.isFull()) {
+      batch.addError(imageURIString, "toomany");
+      return;
+    }
     try {
-      image = ImageIO.read(is);
+      batch.add(imageURIString, fetchImage(imageURIString, MAX_IMAGE_SIZE));
+    } catch (FetchException fe) {
+      batch.addError(imageURIString, fe.getError());
     } catch (IOException ioe) {
+      // Reading the image failed part way through
       log.fine(ioe.toString());
-      // Includes javax.imageio.IIOException
-      response.sendRedirect("badimage.jspx");
-      return;
-    } catch (CMMException cmme) {
-      log.fine(cmme.toString());
-      // Have seen this in logs
-      response.sendRedirect("badimage.jspx");
+      batch.addError(imageURIString, "badurl");
+    }
+  }
+
+  private void addItem(Batch batch, FileItemStream item) throws IOException {
+    if (item.isFormField()) {
+      if ("u".equals(item.getFieldName())) {
+        String imageURIStrings = readField(item.openStream(), MAX_BATCH_URLS_LENGTH);
+        if (imageURIStrings == null) {
+          log.fine("Too many URLs");
+          batch.addError(item.getFieldName(), "toomany");
+        } else {
+          addURLs(batch, imageURIStrings.split("\\s+"));
+        }
+      }
       return;
-    } catch (IllegalArgumentException iae) {
-      log.fine(iae.toString());
-      // Have seen this in logs for some JPEGs
-      response.sendRedirect("badimage.jspx");
+    }
+    String name = item.getName() == null ? item.getFieldName() : item.getName();
+    if (batch.isFull()) {
+      batch.addError(name, "toomany");
       return;
     }
-    if (image == null) {
-      response.sendRedirect("badimage.jspx");
-      return;      
+    byte[] imageBytes = readImageBytes(item.openStream(), MAX_IMAGE_SIZE);
+    if (imageBytes == null) {
+      log.fine("Too large");
+      batch.addError(name, "badimage");
+    } else {
+      batch.add(name, imageBytes);
     }
-    if (image.getHeight() <= 1 || image.getWidth() <= 1 ||
-        image.getHeight() * image.getWidth() > MAX_PIXELS) {
-      log.fine("Dimensions too large: " + image.getWidth() + 'x' + image.getHeight());        
-      response.sendRedirect("badimage.jspx");
-      return;
+  }
+
+  /**
+   * @return the image at imageURIString, read in full
+   * @throws FetchException if it could not be fetched, or is too large
+   */
+  private byte[] fetchImage(String imageURIString, long maxSize)
+      throws FetchException, IOException {
+    if (imageURIString == null || imageURIString.length() == 0) {
+      log.fine("URI was empty");
+      throw new FetchException("badurl.jspx");
     }
 
-    Reader reader = new MultiFormatReader();
-    LuminanceSource source = new BufferedImageLuminanceSource(image);
-    BinaryBitmap bitmap = new BinaryBitmap(new GlobalHistogramBinarizer(source));
-    Collection<Result> results = new ArrayList<Result>(1);
-    ReaderException savedException = null;
+    imageURIString = imageURIString.trim();
+
+    if (!(imageURIString.startsWith("http://") || imageURIString.startsWith("https://"))) {
+      imageURIString = "http://" + imageURIString;
+    }
 
+    URI imageURI;
     try {
-      // Look for multiple barcodes
-      MultipleBarcodeReader multiReader = new GenericMultipleBarcodeReader(reader);
-      Result[] theResults = multiReader.decodeMultiple(bitmap, HINTS);
-      if (theResults != null) {
-        results.addAll(Arrays.asList(theResults));
-      }
-    } catch (ReaderException re) {
-      savedException = re;
+      imageURI = new URI(imageURIString);
+    } catch (URISyntaxException urise) {
+      log.fine("URI was not valid: " + imageURIString);
+      throw new FetchException("badurl.jspx");
     }
 
-    if (results.isEmpty()) {
-      try {
-        // Look for pure barcode
-        Result theResult = reader.decode(bitmap, HINTS_PURE);
-        if (theResult != null) {
-          results.add(theResult);
-        }
-      } catch (ReaderException re) {
-        savedException = re;
-      }
+    HttpUriRequest getRequest = new HttpGet(imageURI);
+
+    HttpResponse getResponse;
+    try {
+      getResponse = client.execute(getRequest);
+    } catch (IllegalArgumentException iae) {
+      // Thrown if hostname is bad or null
+      log.fine(iae.toString());
+      getRequest.abort();
+      throw new FetchException("badurl.jspx");
+    } catch (IOException ioe) {
+      // Encompasses lots of stuff, including
+      //  java.net.SocketException, java.net.UnknownHostException,
+      //  javax.net.ssl.SSLPeerUnverifiedException,
+      //  org.apache.http.NoHttpResponseException,
+      //  org.apache.http.client.ClientProtocolException,
+      //  org.apache.http.conn.ConnectionPoolTimeoutException
+      log.fine(ioe.toString());
+      getRequest.abort();
+      throw new FetchException("badurl.jspx");
     }
 
-    if (results.isEmpty()) {
-      try {
-        // Look for normal barcode in photo
-        Result theResult = reader.decode(bitmap, HINTS);
-        if (theResult != null) {
-          results.add(theResult);
+    // Every path below must consume the entity or abort the request, or the connection is
+    // never returned to the pool. That includes unexpected runtime exceptions.
+    boolean consumed = false;
+    InputStream is = null;
+    try {
+      HttpEntity entity = getResponse.getEntity();
+      if (getResponse.getStatusLine().getStatusCode() != HttpServletResponse.SC_OK) {
+        log.fine("Unsuccessful return code: " + getResponse.getStatusLine().getStatusCode());
+        if (entity != null) {
+          entity.consumeContent();
         }
-      } catch (ReaderException re) {
-        savedException = re;
+        consumed = true;
+        throw new FetchException("badurl.jspx");
+      }
+      if (entity == null || !isSizeOK(getResponse, maxSize)) {
+        log.fine("Too large");
+        // Not worth reading the rest of it just to keep the connection
+        throw new FetchException("badimage.jspx");
+      }
+
+      log.info("Decoding " + imageURI);
+      is = entity.getContent();
+      byte[] imageBytes = readImageBytes(is, maxSize);
+      if (imageBytes == null) {
+        log.fine("Too large");
+        throw new FetchException("badimage.jspx");
+      }
+      // Reads anything left, which returns the connection to the pool
+      entity.consumeContent();
+      consumed = true;
+      return imageBytes;
+    } finally {
+      // Abort first, or closing the stream would read the rest of the response
+      if (!consumed) {
+        getRequest.abort();
+      }
+      if (is != null) {
+        is.close();
       }
     }
+  }
 
-    if (results.isEmpty()) {
-      try {
-        // Try again with other binarizer
-        BinaryBitmap hybridBitmap = new BinaryBitmap(new HybridBinarizer(source));
-        Result theResult = reader.decode(hybridBitmap, HINTS);
-        if (theResult != null) {
-          results.add(theResult);
-        }
-      } catch (ReaderException re) {
-        savedException = re;
+  private void processStream(InputStream is, ServletRequest request,
+      HttpServletResponse response) throws ServletException, IOException {
+    byte[] imageBytes = readImageBytes(is, maxScanSize);
+    if (imageBytes == null) {
+      log.fine("Too large");
+      response.sendRedirect("badimage.jspx");
+      return;
+    }
+    processImage(imageBytes, request, response);
+  }
+
+  private void processImage(byte[] imageBytes, ServletRequest request,
+      HttpServletResponse response) throws ServletException, IOException {
+
+    // The same image is often sent again; it will decode the same way
+    String cacheKey = resultCache.keyFor(imageBytes);
+    DecodeOutcome outcome = resultCache.get(cacheKey);
+    if (outcome != null) {
+      log.fine("Found in cache: " + cacheKey);
+      sendOutcome(outcome, request, response);
+      return;
+    }
+
+    // Decoding happens on the decode threads, so that slow images can only tie up as many
+    // container threads as there are decode threads and queue slots
+    Future<DecodeOutcome> future;
+    try {
+      future = decodeExecutor.submit(new DecodeTask(imageBytes, cacheKey));
+    } catch (RejectedExecutionException ree) {
+      sendBusy(response);
+      return;
+    }
+    try {
+      outcome = future.get(decodeTimeout, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException te) {
+      // Interrupts the decode thread. A large scan stops before its next strip is read; other
+      // images are decoded whole, since the readers don't check for it, and are still cached
+      future.cancel(true);
+      log.info("Decode timed out after " + decodeTimeout + "ms");
+      sendRetryLater(response);
+      return;
+    } catch (InterruptedException ie) {
+      future.cancel(true);
+      Thread.currentThread().interrupt();
+      sendRetryLater(response);
+      return;
+    } catch (ExecutionException ee) {
+      Throwable cause = ee.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
       }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new ServletException(cause);
     }
+    sendOutcome(outcome, request, response);
+  }
 
+  private static void sendOutcome(DecodeOutcome outcome, ServletRequest request,
+      HttpServletResponse response) throws ServletException, IOException {
+    if (outcome.errorPage != null) {
+      response.sendRedirect(outcome.errorPage);
+      return;
+    }
+    Collection<Result> results = outcome.results;
     if (results.isEmpty()) {
-      handleException(savedException, response);
+      handleException(outcome.exception, response);
       return;
     }
 
@@ -372,6 +574,49 @@ public final class DecodeServlet extends HttpServlet {
     }
   }
 
+  private static void sendBusy(HttpServletResponse response) throws IOException {
+    log.info("Too busy to decode");
+    sendRetryLater(response);
+  }
+
+  private static void sendRetryLater(HttpServletResponse response) throws IOException {
+    response.setHeader("Retry-After", String.valueOf(RETRY_AFTER_SEC));
+    response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+  }
+
+  /**
+   * @return the whole stream, or null if it is longer than maxSize bytes
+   */
+  private static byte[] readImageBytes(InputStream is, long maxSize) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int read;
+    while ((read = is.read(buffer)) > 0) {
+      out.write(buffer, 0, read);
+      if (out.size() > maxSize) {
+        return null;
+      }
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * @return the whole form field, or null if it is longer than maxLength characters
+   */
+  private static String readField(InputStream is, int maxLength) throws IOException {
+    InputStreamReader in = new InputStreamReader(is, "UTF-8");
+    StringBuilder value = new StringBuilder();
+    char[] buffer = new char[1024];
+    int read;
+    while ((read = in.read(buffer)) > 0) {
+      value.append(buffer, 0, read);
+      if (value.length() > maxLength) {
+        return null;
+      }
+    }
+    return value.toString();
+  }
+
   private static void handleException(ReaderException re, HttpServletResponse response) throws IOException {
     if (re instanceof NotFoundException) {
       log.info("Not found: " + re);
@@ -388,20 +633,445 @@ public final class DecodeServlet extends HttpServlet {
     }
   }
 
-  private static boolean isSizeOK(HttpMessage getResponse) {
+  /**
+   * @return error page's name, like "badimage" for "badimage.jspx", which is how a batch
+   *  reports the same problem
+   */
+  private static String toError(String errorPage) {
+    return errorPage.substring(0, errorPage.indexOf('.'));
+  }
+
+  private static boolean isSizeOK(HttpMessage getResponse, long maxSize) {
     Header lengthHeader = getResponse.getLastHeader("Content-Length");
     if (lengthHeader != null) {
-      long length = Long.parseLong(lengthHeader.getValue());
-      if (length > MAX_IMAGE_SIZE) {
+      long length;
+      try {
+        length = Long.parseLong(lengthHeader.getValue().trim());
+      } catch (NumberFormatException nfe) {
+        // No telling how much is coming
+        return false;
+      }
+      if (length < 0L || length > maxSize) {
         return false;
       }
     }
     return true;
   }
 
+  private static int getIntParameter(ServletConfig servletConfig, String name, int defaultValue) {
+    String value = servletConfig.getInitParameter(name);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      int intValue = Integer.parseInt(value.trim());
+      if (intValue > 0) {
+        return intValue;
+      }
+    } catch (NumberFormatException nfe) {
+      // fall through
+    }
+    log.warning("Bad value for " + name + ": " + value + "; using " + defaultValue);
+    return defaultValue;
+  }
+
   @Override
   public void destroy() {
     log.config("DecodeServlet shutting down...");
+    idleConnectionTimer.cancel();
+    connectionManager.shutdown();
+    decodeExecutor.shutdownNow();
+    log.info("Result cache: " + resultCache);
+  }
+
+  private static final class DecodeThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "DecodeServlet decoder " + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+
+  private final class IdleConnectionTask extends TimerTask {
+
+    private final long idleTimeout;
+
+    IdleConnectionTask(long idleTimeout) {
+      this.idleTimeout = idleTimeout;
+    }
+
+    @Override
+    public void run() {
+      connectionManager.closeExpiredConnections();
+      connectionManager.closeIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
+    }
+  }
+
+
+  /**
+   * Reads and decodes one image on a decode thread. What to send back is left to the request's
+   * thread. Gives null, and caches nothing, if cancelled part way through.
+   */
+  private final class DecodeTask implements Callable<DecodeOutcome> {
+
+    private final byte[] imageBytes;
+    private final String cacheKey;
+
+    DecodeTask(byte[] imageBytes, String cacheKey) {
+      this.imageBytes = imageBytes;
+      this.cacheKey = cacheKey;
+    }
+
+    public DecodeOutcome call() {
+      // Cached here rather than by the request's thread, so that an image which took too long
+      // still comes back quickly next time
+      long start = System.currentTimeMillis();
+      DecodeOutcome outcome = decode();
+      if (outcome == null) {
+        // Cancelled, and nobody is waiting for it
+        return null;
+      }
+      outcome.decodeMillis = System.currentTimeMillis() - start;
+      long ttl = outcome.results == null || outcome.results.isEmpty() ?
+          negativeResultTTL : resultTTL;
+      resultCache.put(cacheKey, outcome, outcome.estimateSize(), ttl);
+      return outcome;
+    }
+
+    private DecodeOutcome decode() {
+      try {
+        ImageInputStream input =
+            ImageIO.createImageInputStream(new ByteArrayInputStream(imageBytes));
+        Iterator<ImageReader> imageReaders = ImageIO.getImageReaders(input);
+        if (!imageReaders.hasNext()) {
+          return new DecodeOutcome("badimage.jspx");
+        }
+        ImageReader imageReader = imageReaders.next();
+        imageReader.setInput(input);
+        try {
+          return decode(imageReader);
+        } finally {
+          imageReader.dispose();
+        }
+      } catch (IOException ioe) {
+        log.fine(ioe.toString());
+        // Includes javax.imageio.IIOException
+        return new DecodeOutcome("badimage.jspx");
+      } catch (CMMException cmme) {
+        log.fine(cmme.toString());
+        // Have seen this in logs
+        return new DecodeOutcome("badimage.jspx");
+      } catch (IllegalArgumentException iae) {
+        log.fine(iae.toString());
+        // Have seen this in logs for some JPEGs
+        return new DecodeOutcome("badimage.jspx");
+      } catch (IllegalStateException ise) {
+        if (Thread.currentThread().isInterrupted()) {
+          // Cancelled between strips of a large image, which says nothing about the image
+          return null;
+        }
+        // Reading a strip of a large image failed
+        log.fine(ise.toString());
+        return new DecodeOutcome("badimage.jspx");
+      }
+    }
+
+    private DecodeOutcome decode(ImageReader imageReader) throws IOException {
+      // Only the header has been read so far, so a small file which claims huge dimensions is
+      // turned away before its pixels take up any memory
+      int width = imageReader.getWidth(0);
+      int height = imageReader.getHeight(0);
+      long pixels = (long) width * height;
+      if (height <= 1 || width <= 1 || pixels > MAX_STRIPED_PIXELS ||
+          (pixels > MAX_PIXELS && width > MAX_STRIP_WIDTH)) {
+        log.fine("Dimensions too large: " + width + 'x' + height);
+        return new DecodeOutcome("badimage.jspx");
+      }
+      if (pixels <= MAX_PIXELS && imageBytes.length > MAX_IMAGE_SIZE) {
+        // Only large scans get the larger allowance
+        log.fine("Too large for its dimensions: " + imageBytes.length + " bytes");
+        return new DecodeOutcome("badimage.jspx");
+      }
+
+      Reader reader = READER.get();
+      List<Result> results = new ArrayList<Result>(1);
+      ReaderException savedException = null;
+
+      if (pixels > MAX_PIXELS) {
+        try {
+          // Too large to hold in one piece; read and look for barcodes a strip at a time
+          MultipleBarcodeReader stripReader = new StripedMultipleBarcodeReader(reader);
+          LuminanceSource source = new ImageReaderLuminanceSource(imageReader);
+          BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(source));
+          results.addAll(Arrays.asList(stripReader.decodeMultiple(bitmap, HINTS)));
+        } catch (ReaderException re) {
+          savedException = re;
+        }
+        return new DecodeOutcome(results, savedException);
+      }
+
+      BufferedImage image = imageReader.read(0);
+      LuminanceSource source = new BufferedImageLuminanceSource(image);
+      BinaryBitmap bitmap = new BinaryBitmap(new GlobalHistogramBinarizer(source));
+      try {
+        // Look for multiple barcodes
+        MultipleBarcodeReader multiReader = new GenericMultipleBarcodeReader(reader);
+        Result[] theResults = multiReader.decodeMultiple(bitmap, HINTS);
+        if (theResults != null) {
+          results.addAll(Arrays.asList(theResults));
+        }
+      } catch (ReaderException re) {
+        savedException = re;
+      }
+
+      if (results.isEmpty()) {
+        try {
+          // Look for pure barcode
+          Result theResult = PURE_READER.get().decode(bitmap);
+          if (theResult != null) {
+            results.add(theResult);
+          }
+        } catch (ReaderException re) {
+          savedException = re;
+        }
+      }
+
+      if (results.isEmpty()) {
+        try {
+          // Look for normal barcode in photo
+          Result theResult = reader.decode(bitmap);
+          if (theResult != null) {
+            results.add(theResult);
+          }
+        } catch (ReaderException re) {
+          savedException = re;
+        }
+      }
+
+      if (results.isEmpty()) {
+        try {
+          // Try again with other binarizer
+          BinaryBitmap hybridBitmap = new BinaryBitmap(new HybridBinarizer(source));
+          Result theResult = reader.decode(hybridBitmap);
+          if (theResult != null) {
+            results.add(theResult);
+          }
+        } catch (ReaderException re) {
+          savedException = re;
+        }
+      }
+
+      return new DecodeOutcome(results, savedException);
+    }
+  }
+
+  /**
+   * Either a page to redirect to, or what was found in the image and, if nothing was, why not.
+   */
+  private static final class DecodeOutcome {
+
+    private final String errorPage;
+    private final List<Result> results;
+    private final ReaderException exception;
+    private long decodeMillis;
+
+    DecodeOutcome(String errorPage) {
+      this.errorPage = errorPage;
+      this.results = null;
+      this.exception = null;
+    }
+
+    DecodeOutcome(List<Result> results, ReaderException exception) {
+      this.errorPage = null;
+      this.results = results;
+      this.exception = exception;
+    }
+
+    /**
+     * @return rough number of bytes this takes up, for the result cache
+     */
+    int estimateSize() {
+      int size = 64;
+      if (results != null) {
+        for (Result result : results) {
+          size += 64 + (result.getText().length() << 1);
+          byte[] rawBytes = result.getRawBytes();
+          if (rawBytes != null) {
+            size += rawBytes.length;
+          }
+          ResultPoint[] points = result.getResultPoints();
+          if (points != null) {
+            size += 24 * points.length;
+          }
+        }
+      }
+      return size;
+    }
+  }
+
+  /**
+   * Decodes the images of one request to {@link #BATCH_PATH} on the decode threads, a few at a
+   * time, and writes what was found in each in the order they were added.
+   */
+  private final class Batch {
+
+    private final BatchResultWriter out;
+    private final LinkedList<PendingImage> pending;
+    private int count;
+
+    Batch(HttpServletResponse response) throws IOException {
+      response.setContentType("application/json");
+      response.setCharacterEncoding("UTF8");
+      out = new BatchResultWriter(new OutputStreamWriter(response.getOutputStream(), "UTF8"));
+      pending = new LinkedList<PendingImage>();
+    }
+
+    boolean isFull() {
+      return count >= MAX_BATCH_IMAGES;
+    }
+
+    void add(String name, byte[] imageBytes) throws IOException {
+      count++;
+      String cacheKey = resultCache.keyFor(imageBytes);
+      DecodeOutcome outcome = resultCache.get(cacheKey);
+      if (outcome != null) {
+        pending.add(new PendingImage(name, outcome, null, null));
+      } else {
+        // One batch gets no more decode threads than there are, so that it can't fill the queue
+        // and turn single images away
+        while (pending.size() >= decodeThreads) {
+          writeFirst();
+        }
+        while (true) {
+          try {
+            pending.add(new PendingImage(name, null,
+                decodeExecutor.submit(new DecodeTask(imageBytes, cacheKey)), null));
+            break;
+          } catch (RejectedExecutionException ree) {
+            if (pending.isEmpty()) {
+              log.info("Too busy to decode");
+              pending.add(new PendingImage(name, null, null, "busy"));
+              break;
+            }
+            writeFirst();
+          }
+        }
+      }
+      // Send what is already known, so the client sees results as soon as possible
+      while (!pending.isEmpty() && pending.getFirst().isDone()) {
+        writeFirst();
+      }
+    }
+
+    void addError(String name, String error) throws IOException {
+      count++;
+      pending.add(new PendingImage(name, null, null, error));
+      while (!pending.isEmpty() && pending.getFirst().isDone()) {
+        writeFirst();
+      }
+    }
+
+    void finish() throws IOException {
+      while (!pending.isEmpty()) {
+        writeFirst();
+      }
+      out.close();
+    }
+
+    private void writeFirst() throws IOException {
+      PendingImage image = pending.removeFirst();
+      if (image.error != null) {
+        out.writeError(image.name, image.error);
+        return;
+      }
+      boolean cached = image.future == null;
+      DecodeOutcome outcome = image.outcome;
+      if (!cached) {
+        long wait = image.deadline - System.currentTimeMillis();
+        try {
+          outcome = image.future.get(wait, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException te) {
+          // Interrupts the decode thread, as for a single image
+          image.future.cancel(true);
+          log.info("Decode of " + image.name + " timed out in a batch");
+          out.writeError(image.name, "timeout");
+          return;
+        } catch (InterruptedException ie) {
+          image.future.cancel(true);
+          Thread.currentThread().interrupt();
+          out.writeError(image.name, "timeout");
+          return;
+        } catch (ExecutionException ee) {
+          // Too late to fail the whole response
+          log.log(Level.WARNING, "Decode failed", ee.getCause());
+          out.writeError(image.name, "failed");
+          return;
+        }
+      }
+      if (outcome.errorPage != null) {
+        out.writeError(image.name, toError(outcome.errorPage));
+      } else if (outcome.results.isEmpty()) {
+        ReaderException re = outcome.exception;
+        out.writeError(image.name, re instanceof FormatException ? "format" :
+            re instanceof ChecksumException ? "checksum" : "notfound");
+      } else {
+        out.writeResults(image.name, outcome.decodeMillis, cached, outcome.results);
+      }
+    }
+  }
+
+  /**
+   * One image of a {@link Batch}: what was decoded from it, or the decode that is under way, or
+   * why it could not be decoded.
+   */
+  private final class PendingImage {
+
+    private final String name;
+    private final DecodeOutcome outcome;
+    private final Future<DecodeOutcome> future;
+    private final String error;
+    private final long deadline;
+
+    PendingImage(String name, DecodeOutcome outcome, Future<DecodeOutcome> future, String error) {
+      this.name = name;
+      this.outcome = outcome;
+      this.future = future;
+      this.error = error;
+      deadline = System.currentTimeMillis() + decodeTimeout;
+    }
+
+    boolean isDone() {
+      return future == null || future.isDone();
+    }
+  }
+
+  /**
+   * Thrown when an image can't be fetched from its URL.
+   */
+  private static final class FetchException extends Exception {
+
+    private final String errorPage;
+
+    FetchException(String errorPage) {
+      this.errorPage = errorPage;
+    }
+
+    /**
+     * @return page explaining the problem
+     */
+    String getErrorPage() {
+      return errorPage;
+    }
+
+    /**
+     * @return the problem, for a batch
+     */
+    String getError() {
+      return toError(errorPage);
+    }
   }
 
 }
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2010 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.web;
+
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+
+/**
+ * A source for an image which is too large to decode into memory whole. Nothing is read until
+ * asked for: each crop reads just its own region of the image from the {@link ImageReader}, so a
+ * {@link com.google.zxing.multi.StripedMultipleBarcodeReader} only ever holds one strip's pixels.
+ * Reading the whole image, through {@link #getMatrix()}, is possible but defeats the purpose.
+ *
+ * Memory is bounded this way, but time is not. Formats which can only be read sequentially, like
+ * PNG and baseline JPEG, are decoded from the start of the file up to the bottom of the region on
+ * every read, so reading an image in n strips costs about n / 2 decodes of the whole image. The
+ * ImageIO API offers no way to carry on from where the previous read stopped without holding
+ * the whole image. Instead, no region is read once the reading thread has been interrupted, so
+ * that a decode which is cancelled for taking too long stops at the next strip.
+ *
+ * Like the ImageReader, this is not thread-safe. An {@link IOException} while reading is thrown
+ * as an {@link IllegalStateException}.
+ */
+final class ImageReaderLuminanceSource extends LuminanceSource {
+
+  private final ImageReader reader;
+  private final int left;
+  private final int top;
+
+  /**
+   * @param reader reader whose input is set to the image
+   */
+  ImageReaderLuminanceSource(ImageReader reader) throws IOException {
+    this(reader, 0, 0, reader.getWidth(0), reader.getHeight(0));
+  }
+
+  private ImageReaderLuminanceSource(ImageReader reader, int left, int top, int width,
+      int height) {
+    super(width, height);
+    this.reader = reader;
+    this.left = left;
+    this.top = top;
+  }
+
+  @Override
+  public byte[] getRow(int y, byte[] row) {
+    if (y < 0 || y >= getHeight()) {
+      throw new IllegalArgumentException("Requested row is outside the image: " + y);
+    }
+    return crop(0, y, getWidth(), 1).getRow(0, row);
+  }
+
+  @Override
+  public byte[] getMatrix() {
+    return crop(0, 0, getWidth(), getHeight()).getMatrix();
+  }
+
+  @Override
+  public boolean isCropSupported() {
+    return true;
+  }
+
+  /**
+   * @return the region, read from the image now
+   */
+  @Override
+  public LuminanceSource crop(int left, int top, int width, int height) {
+    if (Thread.currentThread().isInterrupted()) {
+      throw new IllegalStateException("Interrupted before reading a region");
+    }
+    ImageReadParam param = reader.getDefaultReadParam();
+    param.setSourceRegion(new Rectangle(this.left + left, this.top + top, width, height));
+    BufferedImage region;
+    try {
+      region = reader.read(0, param);
+    } catch (IOException ioe) {
+      throw new IllegalStateException(ioe.toString());
+    }
+    return new BufferedImageLuminanceSource(region);
+  }
+
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2010 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.web;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A least-recently-used cache of what was decoded from an image, keyed by a hash of the image's
+ * bytes and of the hints it was decoded with. It holds at most a given number of bytes, by the
+ * caller's estimate of each value's size, and forgets each value after the time-to-live it was
+ * stored with.
+ *
+ * The servlet publishes its cache as the "resultCache" context attribute, which is how
+ * cachestats.jspx reports the counters; only they are public.
+ */
+public final class ResultCache<V> {
+
+  private static final int ENTRY_OVERHEAD = 128;
+
+  private final LinkedHashMap<String, Entry<V>> entries;
+  private final long maxSize;
+  private final byte[] hintsDigest;
+  private final AtomicLong hits;
+  private final AtomicLong misses;
+  private long size;
+
+  ResultCache(long maxSize, Object hints) {
+    // Access order, so that iteration starts at the least recently used
+    entries = new LinkedHashMap<String, Entry<V>>(16, 0.75f, true);
+    this.maxSize = maxSize;
+    try {
+      hintsDigest = newDigest().digest(String.valueOf(hints).getBytes("UTF-8"));
+    } catch (UnsupportedEncodingException uee) {
+      throw new IllegalStateException(uee.toString());
+    }
+    hits = new AtomicLong();
+    misses = new AtomicLong();
+  }
+
+  /**
+   * @return key under which what was decoded from these bytes is stored
+   */
+  String keyFor(byte[] content) {
+    MessageDigest digest = newDigest();
+    digest.update(hintsDigest);
+    byte[] hash = digest.digest(content);
+    StringBuilder key = new StringBuilder(hash.length << 1);
+    for (byte b : hash) {
+      key.append(Character.forDigit((b >> 4) & 0x0F, 16));
+      key.append(Character.forDigit(b & 0x0F, 16));
+    }
+    return key.toString();
+  }
+
+  /**
+   * @return value stored under key, or null if there is none or it has expired
+   */
+  V get(String key) {
+    long now = System.currentTimeMillis();
+    synchronized (entries) {
+      Entry<V> entry = entries.get(key);
+      if (entry != null) {
+        if (entry.expires > now) {
+          hits.incrementAndGet();
+          return entry.value;
+        }
+        entries.remove(key);
+        size -= entry.size;
+      }
+    }
+    misses.incrementAndGet();
+    return null;
+  }
+
+  /**
+   * @param size estimate of how many bytes value takes up
+   * @param ttl how long value may be returned for, in milliseconds
+   */
+  void put(String key, V value, int size, long ttl) {
+    long entrySize = ENTRY_OVERHEAD + (key.length() << 1) + size;
+    if (entrySize > maxSize) {
+      return;
+    }
+    Entry<V> entry = new Entry<V>(value, entrySize, System.currentTimeMillis() + ttl);
+    synchronized (entries) {
+      Entry<V> replaced = entries.put(key, entry);
+      this.size += entrySize;
+      if (replaced != null) {
+        this.size -= replaced.size;
+      }
+      Iterator<Entry<V>> eldest = entries.values().iterator();
+      while (this.size > maxSize) {
+        this.size -= eldest.next().size;
+        eldest.remove();
+      }
+    }
+  }
+
+  /**
+   * @return how many calls to get found a value
+   */
+  public long getHits() {
+    return hits.get();
+  }
+
+  /**
+   * @return how many calls to get found nothing, or only an expired value
+   */
+  public long getMisses() {
+    return misses.get();
+  }
+
+  public int getEntryCount() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  /**
+   * @return estimated bytes taken up by the entries, at most {@link #getMaxSize()}
+   */
+  public long getSize() {
+    synchronized (entries) {
+      return size;
+    }
+  }
+
+  public long getMaxSize() {
+    return maxSize;
+  }
+
+  @Override
+  public String toString() {
+    synchronized (entries) {
+      return entries.size() + " entries, " + size + " bytes, " +
+          hits.get() + " hits, " + misses.get() + " misses";
+    }
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException nsae) {
+      // Every Java platform has to support SHA-1
+      throw new IllegalStateException(nsae.toString());
+    }
+  }
+
+  private static final class Entry<V> {
+    final V value;
+    final long size;
+    final long expires;
+
+    private Entry(V value, long size, long expires) {
+      this.value = value;
+      this.size = size;
+      this.expires = expires;
+    }
+  }
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2010 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.web;
+
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.Reader;
+import com.google.zxing.Result;
+
+import java.util.Hashtable;
+
+/**
+ * Decodes with a {@link MultiFormatReader} whose hints are set once, when it is made, so that
+ * its readers are reused for every image rather than rebuilt. Hints passed in are ignored.
+ *
+ * Some readers, like the RSS-14 reader, remember what they saw in earlier images, which is
+ * right for frames of a camera preview but not for unrelated images from different clients,
+ * so that state is cleared before every decode.
+ */
+final class ReusableReader implements Reader {
+
+  private final MultiFormatReader delegate;
+
+  ReusableReader(Hashtable<DecodeHintType, Object> hints) {
+    delegate = new MultiFormatReader();
+    delegate.setHints(hints);
+  }
+
+  public Result decode(BinaryBitmap image) throws NotFoundException {
+    delegate.reset();
+    return delegate.decodeWithState(image);
+  }
+
+  public Result decode(BinaryBitmap image, Hashtable hints) throws NotFoundException {
+    return decode(image);
+  }
+
+  public void reset() {
+    delegate.reset();
+  }
+
+}
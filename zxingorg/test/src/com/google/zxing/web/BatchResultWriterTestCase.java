@@ -0,0 +1,131 @@
+/*
+ * Copyright 2010 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.web;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Result;
+import com.google.zxing.ResultMetadataType;
+import com.google.zxing.ResultPoint;
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Vector;
+
+public final class BatchResultWriterTestCase extends TestCase {
+
+  public void testEmpty() throws IOException {
+    StringWriter out = new StringWriter();
+    new BatchResultWriter(out).close();
+    assertEquals("[]\n", out.toString());
+  }
+
+  public void testErrors() throws IOException {
+    StringWriter out = new StringWriter();
+    BatchResultWriter writer = new BatchResultWriter(out);
+    writer.writeError("a.png", "badimage");
+    writer.writeError("http://example.com/b.png", "badurl");
+    writer.close();
+    assertEquals("[\n{\"image\":\"a.png\",\"error\":\"badimage\"}," +
+        "\n{\"image\":\"http://example.com/b.png\",\"error\":\"badurl\"}]\n", out.toString());
+  }
+
+  public void testResults() throws IOException {
+    Result first = new Result("first", null,
+        new ResultPoint[] {new ResultPoint(1.5f, 2.0f), null, new ResultPoint(3.0f, 4.25f)},
+        BarcodeFormat.QR_CODE);
+    Result second = new Result("second", new byte[] {0, 1, 2, (byte) 0xFF}, new ResultPoint[0],
+        BarcodeFormat.DATAMATRIX);
+    Result third = new Result("third", null, null, BarcodeFormat.EAN_13);
+    third.putMetadata(ResultMetadataType.ORIENTATION, Integer.valueOf(180));
+
+    StringWriter out = new StringWriter();
+    BatchResultWriter writer = new BatchResultWriter(out);
+    writer.writeResults("a.png", 12L, false, Arrays.asList(first, second));
+    writer.writeResults("b.png", 0L, true, Collections.singletonList(third));
+    writer.writeResults("c.png", 3L, false, new ArrayList<Result>());
+    writer.writeError("d.png", "notfound");
+    writer.close();
+    assertEquals("[" +
+        "\n{\"image\":\"a.png\",\"millis\":12,\"cached\":false,\"results\":[" +
+        "{\"text\":\"first\",\"format\":\"QR_CODE\"," +
+        "\"points\":[{\"x\":1.5,\"y\":2.0},null,{\"x\":3.0,\"y\":4.25}]}," +
+        "{\"text\":\"second\",\"format\":\"DATAMATRIX\",\"rawBytes\":\"AAEC/w==\",\"points\":[]}]}," +
+        "\n{\"image\":\"b.png\",\"millis\":0,\"cached\":true,\"results\":[" +
+        "{\"text\":\"third\",\"format\":\"EAN_13\",\"metadata\":{\"ORIENTATION\":180}}]}," +
+        "\n{\"image\":\"c.png\",\"millis\":3,\"cached\":false,\"results\":[]}," +
+        "\n{\"image\":\"d.png\",\"error\":\"notfound\"}]\n", out.toString());
+  }
+
+  public void testMetadataValues() throws IOException {
+    List<byte[]> segments = new Vector<byte[]>();
+    segments.add(new byte[] {'h', 'i'});
+    segments.add(new byte[] {(byte) 0xFB, (byte) 0xFF});
+    assertEquals("{\"BYTE_SEGMENTS\":[\"aGk=\",\"+/8=\"]}",
+        writeMetadata(ResultMetadataType.BYTE_SEGMENTS, segments));
+    assertEquals("{\"ERROR_CORRECTION_LEVEL\":\"M\"}",
+        writeMetadata(ResultMetadataType.ERROR_CORRECTION_LEVEL, "M"));
+    assertEquals("{\"OTHER\":true}", writeMetadata(ResultMetadataType.OTHER, Boolean.TRUE));
+    assertEquals("{\"OTHER\":[]}", writeMetadata(ResultMetadataType.OTHER, new Vector<Object>()));
+    // Anything else is written as its string, escaped
+    assertEquals("{\"OTHER\":\"a\\\"b\"}",
+        writeMetadata(ResultMetadataType.OTHER, new StringBuilder("a\"b")));
+  }
+
+  public void testEscapes() throws IOException {
+    assertEquals("\"\\\"quoted\\\" back\\\\slash\"", writeString("\"quoted\" back\\slash"));
+    assertEquals("\"a\\nb\\rc\\td\"", writeString("a\nb\rc\td"));
+    assertEquals("\"\\u0000\\u0001\\u001f\\u0008\\u000c\"",
+        writeString("\u0000\u0001\u001f\b\f"));
+    // Valid JSON, but they would end a line in a JavaScript string literal
+    assertEquals("\"\\u2028\\u2029\"", writeString(new String(new char[] {0x2028, 0x2029})));
+    // Everything else is written as it is; the response's charset is UTF-8
+    assertEquals("\" ~\u007fé€/\"", writeString(" ~\u007fé€/"));
+  }
+
+  private static String writeString(String s) throws IOException {
+    // The image name is written with writeString() as it is
+    StringWriter out = new StringWriter();
+    BatchResultWriter writer = new BatchResultWriter(out);
+    writer.writeError(s, "x");
+    writer.close();
+    String json = out.toString();
+    String prefix = "[\n{\"image\":";
+    String suffix = ",\"error\":\"x\"}]\n";
+    assertTrue(json.startsWith(prefix));
+    assertTrue(json.endsWith(suffix));
+    return json.substring(prefix.length(), json.length() - suffix.length());
+  }
+
+  private static String writeMetadata(ResultMetadataType type, Object value) throws IOException {
+    Result result = new Result("", null, null, BarcodeFormat.QR_CODE);
+    result.putMetadata(type, value);
+    StringWriter out = new StringWriter();
+    BatchResultWriter writer = new BatchResultWriter(out);
+    writer.writeResults("", 0L, false, Collections.singletonList(result));
+    writer.close();
+    String json = out.toString();
+    int start = json.indexOf("\"metadata\":") + "\"metadata\":".length();
+    // The metadata is the last thing in the result, before it and the element are closed
+    return json.substring(start, json.length() - "}]}]\n".length());
+  }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2010 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.web;
+
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+import junit.framework.TestCase;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+public final class ImageReaderLuminanceSourceTestCase extends TestCase {
+
+  public void testRegionsMatchWholeImage() throws Exception {
+    BufferedImage image = new BufferedImage(300, 200, BufferedImage.TYPE_3BYTE_BGR);
+    Random random = new Random(0xC0FFEE);
+    for (int y = 0; y < image.getHeight(); y++) {
+      for (int x = 0; x < image.getWidth(); x++) {
+        image.setRGB(x, y, random.nextInt() & 0xFFFFFF);
+      }
+    }
+    ByteArrayOutputStream png = new ByteArrayOutputStream();
+    ImageIO.write(image, "png", png);
+
+    ImageInputStream input =
+        ImageIO.createImageInputStream(new ByteArrayInputStream(png.toByteArray()));
+    ImageReader reader = ImageIO.getImageReaders(input).next();
+    reader.setInput(input);
+    try {
+      LuminanceSource source = new ImageReaderLuminanceSource(reader);
+      LuminanceSource expected = new BufferedImageLuminanceSource(image);
+      assertEquals(300, source.getWidth());
+      assertEquals(200, source.getHeight());
+      assertTrue(source.isCropSupported());
+
+      // Strips are read in any order, and more than once
+      assertCropsMatch(expected, source, 0, 120, 300, 80);
+      assertCropsMatch(expected, source, 0, 0, 300, 100);
+      assertCropsMatch(expected, source, 25, 60, 100, 40);
+      assertCropsMatch(expected, source, 0, 120, 300, 80);
+
+      LuminanceSource crop = source.crop(10, 20, 200, 100);
+      LuminanceSource expectedCrop = expected.crop(10, 20, 200, 100);
+      assertTrue(Arrays.equals(expectedCrop.getRow(7, null), crop.getRow(7, null)));
+      assertTrue(Arrays.equals(expected.getRow(199, null), source.getRow(199, null)));
+    } finally {
+      reader.dispose();
+    }
+  }
+
+  public void testStopsReadingWhenInterrupted() throws Exception {
+    ByteArrayOutputStream png = new ByteArrayOutputStream();
+    ImageIO.write(new BufferedImage(50, 40, BufferedImage.TYPE_BYTE_GRAY), "png", png);
+    ImageInputStream input =
+        ImageIO.createImageInputStream(new ByteArrayInputStream(png.toByteArray()));
+    ImageReader reader = ImageIO.getImageReaders(input).next();
+    reader.setInput(input);
+    try {
+      LuminanceSource source = new ImageReaderLuminanceSource(reader);
+      Thread.currentThread().interrupt();
+      try {
+        source.crop(0, 0, 50, 10);
+        fail();
+      } catch (IllegalStateException ise) {
+        // good
+      } finally {
+        // Clears the flag for the tests which follow
+        assertTrue(Thread.interrupted());
+      }
+      assertEquals(10, source.crop(0, 10, 50, 10).getHeight());
+    } finally {
+      reader.dispose();
+    }
+  }
+
+  private static void assertCropsMatch(LuminanceSource expected, LuminanceSource source,
+      int left, int top, int width, int height) {
+    LuminanceSource crop = source.crop(left, top, width, height);
+    assertEquals(width, crop.getWidth());
+    assertEquals(height, crop.getHeight());
+    assertTrue(Arrays.equals(expected.crop(left, top, width, height).getMatrix(),
+        crop.getMatrix()));
+  }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2010 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.web;
+
+import junit.framework.TestCase;
+
+import java.util.Hashtable;
+
+public final class ResultCacheTestCase extends TestCase {
+
+  // What a one character key and a value estimated at 10 bytes take up, with the entry overhead
+  private static final long ENTRY_SIZE = 128 + 2 + 10;
+  private static final long TTL = 60000L;
+
+  public void testEvictsLeastRecentlyUsed() {
+    ResultCache<String> cache = new ResultCache<String>(3 * ENTRY_SIZE, null);
+    cache.put("a", "A", 10, TTL);
+    cache.put("b", "B", 10, TTL);
+    cache.put("c", "C", 10, TTL);
+    // Using "a" makes "b" the least recently used
+    assertEquals("A", cache.get("a"));
+    cache.put("d", "D", 10, TTL);
+    assertEquals(3, cache.getEntryCount());
+    assertNull(cache.get("b"));
+    assertEquals("A", cache.get("a"));
+    assertEquals("C", cache.get("c"));
+    assertEquals("D", cache.get("d"));
+
+    // A larger value pushes out as many as it needs to, least recently used first
+    cache.put("e", "E", 10 + (int) ENTRY_SIZE, TTL);
+    assertEquals(2, cache.getEntryCount());
+    assertNull(cache.get("a"));
+    assertNull(cache.get("c"));
+    assertEquals("D", cache.get("d"));
+    assertEquals("E", cache.get("e"));
+  }
+
+  public void testSizeAccounting() {
+    ResultCache<String> cache = new ResultCache<String>(3 * ENTRY_SIZE, null);
+    assertEquals(3 * ENTRY_SIZE, cache.getMaxSize());
+    assertEquals(0L, cache.getSize());
+    cache.put("a", "A", 10, TTL);
+    assertEquals(ENTRY_SIZE, cache.getSize());
+
+    // Replacing counts only the new value
+    cache.put("a", "AA", 20, TTL);
+    assertEquals(1, cache.getEntryCount());
+    assertEquals(ENTRY_SIZE + 10, cache.getSize());
+    assertEquals("AA", cache.get("a"));
+
+    cache.put("b", "B", 10, TTL);
+    cache.put("c", "C", 10, TTL);
+    // Evicting "a" gives back all it took up
+    assertEquals(2, cache.getEntryCount());
+    assertEquals(2 * ENTRY_SIZE, cache.getSize());
+
+    // Too large to ever fit, so not stored, and nothing else is evicted for it
+    cache.put("d", "D", (int) (3 * ENTRY_SIZE), TTL);
+    assertNull(cache.get("d"));
+    assertEquals(2, cache.getEntryCount());
+    assertEquals(2 * ENTRY_SIZE, cache.getSize());
+  }
+
+  public void testExpires() throws Exception {
+    ResultCache<String> cache = new ResultCache<String>(10 * ENTRY_SIZE, null);
+    cache.put("a", "A", 10, 0L);
+    cache.put("b", "B", 10, 20L);
+    cache.put("c", "C", 10, TTL);
+    assertNull(cache.get("a"));
+    Thread.sleep(50L);
+    assertNull(cache.get("b"));
+    assertEquals("C", cache.get("c"));
+    // Expired entries are dropped when found
+    assertEquals(1, cache.getEntryCount());
+    assertEquals(ENTRY_SIZE, cache.getSize());
+  }
+
+  public void testCountsHitsAndMisses() {
+    ResultCache<String> cache = new ResultCache<String>(10 * ENTRY_SIZE, null);
+    assertNull(cache.get("a"));
+    cache.put("a", "A", 10, TTL);
+    cache.put("b", "B", 10, -1L);
+    assertEquals("A", cache.get("a"));
+    assertEquals("A", cache.get("a"));
+    assertNull(cache.get("b"));
+    assertEquals(2L, cache.getHits());
+    assertEquals(2L, cache.getMisses());
+  }
+
+  public void testKeys() {
+    Hashtable<String, Object> hints = new Hashtable<String, Object>();
+    hints.put("TRY_HARDER", Boolean.TRUE);
+    Hashtable<String, Object> otherHints = new Hashtable<String, Object>();
+    otherHints.put("PURE_BARCODE", Boolean.TRUE);
+
+    byte[] image = {1, 2, 3};
+    byte[] otherImage = {1, 2, 4};
+    String key = new ResultCache<String>(ENTRY_SIZE, hints).keyFor(image);
+    // A hex SHA-1
+    assertEquals(40, key.length());
+    assertEquals(key, new ResultCache<String>(ENTRY_SIZE, hints).keyFor(image.clone()));
+    assertFalse(key.equals(new ResultCache<String>(ENTRY_SIZE, hints).keyFor(otherImage)));
+    // The same image decoded another way may give other results
+    assertFalse(key.equals(new ResultCache<String>(ENTRY_SIZE, otherHints).keyFor(image)));
+    assertFalse(key.equals(new ResultCache<String>(ENTRY_SIZE, null).keyFor(image)));
+  }
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2010 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.web;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.Reader;
+import com.google.zxing.Result;
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+import com.google.zxing.common.HybridBinarizer;
+import junit.framework.TestCase;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.io.File;
+
+import javax.imageio.ImageIO;
+
+public final class ReusableReaderTestCase extends TestCase {
+
+  private static final String RSS14_IMAGE = "../core/test/data/blackbox/rss14-1/1.png";
+
+  public void testForgetsEarlierImages() throws Exception {
+    Reader reader = new ReusableReader(DecodeServlet.HINTS);
+    Result result = reader.decode(toBitmap(ImageIO.read(new File(RSS14_IMAGE))));
+    assertEquals(BarcodeFormat.RSS14, result.getBarcodeFormat());
+    assertEquals("04412345678909", result.getText());
+
+    // The RSS-14 reader's pairs from the last image must not turn up in this one
+    BufferedImage blank = new BufferedImage(200, 200, BufferedImage.TYPE_3BYTE_BGR);
+    Graphics graphics = blank.getGraphics();
+    graphics.setColor(Color.WHITE);
+    graphics.fillRect(0, 0, 200, 200);
+    graphics.dispose();
+    try {
+      reader.decode(toBitmap(blank));
+      fail("Found " + result.getText() + " again");
+    } catch (NotFoundException nfe) {
+      // good
+    }
+  }
+
+  private static BinaryBitmap toBitmap(BufferedImage image) {
+    return new BinaryBitmap(new HybridBinarizer(new BufferedImageLuminanceSource(image)));
+  }
+
+}